@@ -18,26 +18,39 @@ public class GenerateAst {
     static String spacer = "  ";
     static String version = "0.1";
 
+    /**
+     * Writes Expr.java and ExprArena.java in the output directory, and
+     * with --sealed also ExprNode.java, the same nodes as records.
+     *
+     * @param args optional --sealed and the output directory
+     */
     public static void main(String[] args) throws IOException {
-        if (args.length != 1) {
-            System.err.println("Usage: java -jar generate-ast.jar <output directory>");
+        boolean sealed = args.length == 2 && args[0].equals("--sealed");
+        if (args.length != 1 && !sealed) {
+            System.err.println("Usage: java -jar generate-ast.jar [--sealed] <output directory>");
             System.exit(64);
         }
-        String outputDir = args[0];
-        defineAst(outputDir, "Expr", Arrays.asList(
+        String outputDir = args[args.length - 1];
+        List<String> expressions = Arrays.asList(
                 "Binary   : Expr left, Token operator, Expr right",
                 "Conditional : Expr condition, Expr true_statement, Expr false_statement",
                 "Grouping : Expr expression",
                 "Literal  : Object value",
-                "Unary    : Token operator, Expr right"
-        ));
+                "Unary    : Token operator, Expr right",
+                "Variable : Token name"
+        );
+        defineAst(outputDir, "Expr", expressions);
+        defineArena(outputDir, "Expr", expressions);
+        if (sealed) defineSealed(outputDir, "Expr", expressions);
     }
 
     private static void defineAst(
             String outputDir, String baseName, List<String> types) throws IOException {
         String path = outputDir + "/" + baseName + ".java";
         try (PrintWriter writer = new PrintWriter(path, StandardCharsets.UTF_8)) {
-            writeComment(writer);
+            writeComment(writer, baseName + ".java contains all the expresions",
+                    "from the language, as well as their",
+                    "variables, and the visit method");
 
             // header of the file
             writer.println("package com.craftinginterpreters.lox;");
@@ -138,7 +151,320 @@ public class GenerateAst {
         writer.println();
     }
 
-    private static void writeComment(PrintWriter writer) {
+    /**
+     * Generate the arena form of the AST: instead of one object for each
+     * node, all the nodes of a tree are stored in one int array. Every
+     * node takes the same number of ints, the first one is its kind, and
+     * the rest are its fields:
+     *
+     *   - baseName fields are the index of another node.
+     *   - Token fields are the index of the token in a TokenBuffer.
+     *   - any other field (Object) is the index in a side table.
+     *
+     * The arena has one method to create each type of node, accessors for
+     * every field, a Visitor receiving the index of the node, and `expr`
+     * to convert a node back to the object tree.
+     *
+     * @param outputDir directory where to write the file
+     * @param baseName base class of the nodes, e.g. Expr
+     * @param types types of nodes and their fields
+     */
+    private static void defineArena(
+            String outputDir, String baseName, List<String> types) throws IOException {
+        String className = baseName + "Arena";
+        String path = outputDir + "/" + className + ".java";
+
+        int stride = 1;
+        for (String type : types) {
+            stride = Math.max(stride, 1 + type.split(":")[1].trim().split(", ").length);
+        }
+
+        try (PrintWriter writer = new PrintWriter(path, StandardCharsets.UTF_8)) {
+            writeComment(writer, className + ".java contains all the expresions",
+                    "from the language stored in arrays,",
+                    "the accessors of their fields and",
+                    "the visit method");
+
+            // header of the file
+            writer.println("package com.craftinginterpreters.lox;");
+            writer.println();
+            writer.println("import java.util.Arrays;");
+            writer.println();
+            writer.println("public class " + className + " {");
+
+            // Visitor receiving node indices
+            writer.println();
+            writer.println(spacer + "public interface Visitor<R> {");
+            for (String type : types) {
+                String typeName = type.split(":")[0].trim();
+                writer.println(spacer + spacer + "R visit" + typeName + baseName + "(int " +
+                        baseName.toLowerCase() + ");");
+            }
+            writer.println(spacer + "}");
+            writer.println();
+
+            // kinds of nodes
+            writer.println(spacer + "// kinds of the nodes");
+            for (int i = 0; i < types.size(); i++) {
+                String typeName = types.get(i).split(":")[0].trim();
+                writer.println(spacer + "public static final int " + typeName.toUpperCase() + " = " + i + ";");
+            }
+            writer.println();
+
+            // storage
+            writer.println(spacer + "// ints taken by each node, the kind and the fields, nodes are");
+            writer.println(spacer + "// numbered in the order they are created, so when a tree is");
+            writer.println(spacer + "// built bottom up the children always go before their parent");
+            writer.println(spacer + "private static final int STRIDE = " + stride + ";");
+            writer.println();
+            writer.println(spacer + "private final TokenBuffer tokens;");
+            writer.println(spacer + "private int[] nodes;");
+            writer.println(spacer + "private int size = 0;");
+            writer.println(spacer + "private Object[] values = new Object[16];");
+            writer.println(spacer + "private int valueCount = 0;");
+            writer.println();
+
+            // constructor and common methods
+            writer.println(spacer + className + "(TokenBuffer tokens) {");
+            writer.println(spacer + spacer + "this(tokens, 64);");
+            writer.println(spacer + "}");
+            writer.println();
+            writer.println(spacer + "// capacity is the number of nodes expected, it grows if needed");
+            writer.println(spacer + className + "(TokenBuffer tokens, int capacity) {");
+            writer.println(spacer + spacer + "this.tokens = tokens;");
+            writer.println(spacer + spacer + "this.nodes = new int[Math.max(capacity, 1) * STRIDE];");
+            writer.println(spacer + "}");
+            writer.println();
+            writer.println(spacer + "// tokens referenced by the nodes");
+            writer.println(spacer + "public TokenBuffer tokens() {");
+            writer.println(spacer + spacer + "return tokens;");
+            writer.println(spacer + "}");
+            writer.println();
+            writer.println(spacer + "public int size() {");
+            writer.println(spacer + spacer + "return size;");
+            writer.println(spacer + "}");
+            writer.println();
+            writer.println(spacer + "public int kind(int node) {");
+            writer.println(spacer + spacer + "return nodes[node * STRIDE];");
+            writer.println(spacer + "}");
+            writer.println();
+
+            // accept
+            writer.println(spacer + "public <R> R accept(int node, Visitor<R> visitor) {");
+            writer.println(spacer + spacer + "switch (kind(node)) {");
+            for (String type : types) {
+                String typeName = type.split(":")[0].trim();
+                writer.println(spacer + spacer + spacer + "case " + typeName.toUpperCase() + ": return visitor.visit" +
+                        typeName + baseName + "(node);");
+            }
+            writer.println(spacer + spacer + spacer + "default: throw new IllegalStateException(\"Unknown kind of node: \" + kind(node));");
+            writer.println(spacer + spacer + "}");
+            writer.println(spacer + "}");
+            writer.println();
+
+            // conversion to the object tree
+            writer.println(spacer + "// build the " + baseName + " object tree of a node");
+            writer.println(spacer + "public " + baseName + " " + baseName.toLowerCase() + "(int node) {");
+            writer.println(spacer + spacer + "switch (kind(node)) {");
+            for (String type : types) {
+                String typeName = type.split(":")[0].trim();
+                String[] fields = type.split(":")[1].trim().split(", ");
+                StringBuilder arguments = new StringBuilder();
+                for (int i = 0; i < fields.length; i++) {
+                    String fieldType = fields[i].split(" ")[0];
+                    String slot = "nodes[node * STRIDE + " + (i + 1) + "]";
+                    if (i > 0) arguments.append(", ");
+                    if (fieldType.equals(baseName)) arguments.append(baseName.toLowerCase()).append("(").append(slot).append(")");
+                    else if (fieldType.equals("Token")) arguments.append("tokens.token(").append(slot).append(")");
+                    else arguments.append("values[").append(slot).append("]");
+                }
+                writer.println(spacer + spacer + spacer + "case " + typeName.toUpperCase() + ": return new " +
+                        baseName + "." + typeName + "(" + arguments + ");");
+            }
+            writer.println(spacer + spacer + spacer + "default: throw new IllegalStateException(\"Unknown kind of node: \" + kind(node));");
+            writer.println(spacer + spacer + "}");
+            writer.println(spacer + "}");
+            writer.println();
+
+            // here it will go the nodes
+            for (String type : types) {
+                String typeName = type.split(":")[0].trim();
+                String fields = type.split(":")[1].trim();
+                defineArenaType(writer, baseName, typeName, fields);
+            }
+
+            // space for new nodes
+            writer.println(spacer + "private int allocate(int kind) {");
+            writer.println(spacer + spacer + "if ((size + 1) * STRIDE > nodes.length) nodes = Arrays.copyOf(nodes, nodes.length * 2);");
+            writer.println(spacer + spacer + "nodes[size * STRIDE] = kind;");
+            writer.println(spacer + spacer + "return size++;");
+            writer.println(spacer + "}");
+            writer.println();
+            writer.println(spacer + "private int value(Object value) {");
+            writer.println(spacer + spacer + "if (valueCount == values.length) values = Arrays.copyOf(values, valueCount * 2);");
+            writer.println(spacer + spacer + "values[valueCount] = value;");
+            writer.println(spacer + spacer + "return valueCount++;");
+            writer.println(spacer + "}");
+
+            // end of the file
+            writer.println("}");
+        }
+    }
+
+    /**
+     * Generation of the methods of one type of node in the arena, one to
+     * create it and one accessor for each field. The accessors of baseName
+     * and Token fields return indices, the others the value.
+     *
+     * @param writer
+     * @param baseName
+     * @param className
+     * @param fieldList
+     */
+    private static void defineArenaType(PrintWriter writer, String baseName, String className, String fieldList) {
+        String[] fields = fieldList.split(", ");
+        String kind = className.toUpperCase();
+        String prefix = Character.toLowerCase(className.charAt(0)) + className.substring(1);
+
+        // parameters of the creation method, nodes and tokens are ints
+        StringBuilder parameters = new StringBuilder();
+        for (int i = 0; i < fields.length; i++) {
+            String fieldType = fields[i].split(" ")[0];
+            String name = fields[i].split(" ")[1];
+            if (i > 0) parameters.append(", ");
+            if (fieldType.equals(baseName) || fieldType.equals("Token")) parameters.append("int ").append(name);
+            else parameters.append(fieldType).append(" ").append(name);
+        }
+
+        writer.println(spacer + "// " + className + " : " + fieldList);
+        writer.println(spacer + "public int " + prefix + "(" + parameters + ") {");
+        writer.println(spacer + spacer + "int node = allocate(" + kind + ");");
+        for (int i = 0; i < fields.length; i++) {
+            String fieldType = fields[i].split(" ")[0];
+            String name = fields[i].split(" ")[1];
+            String value = fieldType.equals(baseName) || fieldType.equals("Token") ? name : "value(" + name + ")";
+            writer.println(spacer + spacer + "nodes[node * STRIDE + " + (i + 1) + "] = " + value + ";");
+        }
+        writer.println(spacer + spacer + "return node;");
+        writer.println(spacer + "}");
+        writer.println();
+
+        for (int i = 0; i < fields.length; i++) {
+            String fieldType = fields[i].split(" ")[0];
+            String name = fields[i].split(" ")[1];
+            String accessor = prefix + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+            String slot = "nodes[node * STRIDE + " + (i + 1) + "]";
+            if (fieldType.equals(baseName) || fieldType.equals("Token")) {
+                writer.println(spacer + "public int " + accessor + "(int node) {");
+                writer.println(spacer + spacer + "return " + slot + ";");
+            } else {
+                writer.println(spacer + "public " + fieldType + " " + accessor + "(int node) {");
+                writer.println(spacer + spacer + "return values[" + slot + "];");
+            }
+            writer.println(spacer + "}");
+            writer.println();
+        }
+    }
+
+    /**
+     * Generate the nodes as a sealed interface and one record for each
+     * type, next to the classes of defineAst, which are still used by
+     * the Visitor. Every record has a `kind()` with the same numbers
+     * than the kinds of the arena, so the consumers can dispatch with a
+     * switch over an int (a tableswitch for the JIT) and a cast, or
+     * with a pattern matching switch in the versions of Java that have
+     * it. The records are compared by their fields, not by identity.
+     *
+     *   - baseName fields are nodes of the interface, baseName + "Node".
+     *   - any other field keeps its type.
+     *
+     * `from` converts an object tree to the records.
+     *
+     * @param outputDir directory where to write the file
+     * @param baseName base class of the nodes, e.g. Expr
+     * @param types types of nodes and their fields
+     */
+    private static void defineSealed(
+            String outputDir, String baseName, List<String> types) throws IOException {
+        String interfaceName = baseName + "Node";
+        String path = outputDir + "/" + interfaceName + ".java";
+
+        try (PrintWriter writer = new PrintWriter(path, StandardCharsets.UTF_8)) {
+            writeComment(writer, interfaceName + ".java contains all the expresions",
+                    "from the language as records of a",
+                    "sealed interface, with their kind");
+
+            // header of the file
+            writer.println("package com.craftinginterpreters.lox;");
+            writer.println();
+
+            StringBuilder permits = new StringBuilder();
+            for (String type : types) {
+                if (permits.length() > 0) permits.append(", ");
+                permits.append(interfaceName).append(".").append(type.split(":")[0].trim());
+            }
+            writer.println("public sealed interface " + interfaceName + " permits " + permits + " {");
+            writer.println();
+
+            // kinds of nodes, the same than in the arena
+            writer.println(spacer + "// kinds of the nodes");
+            for (int i = 0; i < types.size(); i++) {
+                String typeName = types.get(i).split(":")[0].trim();
+                writer.println(spacer + "int " + typeName.toUpperCase() + " = " + i + ";");
+            }
+            writer.println();
+            writer.println(spacer + "int kind();");
+            writer.println();
+
+            // conversion from the object tree
+            writer.println(spacer + "// build the records from the " + baseName + " object tree");
+            writer.println(spacer + "static " + interfaceName + " from(" + baseName + " " + baseName.toLowerCase() + ") {");
+            for (String type : types) {
+                String typeName = type.split(":")[0].trim();
+                String[] fields = type.split(":")[1].trim().split(", ");
+                StringBuilder arguments = new StringBuilder();
+                for (int i = 0; i < fields.length; i++) {
+                    String fieldType = fields[i].split(" ")[0];
+                    String name = fields[i].split(" ")[1];
+                    if (i > 0) arguments.append(", ");
+                    if (fieldType.equals(baseName)) arguments.append("from(node.").append(name).append(")");
+                    else arguments.append("node.").append(name);
+                }
+                writer.println(spacer + spacer + "if (" + baseName.toLowerCase() + " instanceof " + baseName + "." + typeName + ") {");
+                writer.println(spacer + spacer + spacer + baseName + "." + typeName + " node = (" + baseName + "." + typeName + ") " +
+                        baseName.toLowerCase() + ";");
+                writer.println(spacer + spacer + spacer + "return new " + typeName + "(" + arguments + ");");
+                writer.println(spacer + spacer + "}");
+            }
+            writer.println(spacer + spacer + "throw new IllegalStateException(\"Unknown node: \" + " + baseName.toLowerCase() + ");");
+            writer.println(spacer + "}");
+
+            // the records
+            for (String type : types) {
+                String typeName = type.split(":")[0].trim();
+                String[] fields = type.split(":")[1].trim().split(", ");
+                StringBuilder components = new StringBuilder();
+                for (int i = 0; i < fields.length; i++) {
+                    String fieldType = fields[i].split(" ")[0];
+                    String name = fields[i].split(" ")[1];
+                    if (i > 0) components.append(", ");
+                    components.append(fieldType.equals(baseName) ? interfaceName : fieldType).append(" ").append(name);
+                }
+                writer.println();
+                writer.println(spacer + "record " + typeName + "(" + components + ") implements " + interfaceName + " {");
+                writer.println(spacer + spacer + "@Override");
+                writer.println(spacer + spacer + "public int kind() {");
+                writer.println(spacer + spacer + spacer + "return " + typeName.toUpperCase() + ";");
+                writer.println(spacer + spacer + "}");
+                writer.println(spacer + "}");
+            }
+
+            // end of the file
+            writer.println("}");
+        }
+    }
+
+    private static void writeComment(PrintWriter writer, String... description) {
         String timeStamp = new SimpleDateFormat("yyyy.MM.dd.HH.mm.ss").format(new java.util.Date());
 
         writer.println("/*************************************");
@@ -147,9 +473,9 @@ public class GenerateAst {
         writer.println("* Version "+version);
         writer.println("* Generated the date: " + timeStamp);
         writer.println("* Author: Fare9");
-        writer.println("* Expr.java contains all the expresions");
-        writer.println("* from the language, as well as their");
-        writer.println("* variables, and the visit method");
+        for (String line : description) {
+            writer.println("* " + line);
+        }
         writer.println("*************************************/");
         writer.println();
     }
@@ -0,0 +1,156 @@
+package com.craftinginterpreters.lox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Expr objects against the ExprArena: building the tree from the
+ * same tokens (the gc profiler shows the bytes allocated) and walking
+ * it with a visitor that counts the numbers. The arena can also be
+ * walked without recursion, going through the nodes in order.
+ */
+@State(Scope.Benchmark)
+public class ArenaBenchmark {
+
+    @Param({"expression-small", "expression-large"})
+    public String corpus;
+
+    private TokenBuffer buffer;
+    private Expr expr;
+    private ExprArena arena;
+    private int root;
+
+    @Setup
+    public void setup() {
+        buffer = new Scanner(Corpus.load(corpus)).scanBuffer();
+        expr = new PrattParser(buffer).parse();
+        ArenaParser parser = new ArenaParser(buffer);
+        root = parser.parseNode();
+        arena = parser.arena();
+    }
+
+    @Benchmark
+    public Expr parseObjects() {
+        return new PrattParser(buffer).parse();
+    }
+
+    @Benchmark
+    public int parseArena() {
+        return new ArenaParser(buffer).parseNode();
+    }
+
+    @Benchmark
+    public int walkObjects() {
+        NumberCounter counter = new NumberCounter();
+        expr.accept(counter);
+        return counter.numbers;
+    }
+
+    @Benchmark
+    public int walkArena() {
+        ArenaNumberCounter counter = new ArenaNumberCounter(arena);
+        arena.accept(root, counter);
+        return counter.numbers;
+    }
+
+    @Benchmark
+    public int scanArena() {
+        int numbers = 0;
+        for (int node = 0; node < arena.size(); node++) {
+            if (arena.kind(node) == ExprArena.LITERAL && arena.literalValue(node) instanceof Double) numbers++;
+        }
+        return numbers;
+    }
+
+    private static class NumberCounter implements Expr.Visitor<Void> {
+        int numbers = 0;
+
+        @Override
+        public Void visitBinaryExpr(Expr.Binary expr) {
+            expr.left.accept(this);
+            expr.right.accept(this);
+            return null;
+        }
+
+        @Override
+        public Void visitConditionalExpr(Expr.Conditional expr) {
+            expr.condition.accept(this);
+            expr.true_statement.accept(this);
+            expr.false_statement.accept(this);
+            return null;
+        }
+
+        @Override
+        public Void visitGroupingExpr(Expr.Grouping expr) {
+            expr.expression.accept(this);
+            return null;
+        }
+
+        @Override
+        public Void visitLiteralExpr(Expr.Literal expr) {
+            if (expr.value instanceof Double) numbers++;
+            return null;
+        }
+
+        @Override
+        public Void visitUnaryExpr(Expr.Unary expr) {
+            expr.right.accept(this);
+            return null;
+        }
+
+        @Override
+        public Void visitVariableExpr(Expr.Variable expr) {
+            return null;
+        }
+    }
+
+    private static class ArenaNumberCounter implements ExprArena.Visitor<Void> {
+        private final ExprArena arena;
+        int numbers = 0;
+
+        ArenaNumberCounter(ExprArena arena) {
+            this.arena = arena;
+        }
+
+        @Override
+        public Void visitBinaryExpr(int expr) {
+            arena.accept(arena.binaryLeft(expr), this);
+            arena.accept(arena.binaryRight(expr), this);
+            return null;
+        }
+
+        @Override
+        public Void visitConditionalExpr(int expr) {
+            arena.accept(arena.conditionalCondition(expr), this);
+            arena.accept(arena.conditionalTrue_statement(expr), this);
+            arena.accept(arena.conditionalFalse_statement(expr), this);
+            return null;
+        }
+
+        @Override
+        public Void visitGroupingExpr(int expr) {
+            arena.accept(arena.groupingExpression(expr), this);
+            return null;
+        }
+
+        @Override
+        public Void visitLiteralExpr(int expr) {
+            if (arena.literalValue(expr) instanceof Double) numbers++;
+            return null;
+        }
+
+        @Override
+        public Void visitUnaryExpr(int expr) {
+            arena.accept(arena.unaryRight(expr), this);
+            return null;
+        }
+
+        @Override
+        public Void visitVariableExpr(int expr) {
+            return null;
+        }
+    }
+}
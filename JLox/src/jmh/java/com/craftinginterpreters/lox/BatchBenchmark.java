@@ -0,0 +1,66 @@
+package com.craftinginterpreters.lox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * A formula over 1M rows of two columns: row by row with the
+ * Interpreter, and in blocks with the BatchEvaluator using plain loops
+ * or the Vector API (the same than scalar if the module is missing).
+ */
+@State(Scope.Benchmark)
+public class BatchBenchmark {
+    private static final int ROWS = 1 << 20;
+
+    @Param({"price * qty - price * qty / 10",
+            "qty == 0 ? 0 : price / qty",
+            "price > 100 ? (qty > 10 ? price * 0.8 : price * 0.9) : price + qty / 2"})
+    public String formula;
+
+    private double[][] columns;
+    private double[] results;
+    private BatchEvaluator scalar;
+    private BatchEvaluator vector;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        double[] price = new double[ROWS];
+        double[] qty = new double[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            price[i] = random.nextInt(20000) / 100.0;
+            qty[i] = random.nextInt(20);
+        }
+        columns = new double[][]{price, qty};
+        results = new double[ROWS];
+
+        Expr expr = new Parser(new Scanner(formula)).parse();
+        scalar = new BatchEvaluator(expr, new ScalarKernels(), "price", "qty");
+        vector = new BatchEvaluator(expr, "price", "qty");
+    }
+
+    @Benchmark
+    public double[] perRow() {
+        for (int i = 0; i < ROWS; i++) {
+            results[i] = scalar.evaluateRow(columns, i);
+        }
+        return results;
+    }
+
+    @Benchmark
+    public double[] scalar() {
+        scalar.evaluate(columns, results);
+        return results;
+    }
+
+    @Benchmark
+    public double[] vector() {
+        vector.evaluate(columns, results);
+        return results;
+    }
+}
@@ -0,0 +1,195 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Inputs for the benchmarks. Names ending in ".lox" are read from the
+ * mycode directory (set with -Djlox.corpus, see build.gradle), the
+ * rest are generated, always with the same seed so every run measures
+ * the same code:
+ *
+ *   script-large      the mycode scripts repeated up to ~4MB
+ *   expression-small  a balanced expression with 64 numbers
+ *   expression-large  a balanced expression with 64K numbers (~1MB)
+ *   expression-nested 200 nested groupings, for the depth of the parsers
+ *   expression-deep   1M nested groupings, only the parsers and walkers
+ *                     without recursion can take it
+ *   expression-repeated a balanced expression of 4K operands, each one
+ *                     of them is one of 16 small expressions, like
+ *                     generated code
+ *   arithmetic-large  a balanced expression with 64K numbers and only
+ *                     arithmetic operators, so it can be run
+ *   conditional-large conditionals nested 10 deep in the condition and
+ *                     in both branches, a run takes one path of ~1K
+ *                     comparisons and jumps
+ */
+final class Corpus {
+    private static final String[] OPERATORS = {"+", "-", "*", "/", "==", "!=", "<", ">=", ","};
+    private static final String[] ARITHMETIC = {"+", "-", "*", "/"};
+
+    private Corpus() {
+    }
+
+    static String load(String name) {
+        switch (name) {
+            case "script-large":
+                return script(4 * 1024 * 1024);
+            case "expression-small":
+                return expression(6);
+            case "expression-large":
+                return expression(16);
+            case "expression-nested":
+                return nested(200);
+            case "expression-deep":
+                return nested(1_000_000);
+            case "expression-repeated":
+                return repeated(12, 16);
+            case "arithmetic-large":
+                return arithmetic(16);
+            case "conditional-large":
+                return conditional(10);
+            default:
+                return read(name);
+        }
+    }
+
+    private static String read(String name) {
+        Path path = Paths.get(System.getProperty("jlox.corpus", "../mycode"), name);
+        try {
+            return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String script(int size) {
+        String[] scripts = {read("test.lox"), read("test_classes.lox"), read("test_expressions.lox")};
+        StringBuilder builder = new StringBuilder(size + 4096);
+        for (int i = 0; builder.length() < size; i++) {
+            builder.append(scripts[i % scripts.length]).append('\n');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * A balanced tree of binary operations, so the recursive parser
+     * and printers do not go too deep.
+     */
+    private static String expression(int depth) {
+        StringBuilder builder = new StringBuilder();
+        expression(builder, depth, new Random(42));
+        return builder.toString();
+    }
+
+    /**
+     * A balanced tree where the operands are taken from a few
+     * smaller balanced trees.
+     */
+    private static String repeated(int depth, int different) {
+        Random random = new Random(42);
+        String[] operands = new String[different];
+        for (int i = 0; i < different; i++) {
+            StringBuilder builder = new StringBuilder();
+            expression(builder, 3, random);
+            operands[i] = builder.toString();
+        }
+        StringBuilder builder = new StringBuilder();
+        repeated(builder, depth, operands, random);
+        return builder.toString();
+    }
+
+    private static void repeated(StringBuilder builder, int depth, String[] operands, Random random) {
+        if (depth == 0) {
+            builder.append(operands[random.nextInt(operands.length)]);
+            return;
+        }
+        builder.append('(');
+        repeated(builder, depth - 1, operands, random);
+        builder.append(' ').append(OPERATORS[random.nextInt(OPERATORS.length)]).append(' ');
+        repeated(builder, depth - 1, operands, random);
+        builder.append(')');
+    }
+
+    /**
+     * Groupings inside groupings, each one with a binary operation, the
+     * depth is what matters here, not the size.
+     */
+    private static String nested(int depth) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            builder.append(i).append(' ').append(OPERATORS[i % OPERATORS.length]).append(" (");
+        }
+        builder.append(depth);
+        for (int i = 0; i < depth; i++) {
+            builder.append(')');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Like expression, with numbers from 1 and only the arithmetic
+     * operators, so the interpreter gives a number. The right side of
+     * a division is always a number, so it is never zero.
+     */
+    private static String arithmetic(int depth) {
+        StringBuilder builder = new StringBuilder();
+        arithmetic(builder, depth, new Random(42));
+        return builder.toString();
+    }
+
+    private static void arithmetic(StringBuilder builder, int depth, Random random) {
+        if (depth == 0) {
+            builder.append(1 + random.nextInt(999));
+            if (random.nextBoolean()) builder.append('.').append(random.nextInt(100));
+            return;
+        }
+        String operator = ARITHMETIC[random.nextInt(ARITHMETIC.length)];
+        builder.append('(');
+        arithmetic(builder, depth - 1, random);
+        builder.append(' ').append(operator).append(' ');
+        arithmetic(builder, operator.equals("/") ? 0 : depth - 1, random);
+        builder.append(')');
+    }
+
+    /**
+     * `(c > n ? c + n : c - n)` where each `c` is another conditional.
+     */
+    private static String conditional(int depth) {
+        StringBuilder builder = new StringBuilder();
+        conditional(builder, depth, new Random(42));
+        return builder.toString();
+    }
+
+    private static void conditional(StringBuilder builder, int depth, Random random) {
+        if (depth == 0) {
+            builder.append(random.nextInt(1000));
+            return;
+        }
+        builder.append('(');
+        conditional(builder, depth - 1, random);
+        builder.append(" > ").append(random.nextInt(1000)).append(" ? ");
+        conditional(builder, depth - 1, random);
+        builder.append(" + ").append(random.nextInt(1000)).append(" : ");
+        conditional(builder, depth - 1, random);
+        builder.append(" - ").append(random.nextInt(1000)).append(')');
+    }
+
+    private static void expression(StringBuilder builder, int depth, Random random) {
+        if (depth == 0) {
+            builder.append(random.nextInt(1000));
+            if (random.nextBoolean()) builder.append('.').append(random.nextInt(100));
+            return;
+        }
+        builder.append('(');
+        expression(builder, depth - 1, random);
+        builder.append(' ').append(OPERATORS[random.nextInt(OPERATORS.length)]).append(' ');
+        expression(builder, depth - 1, random);
+        builder.append(')');
+    }
+}
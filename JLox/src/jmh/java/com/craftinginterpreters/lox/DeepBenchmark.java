@@ -0,0 +1,48 @@
+package com.craftinginterpreters.lox;
+
+import com.craftinginterpreters.lox.printers.AstPrinter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * An expression nested 1M levels deep, which overflows the stack of
+ * the recursive parsers and visitors: parsing it with the
+ * IterativeParser, walking it with the ExprWalker, and printing it.
+ */
+@State(Scope.Benchmark)
+public class DeepBenchmark {
+
+    private TokenBuffer buffer;
+    private Expr expr;
+
+    @Setup
+    public void setup() {
+        buffer = new Scanner(Corpus.load("expression-deep")).scanBuffer();
+        expr = new IterativeParser(buffer).parse();
+        if (expr == null) throw new IllegalStateException("The deep expression did not parse.");
+    }
+
+    @Benchmark
+    public Expr parse() {
+        return new IterativeParser(buffer).parse();
+    }
+
+    @Benchmark
+    public int walk() {
+        TraversalBenchmark.NumberListener listener = new TraversalBenchmark.NumberListener();
+        ExprWalker.walk(expr, listener);
+        return listener.numbers;
+    }
+
+    @Benchmark
+    public Writer print() throws IOException {
+        Writer out = Writer.nullWriter();
+        new AstPrinter().print(expr, out);
+        return out;
+    }
+}
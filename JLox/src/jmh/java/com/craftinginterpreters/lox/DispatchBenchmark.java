@@ -0,0 +1,124 @@
+package com.craftinginterpreters.lox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The two forms of the AST from GenerateAst under the same evaluator:
+ * the Expr classes dispatched with the Visitor (accept and a virtual
+ * call), and the ExprNode records dispatched with a switch over their
+ * kind. The evaluator only knows numbers, comparisons give 1 or 0, so
+ * what is measured is the dispatch and not the boxing or the checks.
+ */
+@State(Scope.Benchmark)
+public class DispatchBenchmark {
+
+    @Param({"arithmetic-large", "conditional-large"})
+    public String corpus;
+
+    private Expr expr;
+    private ExprNode node;
+
+    @Setup
+    public void setup() {
+        expr = new Parser(new Scanner(Corpus.load(corpus))).parse();
+        node = ExprNode.from(expr);
+    }
+
+    @Benchmark
+    public double visitor() {
+        VisitorEvaluator evaluator = new VisitorEvaluator();
+        expr.accept(evaluator);
+        return evaluator.value;
+    }
+
+    @Benchmark
+    public double kindSwitch() {
+        return evaluate(node);
+    }
+
+    private static double evaluate(ExprNode node) {
+        switch (node.kind()) {
+            case ExprNode.BINARY: {
+                ExprNode.Binary binary = (ExprNode.Binary) node;
+                return binary(binary.operator().type, evaluate(binary.left()), evaluate(binary.right()));
+            }
+            case ExprNode.CONDITIONAL: {
+                ExprNode.Conditional conditional = (ExprNode.Conditional) node;
+                return evaluate(conditional.condition()) != 0 ? evaluate(conditional.true_statement())
+                                                              : evaluate(conditional.false_statement());
+            }
+            case ExprNode.GROUPING:
+                return evaluate(((ExprNode.Grouping) node).expression());
+            case ExprNode.LITERAL:
+                return (double) ((ExprNode.Literal) node).value();
+            case ExprNode.UNARY:
+                return -evaluate(((ExprNode.Unary) node).right());
+            default:
+                throw new IllegalStateException("Unknown kind of node: " + node.kind());
+        }
+    }
+
+    private static double binary(TokenType operator, double left, double right) {
+        switch (operator) {
+            case PLUS: return left + right;
+            case MINUS: return left - right;
+            case STAR: return left * right;
+            case SLASH: return left / right;
+            case GREATER: return left > right ? 1 : 0;
+            default:
+                throw new IllegalStateException("Unknown operator: " + operator);
+        }
+    }
+
+    /**
+     * Leaves the value in a field, so the Visitor does not box it.
+     */
+    private static class VisitorEvaluator implements Expr.Visitor<Void> {
+        double value;
+
+        @Override
+        public Void visitBinaryExpr(Expr.Binary expr) {
+            expr.left.accept(this);
+            double left = value;
+            expr.right.accept(this);
+            value = binary(expr.operator.type, left, value);
+            return null;
+        }
+
+        @Override
+        public Void visitConditionalExpr(Expr.Conditional expr) {
+            expr.condition.accept(this);
+            if (value != 0) expr.true_statement.accept(this);
+            else expr.false_statement.accept(this);
+            return null;
+        }
+
+        @Override
+        public Void visitGroupingExpr(Expr.Grouping expr) {
+            expr.expression.accept(this);
+            return null;
+        }
+
+        @Override
+        public Void visitLiteralExpr(Expr.Literal expr) {
+            value = (double) expr.value;
+            return null;
+        }
+
+        @Override
+        public Void visitUnaryExpr(Expr.Unary expr) {
+            expr.right.accept(this);
+            value = -value;
+            return null;
+        }
+
+        @Override
+        public Void visitVariableExpr(Expr.Variable expr) {
+            throw new IllegalStateException("No variables in the corpus.");
+        }
+    }
+}
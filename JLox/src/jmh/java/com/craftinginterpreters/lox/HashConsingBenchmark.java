@@ -0,0 +1,43 @@
+package com.craftinginterpreters.lox;
+
+import com.craftinginterpreters.lox.printers.AstPrinter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Parsing with and without the HashConsingFactory (the gc profiler
+ * shows what each one allocates), and printing the resulting AST.
+ */
+@State(Scope.Benchmark)
+public class HashConsingBenchmark {
+
+    @Param({"expression-large", "expression-repeated"})
+    public String corpus;
+
+    @Param({"false", "true"})
+    public boolean hashCons;
+
+    private TokenBuffer buffer;
+    private Expr expr;
+
+    @Setup
+    public void setup() {
+        buffer = new Scanner(Corpus.load(corpus)).scanBuffer();
+        expr = parse();
+    }
+
+    @Benchmark
+    public Expr parse() {
+        Parser parser = new PrattParser(buffer);
+        if (hashCons) parser.setFactory(new HashConsingFactory());
+        return parser.parse();
+    }
+
+    @Benchmark
+    public String print() {
+        return new AstPrinter().print(expr);
+    }
+}
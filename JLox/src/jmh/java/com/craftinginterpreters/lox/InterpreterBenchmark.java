@@ -0,0 +1,31 @@
+package com.craftinginterpreters.lox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Running a parsed expression with the tree-walking Interpreter.
+ */
+@State(Scope.Benchmark)
+public class InterpreterBenchmark {
+
+    @Param({"test_ternary.lox", "arithmetic-large"})
+    public String corpus;
+
+    private Expr expr;
+    private Interpreter interpreter;
+
+    @Setup
+    public void setup() {
+        expr = new Parser(new Scanner(Corpus.load(corpus))).parse();
+        interpreter = new Interpreter();
+    }
+
+    @Benchmark
+    public Object evaluate() {
+        return interpreter.evaluate(expr);
+    }
+}
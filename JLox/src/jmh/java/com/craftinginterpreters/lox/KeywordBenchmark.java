@@ -0,0 +1,65 @@
+package com.craftinginterpreters.lox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.craftinginterpreters.lox.TokenType.*;
+
+/**
+ * Recognition of keywords: the switch used by the Scanner against
+ * the map lookup it used before, over the identifiers of the scripts.
+ */
+@State(Scope.Benchmark)
+public class KeywordBenchmark {
+    private static final Map<String, TokenType> keywords = new HashMap<>();
+
+    static {
+        for (TokenType type : new TokenType[]{AND, CLASS, ELSE, FALSE, FOR, FUN, IF, NIL,
+                OR, PRINT, RETURN, SUPER, THIS, TRUE, VAR, WHILE}) {
+            keywords.put(type.lexeme, type);
+        }
+    }
+
+    private TokenBuffer tokens;
+    private int[] identifiers;
+
+    @Setup
+    public void setup() {
+        tokens = new Scanner(Corpus.load("script-large")).scanBuffer();
+        int count = 0;
+        int[] found = new int[tokens.size()];
+        for (int i = 0; i < tokens.size(); i++) {
+            TokenType type = tokens.type(i);
+            // identifiers and keywords (declared between AND and WHILE)
+            if (type == IDENTIFIER || (type.compareTo(AND) >= 0 && type.compareTo(WHILE) <= 0))
+                found[count++] = i;
+        }
+        identifiers = Arrays.copyOf(found, count);
+    }
+
+    @Benchmark
+    public void mapLookup(Blackhole blackhole) {
+        Source source = tokens.source();
+        for (int index : identifiers) {
+            int start = tokens.start(index);
+            TokenType type = keywords.get(source.text(start, start + tokens.length(index)));
+            blackhole.consume(type == null ? IDENTIFIER : type);
+        }
+    }
+
+    @Benchmark
+    public void switchLookup(Blackhole blackhole) {
+        Source source = tokens.source();
+        for (int index : identifiers) {
+            int start = tokens.start(index);
+            blackhole.consume(Scanner.keywordType(source, start, start + tokens.length(index)));
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.craftinginterpreters.lox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How the parallel scanner scales with the number of threads, with
+ * the sequential scanner as the reference.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ParallelScannerBenchmark {
+
+    @Param({"script-large", "expression-large"})
+    public String corpus;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private StringSource source;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setup() {
+        source = new StringSource(Corpus.load(corpus));
+        pool = new ForkJoinPool(threads);
+        System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public TokenBuffer sequential() {
+        return new Scanner(source).scanBuffer();
+    }
+
+    @Benchmark
+    public TokenBuffer parallel() {
+        return ParallelScanner.scan(source, source.length(), new SymbolTable(), pool);
+    }
+}
@@ -0,0 +1,54 @@
+package com.craftinginterpreters.lox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+/**
+ * Parsing phase, from the tokens already scanned, and the whole
+ * front end streaming the tokens from the scanner, with the
+ * recursive descent Parser and with the PrattParser.
+ */
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+
+    @Param({"test_ternary.lox", "expression-small", "expression-large", "expression-nested"})
+    public String corpus;
+
+    @Param({"descent", "pratt"})
+    public String parser;
+
+    private String source;
+    private List<Token> tokens;
+    private TokenBuffer buffer;
+
+    @Setup
+    public void setup() {
+        source = Corpus.load(corpus);
+        tokens = new Scanner(source).scanTokens();
+        buffer = new Scanner(source).scanBuffer();
+    }
+
+    @Benchmark
+    public Expr parseList() {
+        return parser.equals("pratt") ? new PrattParser(tokens).parse()
+                                      : new Parser(tokens).parse();
+    }
+
+    @Benchmark
+    public Expr parseBuffer() {
+        return parser.equals("pratt") ? new PrattParser(buffer).parse()
+                                      : new Parser(buffer).parse();
+    }
+
+    @Benchmark
+    public Expr scanAndParse() {
+        Scanner scanner = new Scanner(source);
+        return parser.equals("pratt") ? new PrattParser(scanner).parse()
+                                      : new Parser(scanner).parse();
+    }
+}
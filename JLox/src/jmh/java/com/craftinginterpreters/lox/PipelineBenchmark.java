@@ -0,0 +1,57 @@
+package com.craftinginterpreters.lox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole front end like Lox.run does it (parse, then scan what the
+ * parser did not need), pulling the tokens from the scanner in the
+ * same thread or from the PipelinedScanner. Both phases only overlap
+ * with more than one core.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PipelineBenchmark {
+
+    @Param({"script-large", "expression-large"})
+    public String corpus;
+
+    private StringSource source;
+
+    @Setup
+    public void setup() {
+        source = new StringSource(Corpus.load(corpus));
+        System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @Benchmark
+    public Expr stream() {
+        return run(new Scanner(source, new SymbolTable()));
+    }
+
+    @Benchmark
+    public Expr pipelined() {
+        PipelinedScanner pipe = new PipelinedScanner();
+        Scanner scanner = new Scanner(source, new SymbolTable());
+        scanner.setErrorReporter(pipe::error);
+        pipe.start(scanner);
+        return run(pipe);
+    }
+
+    private static Expr run(TokenSource tokens) {
+        Expr expr = new PrattParser(tokens).parse();
+        while (tokens.nextToken().type != TokenType.EOF);
+        return expr;
+    }
+}
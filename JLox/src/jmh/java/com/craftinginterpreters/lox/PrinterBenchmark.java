@@ -0,0 +1,55 @@
+package com.craftinginterpreters.lox;
+
+import com.craftinginterpreters.lox.printers.AstPrinter;
+import com.craftinginterpreters.lox.printers.RPNPrinter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Printing phase, both printers over the same trees, into a string
+ * and streamed into a Writer that drops the output, so only the walk
+ * and the writes are measured.
+ */
+@State(Scope.Benchmark)
+public class PrinterBenchmark {
+
+    @Param({"test_ternary.lox", "expression-small", "expression-large"})
+    public String corpus;
+
+    private Expr expr;
+
+    @Setup
+    public void setup() {
+        expr = new Parser(new Scanner(Corpus.load(corpus))).parse();
+    }
+
+    @Benchmark
+    public String astPrinter() {
+        return new AstPrinter().print(expr);
+    }
+
+    @Benchmark
+    public String rpnPrinter() {
+        return new RPNPrinter().print(expr);
+    }
+
+    @Benchmark
+    public Writer astPrinterStream() throws IOException {
+        Writer out = Writer.nullWriter();
+        new AstPrinter().print(expr, out);
+        return out;
+    }
+
+    @Benchmark
+    public Writer rpnPrinterStream() throws IOException {
+        Writer out = Writer.nullWriter();
+        new RPNPrinter().print(expr, out);
+        return out;
+    }
+}
@@ -0,0 +1,57 @@
+package com.craftinginterpreters.lox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.List;
+
+/**
+ * Scanning phase, the same inputs with the different scanners.
+ */
+@State(Scope.Benchmark)
+public class ScannerBenchmark {
+
+    @Param({"test.lox", "test_classes.lox", "test_expressions.lox", "script-large", "expression-large"})
+    public String corpus;
+
+    private String source;
+
+    @Setup
+    public void setup() {
+        source = Corpus.load(corpus);
+        // some inputs have lexical errors, we do not want them in the output
+        System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @Benchmark
+    public List<Token> scanTokens() {
+        return new Scanner(source).scanTokens();
+    }
+
+    @Benchmark
+    public TokenBuffer scanBuffer() {
+        return new Scanner(source).scanBuffer();
+    }
+
+    @Benchmark
+    public void stream(Blackhole blackhole) {
+        Scanner scanner = new Scanner(new ReaderSource(new StringReader(source)));
+        Token token;
+        do {
+            token = scanner.nextToken();
+            blackhole.consume(token);
+        } while (token.type != TokenType.EOF);
+    }
+
+    @Benchmark
+    public List<Token> dfa() {
+        return new DfaScanner(new StringSource(source), new SymbolTable()).scanTokens();
+    }
+}
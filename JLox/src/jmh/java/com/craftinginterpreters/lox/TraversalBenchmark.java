@@ -0,0 +1,110 @@
+package com.craftinginterpreters.lox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The recursive paths against the ones that keep their stack on the
+ * heap: parsing with the Parser, the PrattParser and the
+ * IterativeParser, and walking the tree with an Expr.Visitor and with
+ * the ExprWalker. The depths here are the ones the recursive paths can
+ * take, DeepBenchmark goes further with the iterative ones.
+ */
+@State(Scope.Benchmark)
+public class TraversalBenchmark {
+
+    @Param({"expression-nested", "expression-large"})
+    public String corpus;
+
+    private TokenBuffer buffer;
+    private Expr expr;
+
+    @Setup
+    public void setup() {
+        buffer = new Scanner(Corpus.load(corpus)).scanBuffer();
+        expr = new Parser(buffer).parse();
+    }
+
+    @Benchmark
+    public Expr parseDescent() {
+        return new Parser(buffer).parse();
+    }
+
+    @Benchmark
+    public Expr parsePratt() {
+        return new PrattParser(buffer).parse();
+    }
+
+    @Benchmark
+    public Expr parseIterative() {
+        return new IterativeParser(buffer).parse();
+    }
+
+    @Benchmark
+    public int walkRecursive() {
+        NumberCounter counter = new NumberCounter();
+        expr.accept(counter);
+        return counter.numbers;
+    }
+
+    @Benchmark
+    public int walkIterative() {
+        NumberListener listener = new NumberListener();
+        ExprWalker.walk(expr, listener);
+        return listener.numbers;
+    }
+
+    static class NumberListener implements ExprWalker.Listener {
+        int numbers = 0;
+
+        @Override
+        public void enter(Expr expr) {
+            if (expr instanceof Expr.Literal && ((Expr.Literal) expr).value instanceof Double) numbers++;
+        }
+    }
+
+    private static class NumberCounter implements Expr.Visitor<Void> {
+        int numbers = 0;
+
+        @Override
+        public Void visitBinaryExpr(Expr.Binary expr) {
+            expr.left.accept(this);
+            expr.right.accept(this);
+            return null;
+        }
+
+        @Override
+        public Void visitConditionalExpr(Expr.Conditional expr) {
+            expr.condition.accept(this);
+            expr.true_statement.accept(this);
+            expr.false_statement.accept(this);
+            return null;
+        }
+
+        @Override
+        public Void visitGroupingExpr(Expr.Grouping expr) {
+            expr.expression.accept(this);
+            return null;
+        }
+
+        @Override
+        public Void visitLiteralExpr(Expr.Literal expr) {
+            if (expr.value instanceof Double) numbers++;
+            return null;
+        }
+
+        @Override
+        public Void visitUnaryExpr(Expr.Unary expr) {
+            expr.right.accept(this);
+            return null;
+        }
+
+        @Override
+        public Void visitVariableExpr(Expr.Variable expr) {
+            return null;
+        }
+    }
+}
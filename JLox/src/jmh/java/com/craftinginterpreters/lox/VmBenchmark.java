@@ -0,0 +1,88 @@
+package com.craftinginterpreters.lox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Throughput of the execution modes over the same AST: walking it
+ * with the Interpreter, running its bytecode in the VM, running the
+ * tree of the SpecializingInterpreter once its nodes have
+ * specialized, running the lambdas of the ClosureCompiler, or running
+ * it through the TieredInterpreter once it has been compiled to a JVM
+ * class. Compiling to bytecode, to lambdas and to a JVM class is
+ * measured on its own.
+ */
+@State(Scope.Benchmark)
+public class VmBenchmark {
+
+    @Param({"arithmetic-large", "conditional-large"})
+    public String corpus;
+
+    private Expr expr;
+    private Chunk chunk;
+    private Interpreter interpreter;
+    private VM vm;
+    private SpecializingInterpreter specializing;
+    private Node.Root root;
+    private ClosureCompiler.Evaluator closure;
+    private TieredInterpreter tiered;
+
+    @Setup
+    public void setup() {
+        expr = new Parser(new Scanner(Corpus.load(corpus))).parse();
+        chunk = new Compiler().compile(expr);
+        interpreter = new Interpreter();
+        vm = new VM();
+        specializing = new SpecializingInterpreter();
+        root = specializing.prepare(expr);
+        // the first run specializes the nodes
+        specializing.execute(root);
+        closure = new ClosureCompiler().compile(expr);
+        tiered = new TieredInterpreter(1);
+        // the first run compiles it
+        tiered.evaluate(expr);
+    }
+
+    @Benchmark
+    public Object tree() {
+        return interpreter.evaluate(expr);
+    }
+
+    @Benchmark
+    public Object vm() {
+        return vm.run(chunk);
+    }
+
+    @Benchmark
+    public Object specialize() {
+        return specializing.execute(root);
+    }
+
+    @Benchmark
+    public Object closure() {
+        return closure.evaluate();
+    }
+
+    @Benchmark
+    public Object tiered() {
+        return tiered.evaluate(expr);
+    }
+
+    @Benchmark
+    public Chunk compile() {
+        return new Compiler().compile(expr);
+    }
+
+    @Benchmark
+    public ClosureCompiler.Evaluator compileClosure() {
+        return new ClosureCompiler().compile(expr);
+    }
+
+    @Benchmark
+    public ClosureCompiler.Evaluator compileJvm() throws ReflectiveOperationException {
+        return new JvmCompiler().compile(expr);
+    }
+}
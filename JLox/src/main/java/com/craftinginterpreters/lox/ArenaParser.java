@@ -0,0 +1,126 @@
+package com.craftinginterpreters.lox;
+
+import static com.craftinginterpreters.lox.PrattParser.*;
+import static com.craftinginterpreters.lox.TokenType.*;
+
+/***
+ * Parser that builds the nodes straight into an ExprArena instead of
+ * creating an Expr object for each node. The operators are stored as
+ * the index of their token, so the tokens must come from a
+ * TokenBuffer, which is also kept by the arena.
+ *
+ * It is a Pratt parser like PrattParser, with the same binding
+ * powers, so the trees and the errors are the same than the ones of
+ * the other parsers.
+ */
+public class ArenaParser extends Parser {
+
+    private final ExprArena arena;
+
+    ArenaParser(TokenBuffer buffer) {
+        super(buffer);
+        // every node consumes at least one token of its own, so
+        // there are never more nodes than tokens and the arena
+        // does not need to grow
+        this.arena = new ExprArena(buffer, buffer.size());
+    }
+
+    /**
+     * @return arena where the nodes are created
+     */
+    ExprArena arena() {
+        return arena;
+    }
+
+    /**
+     * Parse the tokens into the arena.
+     *
+     * @return index of the root node, -1 if there was a syntax error
+     */
+    public int parseNode() {
+        try {
+            return parsePrecedence(COMMA_POWER);
+        } catch (ParseError e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Calling `parse` still works, the nodes are parsed into the
+     * arena and then converted to Expr objects.
+     */
+    @Override
+    Expr expression() {
+        return arena.expr(parsePrecedence(COMMA_POWER));
+    }
+
+    /**
+     * Same than PrattParser.parsePrecedence, but creating the
+     * nodes in the arena.
+     *
+     * @param power minimum binding power of the operators to consume
+     * @return index of the parsed node
+     */
+    private int parsePrecedence(int power) {
+        int node = prefix();
+
+        for (;;) {
+            int infix = infix(peekType());
+            if (infix == NONE || infix < power) return node;
+
+            step();
+            if (infix == TERNARY) {
+                int true_node = parsePrecedence(EQUALITY);
+                consume(COLON, "Expected ':' token in ternary operation.");
+                int false_node = parsePrecedence(EQUALITY);
+                node = arena.conditional(node, true_node, false_node);
+            } else {
+                int operator = previousIndex();
+                int right = parsePrecedence(infix + 1);
+                node = arena.binary(node, operator, right);
+            }
+        }
+    }
+
+    /**
+     * The tokens that can start an expression: unary operators, literals,
+     * variables and groupings.
+     *
+     * @return index of the parsed node
+     */
+    private int prefix() {
+        switch (peekType()) {
+            case BANG:
+            case MINUS: {
+                step();
+                int operator = previousIndex();
+                int right = parsePrecedence(UNARY);
+                return arena.unary(operator, right);
+            }
+            case FALSE:
+                step();
+                return arena.literal(false);
+            case TRUE:
+                step();
+                return arena.literal(true);
+            case NIL:
+                step();
+                return arena.literal(null);
+            case NUMBER:
+            case STRING:
+                step();
+                return arena.literal(previousLiteral());
+            case IDENTIFIER:
+                step();
+                return arena.variable(previousIndex());
+            case LEFT_PAREN: {
+                step();
+                int node = parsePrecedence(COMMA_POWER);
+                consume(RIGHT_PAREN, "Expected ')' after expression.");
+                return arena.grouping(node);
+            }
+            default:
+                throw error(peek(), "Expected expression.");
+        }
+    }
+}
@@ -0,0 +1,506 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/***
+ * Cache of parsed files on disk, so a file that did not change since
+ * the last run does not need to be scanned and parsed again.
+ *
+ * The entries are named after the SHA-256 of the front end version
+ * and the content of the file, so a change in any of both gives a
+ * different entry. Every entry has a header and the nodes:
+ *
+ * +--------+-------------------------------------------+
+ * | int    | MAGIC                                     |
+ * | int    | VERSION of the front end                  |
+ * | 32B    | key of the entry                          |
+ * | int    | number of nodes                           |
+ * | int    | size of the nodes in bytes                |
+ * | long   | CRC32 of the nodes                        |
+ * | ...    | the nodes                                 |
+ * +--------+-------------------------------------------+
+ *
+ * The nodes are written children first, and a node refers to its
+ * children by their position, so the last node is the root. Shared
+ * nodes (see HashConsingFactory) are written only once. Operators
+ * are written as their type and their line, variables as their line
+ * and their name, and literals with a tag and their value. Positions,
+ * lines and lengths are written as varints (see Writer), so the
+ * entries are small.
+ *
+ * Entries are written to a temporary file that is then renamed, so
+ * other processes reading the cache at the same time find the old
+ * entry or the whole new one, never half of it. Entries are read
+ * mapping them in memory. An entry that does not pass every check
+ * (the header, the size, the CRC, the structure of the nodes) is
+ * ignored, so the file is parsed again and the entry rewritten.
+ */
+public class AstCache {
+    // "LoxA" in ASCII
+    private static final int MAGIC = 0x4C6F7841;
+    // change it whenever the scanner, the parser or this format change
+    // in a way that gives a different AST for the same file
+    static final int VERSION = 2;
+    private static final int KEY_SIZE = 32;
+    private static final int HEADER_SIZE = 4 + 4 + KEY_SIZE + 4 + 4 + 8;
+
+    // kinds of nodes
+    private static final byte BINARY = 0;
+    private static final byte CONDITIONAL = 1;
+    private static final byte GROUPING = 2;
+    private static final byte LITERAL = 3;
+    private static final byte UNARY = 4;
+    private static final byte VARIABLE = 5;
+
+    // tags of the literals
+    private static final byte NIL = 0;
+    private static final byte FALSE = 1;
+    private static final byte TRUE = 2;
+    private static final byte INTEGER = 3;
+    private static final byte NUMBER = 4;
+    private static final byte STRING = 5;
+    private static final long NEGATIVE_ZERO = Double.doubleToRawLongBits(-0.0);
+
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private final Path directory;
+
+    AstCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Key of the entry of a file.
+     *
+     * @param content bytes of the file
+     * @return SHA-256 of the version of the front end and the content
+     */
+    byte[] key(ByteBuffer content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(ByteBuffer.allocate(8).putInt(MAGIC).putInt(VERSION).flip());
+            digest.update(content.duplicate());
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform must have SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Load the AST of an entry.
+     *
+     * @param key key of the entry
+     * @param symbols table where strings are interned
+     * @return the AST, null if there is no entry or it is not valid
+     */
+    Expr load(byte[] key, SymbolTable symbols) {
+        MappedByteBuffer entry;
+        try (FileChannel channel = FileChannel.open(path(key), StandardOpenOption.READ)) {
+            entry = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            // no entry yet, or it cannot be read
+            return null;
+        }
+
+        try {
+            return read(entry, key, symbols);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            // truncated or damaged entry
+            return null;
+        }
+    }
+
+    private Expr read(ByteBuffer entry, byte[] key, SymbolTable symbols) {
+        if (entry.capacity() < HEADER_SIZE) return null;
+        if (entry.getInt() != MAGIC || entry.getInt() != VERSION) return null;
+
+        byte[] entryKey = new byte[KEY_SIZE];
+        entry.get(entryKey);
+        if (!MessageDigest.isEqual(key, entryKey)) return null;
+
+        int count = entry.getInt();
+        int size = entry.getInt();
+        long crc = entry.getLong();
+        // every node takes at least two bytes
+        if (count <= 0 || count > size / 2 || size != entry.remaining()) return null;
+
+        CRC32 check = new CRC32();
+        check.update(entry.duplicate());
+        if (check.getValue() != crc) return null;
+
+        return new Reader(entry, count, symbols).read();
+    }
+
+    /**
+     * Store the AST of a file, if the cache cannot be written the
+     * file is just parsed again the next time.
+     *
+     * @param key key of the entry
+     * @param expr AST of the file
+     */
+    void store(byte[] key, Expr expr) {
+        Writer writer = new Writer();
+        writer.write(expr);
+        ByteBuffer nodes = writer.bytes();
+
+        CRC32 crc = new CRC32();
+        crc.update(nodes.duplicate());
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).put(key)
+              .putInt(writer.count).putInt(nodes.remaining()).putLong(crc.getValue());
+        header.flip();
+
+        Path temp = null;
+        try {
+            Files.createDirectories(directory);
+            // one temporary file for each writer, so processes
+            // writing the same entry do not mix their bytes
+            temp = Files.createTempFile(directory, hex(key), ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (header.hasRemaining()) channel.write(header);
+                while (nodes.hasRemaining()) channel.write(nodes);
+                channel.force(false);
+            }
+            try {
+                Files.move(temp, path(key), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path(key), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            try {
+                if (temp != null) Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // nothing else to do, it is only a temporary file
+            }
+        }
+    }
+
+    private Path path(byte[] key) {
+        return directory.resolve(hex(key) + ".ast");
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder();
+        for (byte b : bytes) builder.append(String.format("%02x", b));
+        return builder.toString();
+    }
+
+    /**
+     * Reads the nodes written by a Writer.
+     */
+    private static class Reader {
+        private final ByteBuffer entry;
+        private final Expr[] nodes;
+        private final SymbolTable symbols;
+        private int line = 0;
+
+        Reader(ByteBuffer entry, int count, SymbolTable symbols) {
+            this.entry = entry;
+            this.nodes = new Expr[count];
+            this.symbols = symbols;
+        }
+
+        /**
+         * @return the root, null if the entry is not valid
+         */
+        Expr read() {
+            for (int i = 0; i < nodes.length; i++) {
+                switch (entry.get()) {
+                    case BINARY: {
+                        Expr left = child(i);
+                        Token operator = operator();
+                        Expr right = child(i);
+                        nodes[i] = new Expr.Binary(left, operator, right);
+                        break;
+                    }
+                    case CONDITIONAL: {
+                        Expr condition = child(i);
+                        Expr true_statement = child(i);
+                        Expr false_statement = child(i);
+                        nodes[i] = new Expr.Conditional(condition, true_statement, false_statement);
+                        break;
+                    }
+                    case GROUPING:
+                        nodes[i] = new Expr.Grouping(child(i));
+                        break;
+                    case LITERAL:
+                        nodes[i] = new Expr.Literal(literal());
+                        break;
+                    case UNARY: {
+                        Token operator = operator();
+                        Expr right = child(i);
+                        nodes[i] = new Expr.Unary(operator, right);
+                        break;
+                    }
+                    case VARIABLE:
+                        nodes[i] = new Expr.Variable(name());
+                        break;
+                    default:
+                        return null;
+                }
+            }
+            if (entry.hasRemaining()) return null;
+            return nodes[nodes.length - 1];
+        }
+
+        /**
+         * Children always go before their parents, they are
+         * written as the distance to the parent.
+         */
+        private Expr child(int parent) {
+            int distance = varint(entry);
+            if (distance <= 0 || distance > parent) throw new IllegalArgumentException("Bad child: " + distance);
+            return nodes[parent - distance];
+        }
+
+        private Token operator() {
+            int type = entry.get() & 0xFF;
+            line += zigzag(varint(entry));
+            if (type >= TYPES.length || TYPES[type].lexeme == null)
+                throw new IllegalArgumentException("Bad operator: " + type);
+            return new Token(TYPES[type], TYPES[type].lexeme, null, line);
+        }
+
+        private Token name() {
+            line += zigzag(varint(entry));
+            return new Token(TokenType.IDENTIFIER, string(), null, line);
+        }
+
+        private Object literal() {
+            switch (entry.get()) {
+                case NIL: return null;
+                case FALSE: return false;
+                case TRUE: return true;
+                case INTEGER: return (double) varint(entry);
+                case NUMBER: return entry.getDouble();
+                case STRING: return string();
+                default:
+                    throw new IllegalArgumentException("Bad literal");
+            }
+        }
+
+        private String string() {
+            int length = varint(entry);
+            if (length > entry.remaining())
+                throw new IllegalArgumentException("Bad string length: " + length);
+            byte[] bytes = new byte[length];
+            entry.get(bytes);
+            return symbols.intern(new String(bytes, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Read an unsigned LEB128 number, 7 bits in each byte
+     * and the high bit set when more bytes follow.
+     */
+    private static int varint(ByteBuffer entry) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = entry.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                if (value < 0) break;
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Bad varint");
+    }
+
+    /**
+     * Line deltas can be negative, zigzag maps 0, -1, 1, -2...
+     * to 0, 1, 2, 3... so small deltas take one byte.
+     */
+    private static int zigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Writes the nodes children first, giving each one its position
+     * when it is written. Children are written as the distance to
+     * their parent, which is usually small (the last child is right
+     * before its parent), and lines as the difference with the line
+     * of the previous operator, so most of them take one byte.
+     */
+    private static class Writer {
+        private final Map<Expr, Integer> ids = new IdentityHashMap<>();
+        private final ByteOutput out = new ByteOutput();
+        private int line = 0;
+        int count = 0;
+
+        /**
+         * Write the tree children first without recursion, the path to
+         * the node being written is kept in arrays like in ExprWalker.
+         * Nodes already written (shared ones) are not walked again.
+         *
+         * @param root root of the tree
+         */
+        void write(Expr root) {
+            Expr[] path = new Expr[64];
+            int[] next = new int[64];
+            int top = 0;
+            if (!ids.containsKey(root)) path[top++] = root;
+
+            while (top > 0) {
+                Expr expr = path[top - 1];
+                Expr child = ExprWalker.child(expr, next[top - 1]);
+                if (child == null) {
+                    // all the children are written
+                    node(expr);
+                    top--;
+                    continue;
+                }
+
+                next[top - 1]++;
+                if (ids.containsKey(child)) continue;
+                if (top == path.length) {
+                    path = Arrays.copyOf(path, top * 2);
+                    next = Arrays.copyOf(next, top * 2);
+                }
+                path[top] = child;
+                next[top] = 0;
+                top++;
+            }
+        }
+
+        /**
+         * Write one node, its children must be written already.
+         */
+        private void node(Expr expr) {
+            if (expr instanceof Expr.Binary) {
+                Expr.Binary binary = (Expr.Binary) expr;
+                out.put(BINARY).putVarint(count - ids.get(binary.left));
+                operator(binary.operator);
+                out.putVarint(count - ids.get(binary.right));
+            } else if (expr instanceof Expr.Conditional) {
+                Expr.Conditional conditional = (Expr.Conditional) expr;
+                out.put(CONDITIONAL).putVarint(count - ids.get(conditional.condition))
+                   .putVarint(count - ids.get(conditional.true_statement))
+                   .putVarint(count - ids.get(conditional.false_statement));
+            } else if (expr instanceof Expr.Grouping) {
+                out.put(GROUPING).putVarint(count - ids.get(((Expr.Grouping) expr).expression));
+            } else if (expr instanceof Expr.Literal) {
+                out.put(LITERAL);
+                literal(((Expr.Literal) expr).value);
+            } else if (expr instanceof Expr.Unary) {
+                Expr.Unary unary = (Expr.Unary) expr;
+                out.put(UNARY);
+                operator(unary.operator);
+                out.putVarint(count - ids.get(unary.right));
+            } else {
+                Expr.Variable variable = (Expr.Variable) expr;
+                out.put(VARIABLE);
+                name(variable.name);
+            }
+
+            ids.put(expr, count++);
+        }
+
+        private void operator(Token operator) {
+            int delta = operator.line - line;
+            line = operator.line;
+            out.put((byte) operator.type.ordinal()).putVarint((delta << 1) ^ (delta >> 31));
+        }
+
+        private void name(Token name) {
+            int delta = name.line - line;
+            line = name.line;
+            out.putVarint((delta << 1) ^ (delta >> 31));
+            string(name.lexeme);
+        }
+
+        private void literal(Object value) {
+            if (value == null) {
+                out.put(NIL);
+            } else if (value instanceof Boolean) {
+                out.put((boolean) value ? TRUE : FALSE);
+            } else if (value instanceof Double) {
+                double number = (double) value;
+                // most numbers in code are small integers, -0 is not one
+                if (number >= 0 && number <= Integer.MAX_VALUE && number == Math.rint(number)
+                        && Double.doubleToRawLongBits(number) != NEGATIVE_ZERO) {
+                    out.put(INTEGER).putVarint((int) number);
+                } else {
+                    out.put(NUMBER).putDouble(number);
+                }
+            } else {
+                out.put(STRING);
+                string((String) value);
+            }
+        }
+
+        private void string(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.putVarint(bytes.length).put(bytes);
+        }
+
+        ByteBuffer bytes() {
+            return out.bytes();
+        }
+    }
+
+    /**
+     * Growing buffer of bytes, like a ByteArrayOutputStream
+     * with the methods of a ByteBuffer.
+     */
+    private static class ByteOutput {
+        private ByteBuffer buffer = ByteBuffer.allocate(4096);
+
+        private void ensure(int bytes) {
+            if (buffer.remaining() >= bytes) return;
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+            buffer.flip();
+            bigger.put(buffer);
+            buffer = bigger;
+        }
+
+        ByteOutput put(byte b) {
+            ensure(1);
+            buffer.put(b);
+            return this;
+        }
+
+        ByteOutput put(byte[] bytes) {
+            ensure(bytes.length);
+            buffer.put(bytes);
+            return this;
+        }
+
+        ByteOutput putVarint(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+            return this;
+        }
+
+        ByteOutput putDouble(double d) {
+            ensure(8);
+            buffer.putDouble(d);
+            return this;
+        }
+
+        ByteBuffer bytes() {
+            return buffer.duplicate().flip();
+        }
+    }
+}
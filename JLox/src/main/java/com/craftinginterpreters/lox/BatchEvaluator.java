@@ -0,0 +1,355 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.craftinginterpreters.lox.TokenType.*;
+
+/***
+ * Evaluates a formula over many rows at once. The variables of the
+ * expression are bound to columns of doubles, and the rows are taken
+ * in blocks of BLOCK: each node of the expression runs a loop over
+ * the whole block (see BatchKernels) and leaves its results in a
+ * column of the block, that its parent reads. Those loops use the
+ * Vector API when it is there, and plain loops if not.
+ *
+ * The types are resolved when the formula is compiled, like in the
+ * ClosureCompiler, but here they must all be known: the variables are
+ * numbers, and every node must give a number or a boolean. Strings,
+ * nil, and operators that would always fail for their types (e.g.
+ * `a + true`) are rejected with an IllegalArgumentException, and so is
+ * a formula that does not give a number. Those can still be run row by
+ * row with the Interpreter.
+ *
+ * Both branches of a conditional are computed for the whole block, and
+ * the condition selects the value of each row (a blend). A division by
+ * zero is a runtime error only in the rows where it is really
+ * evaluated, so each node also keeps the rows where one of the
+ * divisions it depends on failed, and the conditionals blend those too.
+ * When a block has a row that failed, the rows from that one are run
+ * by the Interpreter, which throws the same RuntimeError than when
+ * evaluating row by row. The results are always those of the
+ * Interpreter, bit by bit.
+ *
+ * Shared nodes (see HashConsingFactory) are computed once per block.
+ * The columns of a block are reused, so an evaluator must not be used
+ * by two threads at the same time.
+ */
+public class BatchEvaluator {
+    // rows computed at once, the columns of a block fit in the caches
+    static final int BLOCK = 1024;
+
+    /**
+     * One node of the formula, run over the rows of a block.
+     */
+    private interface Step {
+        void run(int rows);
+    }
+
+    /**
+     * Where the results of a node are, for the rows of a block. Nodes
+     * that give the same values (groupings, the right of a comma...)
+     * share the arrays.
+     */
+    private static final class Column {
+        // one of them is null, depending on the type of the node
+        final double[] numbers;
+        final boolean[] booleans;
+        // rows that failed dividing by zero, null if the node can not fail
+        final boolean[] errors;
+
+        Column(double[] numbers, boolean[] booleans, boolean[] errors) {
+            this.numbers = numbers;
+            this.booleans = booleans;
+            this.errors = errors;
+        }
+
+        boolean isNumber() {
+            return numbers != null;
+        }
+
+        Column withErrors(boolean[] errors) {
+            return new Column(numbers, booleans, errors);
+        }
+    }
+
+    private final Expr expr;
+    private final String[] names;
+    private final BatchKernels kernels;
+    private final List<Step> steps = new ArrayList<>();
+    // block of each input column, null if the formula does not read it
+    private final double[][] inputs;
+    private final Column result;
+
+    // for the rows that must run one by one
+    private final Environment environment = new Environment();
+    private final Interpreter interpreter = new Interpreter(environment);
+
+    /**
+     * Compile a formula.
+     *
+     * @param expr the formula
+     * @param columns names of the columns, in the order they are given to evaluate
+     * @throws IllegalArgumentException if the formula cannot be run in batch, or
+     *                                  two columns have the same name
+     */
+    public BatchEvaluator(Expr expr, String... columns) {
+        this(expr, BatchKernels.load(), columns);
+    }
+
+    BatchEvaluator(Expr expr, BatchKernels kernels, String... columns) {
+        this.expr = expr;
+        this.names = columns.clone();
+        for (int i = 0; i < names.length; i++) {
+            // the Planner would read the first one and evaluateRow the last one
+            if (Arrays.asList(names).indexOf(names[i]) != i)
+                throw new IllegalArgumentException("Duplicate column '" + names[i] + "'.");
+        }
+        this.kernels = kernels;
+        this.inputs = new double[columns.length][];
+        this.result = new Planner().visit(expr);
+        if (!result.isNumber()) throw new IllegalArgumentException("The formula must give a number.");
+    }
+
+    /**
+     * @return `true` if the loops use the Vector API
+     */
+    public boolean isVectorized() {
+        return !(kernels instanceof ScalarKernels);
+    }
+
+    /**
+     * Evaluate the formula for each row. If a row fails, its
+     * RuntimeError is thrown, and the rows before it already have their
+     * results.
+     *
+     * @param columns values of the columns, in the order of their names
+     * @param results where the result of each row goes, there are as many rows as results
+     * @throws RuntimeError the error of the first row that fails
+     */
+    public void evaluate(double[][] columns, double[] results) {
+        if (columns.length != names.length)
+            throw new IllegalArgumentException("Expected " + names.length + " columns, got " + columns.length + ".");
+        int rows = results.length;
+        for (double[] column : columns) {
+            if (column.length < rows) throw new IllegalArgumentException("A column has less than " + rows + " rows.");
+        }
+
+        for (int start = 0; start < rows; start += BLOCK) {
+            int size = Math.min(BLOCK, rows - start);
+            for (int i = 0; i < inputs.length; i++) {
+                if (inputs[i] != null) System.arraycopy(columns[i], start, inputs[i], 0, size);
+            }
+            for (Step step : steps) {
+                step.run(size);
+            }
+
+            int failed = result.errors == null ? -1 : kernels.first(result.errors, size);
+            if (failed < 0) {
+                System.arraycopy(result.numbers, 0, results, start, size);
+                continue;
+            }
+            System.arraycopy(result.numbers, 0, results, start, failed);
+            for (int row = start + failed; row < start + size; row++) {
+                results[row] = evaluateRow(columns, row);
+            }
+        }
+    }
+
+    /**
+     * Evaluate the formula for one row with the Interpreter.
+     *
+     * @param columns values of the columns, in the order of their names
+     * @param row row to evaluate
+     * @return result of the row
+     * @throws RuntimeError if the row fails
+     */
+    double evaluateRow(double[][] columns, int row) {
+        for (int i = 0; i < names.length; i++) {
+            environment.define(names[i], columns[i][row]);
+        }
+        return (double) interpreter.evaluate(expr);
+    }
+
+    /**
+     * Gives the column of each node, and adds the steps that fill it,
+     * children first.
+     */
+    private final class Planner extends MemoizingVisitor<Column> {
+        // rows that never fail
+        private final boolean[] none = new boolean[BLOCK];
+
+        Planner() {
+            // shared nodes must run only once per block
+            super(true);
+        }
+
+        @Override
+        public Column visitBinaryExpr(Expr.Binary expr) {
+            Column left = visit(expr.left);
+            Column right = visit(expr.right);
+            boolean[] errors = or(left.errors, right.errors);
+            TokenType operator = expr.operator.type;
+
+            if (operator == COMMA) return right.withErrors(errors);
+
+            if (operator == EQUAL_EQUAL || operator == BANG_EQUAL) {
+                // values of different types are never equal
+                if (left.isNumber() != right.isNumber()) return constant(operator == BANG_EQUAL, errors);
+                boolean[] out = new boolean[BLOCK];
+                if (left.isNumber()) {
+                    steps.add(rows -> kernels.compare(operator, left.numbers, right.numbers, out, rows));
+                } else if (operator == EQUAL_EQUAL) {
+                    steps.add(rows -> kernels.equal(left.booleans, right.booleans, out, rows));
+                } else {
+                    steps.add(rows -> {
+                        kernels.equal(left.booleans, right.booleans, out, rows);
+                        kernels.not(out, out, rows);
+                    });
+                }
+                return new Column(null, out, errors);
+            }
+
+            if (!left.isNumber() || !right.isNumber())
+                throw unsupported(expr.operator, "Operands must be numbers.");
+
+            switch (operator) {
+                case GREATER:
+                case GREATER_EQUAL:
+                case LESS:
+                case LESS_EQUAL: {
+                    boolean[] out = new boolean[BLOCK];
+                    steps.add(rows -> kernels.compare(operator, left.numbers, right.numbers, out, rows));
+                    return new Column(null, out, errors);
+                }
+                case SLASH: {
+                    double[] out = new double[BLOCK];
+                    boolean[] failed = new boolean[BLOCK];
+                    boolean[] previous = errors == null ? none : errors;
+                    steps.add(rows -> {
+                        kernels.divide(left.numbers, right.numbers, out, rows);
+                        kernels.zeros(right.numbers, previous, failed, rows);
+                    });
+                    return new Column(out, null, failed);
+                }
+            }
+
+            double[] out = new double[BLOCK];
+            switch (operator) {
+                case PLUS:
+                    steps.add(rows -> kernels.add(left.numbers, right.numbers, out, rows));
+                    break;
+                case MINUS:
+                    steps.add(rows -> kernels.subtract(left.numbers, right.numbers, out, rows));
+                    break;
+                case STAR:
+                    steps.add(rows -> kernels.multiply(left.numbers, right.numbers, out, rows));
+                    break;
+                default:
+                    throw unsupported(expr.operator, "Unknown binary operator.");
+            }
+            return new Column(out, null, errors);
+        }
+
+        @Override
+        public Column visitConditionalExpr(Expr.Conditional expr) {
+            Column condition = visit(expr.condition);
+            Column whenTrue = visit(expr.true_statement);
+            Column whenFalse = visit(expr.false_statement);
+
+            // numbers are always truthy
+            if (condition.isNumber()) return whenTrue.withErrors(or(condition.errors, whenTrue.errors));
+
+            if (whenTrue.isNumber() != whenFalse.isNumber())
+                throw new IllegalArgumentException("The branches of a conditional must give the same type.");
+
+            boolean[] errors = condition.errors;
+            if (whenTrue.errors != null || whenFalse.errors != null) {
+                boolean[] taken = new boolean[BLOCK];
+                boolean[] trueErrors = whenTrue.errors == null ? none : whenTrue.errors;
+                boolean[] falseErrors = whenFalse.errors == null ? none : whenFalse.errors;
+                steps.add(rows -> kernels.blend(condition.booleans, trueErrors, falseErrors, taken, rows));
+                errors = or(errors, taken);
+            }
+
+            if (whenTrue.isNumber()) {
+                double[] out = new double[BLOCK];
+                steps.add(rows -> kernels.blend(condition.booleans, whenTrue.numbers, whenFalse.numbers, out, rows));
+                return new Column(out, null, errors);
+            }
+            boolean[] out = new boolean[BLOCK];
+            steps.add(rows -> kernels.blend(condition.booleans, whenTrue.booleans, whenFalse.booleans, out, rows));
+            return new Column(null, out, errors);
+        }
+
+        @Override
+        public Column visitGroupingExpr(Expr.Grouping expr) {
+            return visit(expr.expression);
+        }
+
+        @Override
+        public Column visitLiteralExpr(Expr.Literal expr) {
+            if (expr.value instanceof Double) {
+                double[] out = new double[BLOCK];
+                Arrays.fill(out, (double) expr.value);
+                return new Column(out, null, null);
+            }
+            if (expr.value instanceof Boolean) return constant((boolean) expr.value, null);
+            throw new IllegalArgumentException("Only numbers and booleans can be evaluated in batch, found "
+                    + Interpreter.stringify(expr.value) + ".");
+        }
+
+        @Override
+        public Column visitUnaryExpr(Expr.Unary expr) {
+            Column right = visit(expr.right);
+
+            switch (expr.operator.type) {
+                case BANG: {
+                    // numbers are always truthy
+                    if (right.isNumber()) return constant(false, right.errors);
+                    boolean[] out = new boolean[BLOCK];
+                    steps.add(rows -> kernels.not(right.booleans, out, rows));
+                    return new Column(null, out, right.errors);
+                }
+                case MINUS: {
+                    if (!right.isNumber()) throw unsupported(expr.operator, "Operand must be a number.");
+                    double[] out = new double[BLOCK];
+                    steps.add(rows -> kernels.negate(right.numbers, out, rows));
+                    return new Column(out, null, right.errors);
+                }
+                default:
+                    throw unsupported(expr.operator, "Unknown unary operator.");
+            }
+        }
+
+        @Override
+        public Column visitVariableExpr(Expr.Variable expr) {
+            int index = Arrays.asList(names).indexOf(expr.name.lexeme);
+            if (index < 0) throw new IllegalArgumentException("Unknown column '" + expr.name.lexeme + "'.");
+            if (inputs[index] == null) inputs[index] = new double[BLOCK];
+            return new Column(inputs[index], null, null);
+        }
+
+        private Column constant(boolean value, boolean[] errors) {
+            boolean[] out = new boolean[BLOCK];
+            if (value) Arrays.fill(out, true);
+            return new Column(null, out, errors);
+        }
+
+        /**
+         * @return the rows where a or b failed, null if none of them can fail
+         */
+        private boolean[] or(boolean[] a, boolean[] b) {
+            if (a == null || a == b) return b;
+            if (b == null) return a;
+            boolean[] out = new boolean[BLOCK];
+            steps.add(rows -> kernels.or(a, b, out, rows));
+            return out;
+        }
+
+        private IllegalArgumentException unsupported(Token operator, String message) {
+            return new IllegalArgumentException(message + " [line " + operator.line + "]");
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * Loops of the BatchEvaluator, each one applies an operation to the
+ * first `rows` values of its columns. The booleans (results of the
+ * comparisons, and the rows where a division by zero happened) are
+ * kept in boolean[] columns.
+ *
+ * There are two implementations with the same results, ScalarKernels
+ * with plain loops, and VectorKernels with the Vector API, which is an
+ * incubator module and may not be there when running.
+ */
+interface BatchKernels {
+
+    void add(double[] a, double[] b, double[] out, int rows);
+
+    void subtract(double[] a, double[] b, double[] out, int rows);
+
+    void multiply(double[] a, double[] b, double[] out, int rows);
+
+    void divide(double[] a, double[] b, double[] out, int rows);
+
+    void negate(double[] a, double[] out, int rows);
+
+    /**
+     * Compare two columns of numbers, `==` and `!=` follow Double.equals
+     * like the Interpreter: NaN is equal to itself and 0 is not -0.
+     *
+     * @param operator one of the comparisons or equalities
+     */
+    void compare(TokenType operator, double[] a, double[] b, boolean[] out, int rows);
+
+    /**
+     * out = a == b
+     */
+    void equal(boolean[] a, boolean[] b, boolean[] out, int rows);
+
+    void not(boolean[] a, boolean[] out, int rows);
+
+    void or(boolean[] a, boolean[] b, boolean[] out, int rows);
+
+    /**
+     * out = errors | divisor == 0, the rows where dividing by the
+     * divisor is a runtime error.
+     */
+    void zeros(double[] divisor, boolean[] errors, boolean[] out, int rows);
+
+    /**
+     * out = condition ? a : b
+     */
+    void blend(boolean[] condition, double[] a, double[] b, double[] out, int rows);
+
+    /**
+     * out = condition ? a : b
+     */
+    void blend(boolean[] condition, boolean[] a, boolean[] b, boolean[] out, int rows);
+
+    /**
+     * @return the first row that is true, -1 if there is none
+     */
+    int first(boolean[] a, int rows);
+
+    /**
+     * The kernels that use the Vector API when its module was added to
+     * the JVM (--add-modules jdk.incubator.vector), the scalar ones if not.
+     */
+    static BatchKernels load() {
+        try {
+            return (BatchKernels) Class.forName("com.craftinginterpreters.lox.VectorKernels")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new ScalarKernels();
+        }
+    }
+}
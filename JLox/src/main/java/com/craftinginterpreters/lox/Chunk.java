@@ -0,0 +1,144 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/***
+ * Compiled code of an expression for the VM. The instructions are
+ * one byte of opcode followed by its operands, stored in a byte[]
+ * together with the line of each byte, for the errors. The constants
+ * are in two pools, the numbers in a double[] so the VM does not
+ * unbox them, and the strings (and the names of the variables) in an
+ * Object[].
+ *
+ * +-----------------------+---------------------+--------------------------+
+ * | Opcode                | Operands            | Stack                    |
+ * | OP_NUMBER             | u16 index           | -> number                |
+ * | OP_NUMBER_LONG        | u24 index           | -> number                |
+ * | OP_CONSTANT           | u16 index           | -> string                |
+ * | OP_CONSTANT_LONG      | u24 index           | -> string                |
+ * | OP_NIL/TRUE/FALSE     |                     | -> value                 |
+ * | OP_POP                |                     | value ->                 |
+ * | OP_NEGATE, OP_NOT     |                     | a -> result              |
+ * | OP_ADD .. OP_DIVIDE   |                     | a b -> result            |
+ * | OP_EQUAL .. OP_LESS_EQUAL |                 | a b -> boolean           |
+ * | OP_JUMP               | s32 offset          |                          |
+ * | OP_JUMP_IF_FALSE      | s32 offset          | condition ->             |
+ * | OP_RETURN             |                     | value ->                 |
+ * | OP_VARIABLE           | u16 index of name   | -> value                 |
+ * | OP_VARIABLE_LONG      | u24 index of name   | -> value                 |
+ * +-----------------------+---------------------+--------------------------+
+ *
+ * The operands are big endian, the jump offsets count from the byte
+ * after the operand.
+ */
+public class Chunk {
+    static final byte OP_NUMBER = 0;
+    static final byte OP_NUMBER_LONG = 1;
+    static final byte OP_CONSTANT = 2;
+    static final byte OP_CONSTANT_LONG = 3;
+    static final byte OP_NIL = 4;
+    static final byte OP_TRUE = 5;
+    static final byte OP_FALSE = 6;
+    static final byte OP_POP = 7;
+    static final byte OP_NEGATE = 8;
+    static final byte OP_NOT = 9;
+    static final byte OP_ADD = 10;
+    static final byte OP_SUBTRACT = 11;
+    static final byte OP_MULTIPLY = 12;
+    static final byte OP_DIVIDE = 13;
+    static final byte OP_EQUAL = 14;
+    static final byte OP_NOT_EQUAL = 15;
+    static final byte OP_GREATER = 16;
+    static final byte OP_GREATER_EQUAL = 17;
+    static final byte OP_LESS = 18;
+    static final byte OP_LESS_EQUAL = 19;
+    static final byte OP_JUMP = 20;
+    static final byte OP_JUMP_IF_FALSE = 21;
+    static final byte OP_RETURN = 22;
+    static final byte OP_VARIABLE = 23;
+    static final byte OP_VARIABLE_LONG = 24;
+
+    // biggest index of a pool, the long instructions have 3 bytes for it
+    static final int MAX_CONSTANTS = 0xFFFFFF;
+
+    byte[] code = new byte[64];
+    int[] lines = new int[64];
+    int count = 0;
+
+    double[] numbers = new double[16];
+    int numberCount = 0;
+    Object[] constants = new Object[16];
+    int constantCount = 0;
+
+    // most values on the stack at the same time, the VM allocates
+    // its stack with this size
+    int maxStack = 0;
+
+    // index of each constant already in a pool, so they are only
+    // stored once (Double.equals keeps 0 and -0 apart)
+    private final Map<Double, Integer> numberIndexes = new HashMap<>();
+    private final Map<Object, Integer> constantIndexes = new HashMap<>();
+
+    Chunk() {
+    }
+
+    /**
+     * @return number of bytes of code
+     */
+    public int size() {
+        return count;
+    }
+
+    void write(byte value, int line) {
+        if (count == code.length) {
+            code = Arrays.copyOf(code, count * 2);
+            lines = Arrays.copyOf(lines, count * 2);
+        }
+        code[count] = value;
+        lines[count] = line;
+        count++;
+    }
+
+    /**
+     * @param value number to store
+     * @return index of the number in the pool of numbers
+     */
+    int addNumber(double value) {
+        Integer index = numberIndexes.get(value);
+        if (index != null) return index;
+
+        if (numberCount == numbers.length) numbers = Arrays.copyOf(numbers, numberCount * 2);
+        numbers[numberCount] = value;
+        numberIndexes.put(value, numberCount);
+        return numberCount++;
+    }
+
+    /**
+     * @param value constant that is not a number
+     * @return index of the constant in the pool of constants
+     */
+    int addConstant(Object value) {
+        Integer index = constantIndexes.get(value);
+        if (index != null) return index;
+
+        if (constantCount == constants.length) constants = Arrays.copyOf(constants, constantCount * 2);
+        constants[constantCount] = value;
+        constantIndexes.put(value, constantCount);
+        return constantCount++;
+    }
+
+    /**
+     * Write a 32 bits operand in an instruction already emitted.
+     *
+     * @param offset position of the operand
+     * @param value value of the operand
+     */
+    void patch(int offset, int value) {
+        code[offset] = (byte) (value >>> 24);
+        code[offset + 1] = (byte) (value >>> 16);
+        code[offset + 2] = (byte) (value >>> 8);
+        code[offset + 3] = (byte) value;
+    }
+}
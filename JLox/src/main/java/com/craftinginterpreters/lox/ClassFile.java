@@ -0,0 +1,349 @@
+package com.craftinginterpreters.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/***
+ * Writer of JVM class files, only what the JvmCompiler needs: a
+ * constant pool, and methods with their code. There is no library
+ * for this in the JDK 17 (java.lang.classfile came later), so the
+ * format is written by hand following the JVM specification.
+ *
+ * The classes are written with version 49 (Java 5), which does not
+ * need StackMapTable frames for the branches, the verifier infers
+ * the types by itself.
+ */
+final class ClassFile {
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int VERSION = 49;
+
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_PRIVATE = 0x0002;
+    static final int ACC_STATIC = 0x0008;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    // the opcodes that are used
+    static final int ACONST_NULL = 0x01;
+    static final int ICONST_0 = 0x03;
+    static final int ICONST_1 = 0x04;
+    static final int DCONST_0 = 0x0E;
+    static final int DCONST_1 = 0x0F;
+    static final int BIPUSH = 0x10;
+    static final int SIPUSH = 0x11;
+    static final int LDC = 0x12;
+    static final int LDC_W = 0x13;
+    static final int LDC2_W = 0x14;
+    static final int ALOAD_0 = 0x2A;
+    static final int POP = 0x57;
+    static final int POP2 = 0x58;
+    static final int DADD = 0x63;
+    static final int DSUB = 0x67;
+    static final int DMUL = 0x6B;
+    static final int DDIV = 0x6F;
+    static final int DNEG = 0x77;
+    static final int IXOR = 0x82;
+    static final int IFEQ = 0x99;
+    static final int GOTO = 0xA7;
+    static final int DRETURN = 0xAF;
+    static final int IRETURN = 0xAC;
+    static final int ARETURN = 0xB0;
+    static final int RETURN = 0xB1;
+    static final int INVOKESPECIAL = 0xB7;
+    static final int INVOKESTATIC = 0xB8;
+
+    // tags of the constant pool
+    private static final int UTF8 = 1;
+    private static final int INTEGER = 3;
+    private static final int DOUBLE = 6;
+    private static final int CLASS = 7;
+    private static final int STRING = 8;
+    private static final int METHODREF = 10;
+    private static final int NAME_AND_TYPE = 12;
+
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolOut = new DataOutputStream(pool);
+    // next free index of the pool, entries start at 1
+    private int poolCount = 1;
+    private final Map<String, Integer> poolIndexes = new HashMap<>();
+
+    private final int thisClass;
+    private final int superClass;
+    private final int[] interfaces;
+    private final List<Code> methods = new ArrayList<>();
+
+    /**
+     * @param name internal name of the class, like `a/b/C`
+     * @param superName internal name of the super class
+     * @param interfaceNames internal names of the interfaces
+     */
+    ClassFile(String name, String superName, String... interfaceNames) {
+        this.thisClass = classRef(name);
+        this.superClass = classRef(superName);
+        this.interfaces = new int[interfaceNames.length];
+        for (int i = 0; i < interfaceNames.length; i++) interfaces[i] = classRef(interfaceNames[i]);
+    }
+
+    int utf8(String value) {
+        return constant("U" + value, 1, out -> {
+            out.writeByte(UTF8);
+            out.writeUTF(value);
+        });
+    }
+
+    int integer(int value) {
+        return constant("I" + value, 1, out -> {
+            out.writeByte(INTEGER);
+            out.writeInt(value);
+        });
+    }
+
+    int doubleConstant(double value) {
+        // the raw bits, so 0 and -0 (or two NaNs) are not the same entry
+        long bits = Double.doubleToRawLongBits(value);
+        return constant("D" + bits, 2, out -> {
+            out.writeByte(DOUBLE);
+            out.writeLong(bits);
+        });
+    }
+
+    int classRef(String name) {
+        int utf8 = utf8(name);
+        return constant("C" + name, 1, out -> {
+            out.writeByte(CLASS);
+            out.writeShort(utf8);
+        });
+    }
+
+    int string(String value) {
+        int utf8 = utf8(value);
+        return constant("S" + value, 1, out -> {
+            out.writeByte(STRING);
+            out.writeShort(utf8);
+        });
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        int owner_index = classRef(owner);
+        int nameUtf8 = utf8(name);
+        int descriptorUtf8 = utf8(descriptor);
+        int nameAndType = constant("N" + name + ":" + descriptor, 1, out -> {
+            out.writeByte(NAME_AND_TYPE);
+            out.writeShort(nameUtf8);
+            out.writeShort(descriptorUtf8);
+        });
+        return constant("M" + owner + "." + name + ":" + descriptor, 1, out -> {
+            out.writeByte(METHODREF);
+            out.writeShort(owner_index);
+            out.writeShort(nameAndType);
+        });
+    }
+
+    private interface Entry {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Add an entry to the pool, or find it if it was already added.
+     *
+     * @param key unique key of the entry
+     * @param slots slots of the pool it takes, doubles take 2
+     * @param entry writes the entry
+     * @return index of the entry
+     */
+    private int constant(String key, int slots, Entry entry) {
+        Integer index = poolIndexes.get(key);
+        if (index != null) return index;
+
+        if (poolCount + slots > 0xFFFF) throw new IllegalStateException("Too many constants in the class.");
+        try {
+            entry.write(poolOut);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        index = poolCount;
+        poolCount += slots;
+        poolIndexes.put(key, index);
+        return index;
+    }
+
+    /**
+     * Add a method, its code is written in the returned Code.
+     *
+     * @param access access flags
+     * @param name name of the method
+     * @param descriptor descriptor of the method
+     * @param maxLocals slots of the arguments and the local variables
+     * @return code of the method
+     */
+    Code method(int access, String name, String descriptor, int maxLocals) {
+        Code code = new Code(access, utf8(name), utf8(descriptor), maxLocals);
+        methods.add(code);
+        return code;
+    }
+
+    /**
+     * @param access access flags of the class
+     * @return bytes of the class file
+     */
+    byte[] toBytes(int access) {
+        int codeName = utf8("Code");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(MAGIC);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            out.writeShort(poolCount);
+            pool.writeTo(out);
+            out.writeShort(access);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(interfaces.length);
+            for (int index : interfaces) out.writeShort(index);
+            // fields
+            out.writeShort(0);
+            out.writeShort(methods.size());
+            for (Code code : methods) code.write(out, codeName);
+            // attributes
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Code of a method. It counts how deep the operand stack goes,
+     * each instruction is emitted with the slots it pushes or pops.
+     */
+    static final class Code {
+        private final int access;
+        private final int name;
+        private final int descriptor;
+        private final int maxLocals;
+
+        private byte[] code = new byte[256];
+        private int size = 0;
+        private int stack = 0;
+        private int maxStack = 0;
+
+        private Code(int access, int name, int descriptor, int maxLocals) {
+            this.access = access;
+            this.name = name;
+            this.descriptor = descriptor;
+            this.maxLocals = maxLocals;
+        }
+
+        /**
+         * Emit an instruction without operands.
+         *
+         * @param opcode the instruction
+         * @param slots change of the stack, in slots
+         */
+        void op(int opcode, int slots) {
+            u1(opcode);
+            stack(slots);
+        }
+
+        /**
+         * Emit an instruction with a 2 bytes operand.
+         */
+        void op(int opcode, int operand, int slots) {
+            u1(opcode);
+            u2(operand);
+            stack(slots);
+        }
+
+        /**
+         * Emit an instruction with a 1 byte operand.
+         */
+        void opByte(int opcode, int operand, int slots) {
+            u1(opcode);
+            u1(operand);
+            stack(slots);
+        }
+
+        /**
+         * Emit a jump whose destination is not known yet.
+         *
+         * @param opcode the jump
+         * @param slots change of the stack, in slots
+         * @return position of the jump, to give to `patch`
+         */
+        int jump(int opcode, int slots) {
+            int position = size;
+            op(opcode, 0, slots);
+            return position;
+        }
+
+        /**
+         * Make a jump go to the next instruction emitted.
+         *
+         * @param position position of the jump
+         */
+        void patch(int position) {
+            int offset = size - position;
+            if (offset > Short.MAX_VALUE) throw new IllegalStateException("Too much code to jump over.");
+            code[position + 1] = (byte) (offset >>> 8);
+            code[position + 2] = (byte) offset;
+        }
+
+        /**
+         * @return slots on the stack at this point
+         */
+        int stack() {
+            return stack;
+        }
+
+        /**
+         * Set the slots on the stack, for the code after an unconditional jump.
+         */
+        void setStack(int slots) {
+            stack = slots;
+        }
+
+        int size() {
+            return size;
+        }
+
+        private void stack(int slots) {
+            stack += slots;
+            if (stack > maxStack) maxStack = stack;
+        }
+
+        private void u1(int value) {
+            if (size == code.length) code = Arrays.copyOf(code, size * 2);
+            code[size++] = (byte) value;
+        }
+
+        private void u2(int value) {
+            u1(value >>> 8);
+            u1(value);
+        }
+
+        private void write(DataOutputStream out, int codeName) throws IOException {
+            if (size > 0xFFFF) throw new IllegalStateException("Code of a method too large.");
+            out.writeShort(access);
+            out.writeShort(name);
+            out.writeShort(descriptor);
+            out.writeShort(1);
+            // the Code attribute, without exceptions nor attributes
+            out.writeShort(codeName);
+            out.writeInt(2 + 2 + 4 + size + 2 + 2);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(size);
+            out.write(code, 0, size);
+            out.writeShort(0);
+            out.writeShort(0);
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package com.craftinginterpreters.lox;
+
+/***
+ * Compiles the AST once into a tree of lambdas (closure compilation).
+ * Every node becomes an Evaluator that holds the evaluators of its
+ * children and already knows its operator, so running it does not go
+ * through the visitor nor switch on the type of the operator.
+ *
+ * The types are also resolved while compiling when they can be known
+ * from the shape of the tree: literal numbers, and arithmetic of
+ * numbers, give a number. Those nodes are compiled to a
+ * NumberEvaluator that returns a double, so they do not box nor check
+ * their operands, and the comparisons to a BooleanEvaluator, that the
+ * conditionals test without boxing. When one of the operands of those
+ * is a literal, its value goes inside the lambda of the operator. The
+ * rest check the types when they run, with the same rules and errors
+ * than the Interpreter. Variables are read from the Environment every
+ * time, so their type is never known while compiling.
+ */
+public class ClosureCompiler implements Expr.Visitor<ClosureCompiler.Evaluator> {
+
+    /**
+     * A compiled expression.
+     */
+    public interface Evaluator {
+        /**
+         * @return value of the expression, a Double, a String, a Boolean or null for nil
+         */
+        Object evaluate();
+    }
+
+    interface NumberEvaluator {
+        double evaluate();
+    }
+
+    interface BooleanEvaluator {
+        boolean evaluate();
+    }
+
+    /**
+     * Evaluator of an expression that always gives a number, its
+     * parent can run it without boxing.
+     */
+    private static final class Numeric implements Evaluator {
+        final NumberEvaluator number;
+        // literals keep their value, so the operators can use it
+        // without calling them
+        final boolean constant;
+        final double value;
+
+        Numeric(NumberEvaluator number) {
+            this.number = number;
+            this.constant = false;
+            this.value = 0;
+        }
+
+        Numeric(double value) {
+            this.number = () -> value;
+            this.constant = true;
+            this.value = value;
+        }
+
+        @Override
+        public Object evaluate() {
+            return number.evaluate();
+        }
+    }
+
+    /**
+     * Evaluator of an expression that always gives a boolean.
+     */
+    private static final class Bool implements Evaluator {
+        final BooleanEvaluator bool;
+
+        Bool(BooleanEvaluator bool) {
+            this.bool = bool;
+        }
+
+        @Override
+        public Object evaluate() {
+            return bool.evaluate();
+        }
+    }
+
+    private final Environment environment;
+
+    public ClosureCompiler() {
+        this(new Environment());
+    }
+
+    /**
+     * @param environment variables the compiled expressions read
+     */
+    public ClosureCompiler(Environment environment) {
+        this.environment = environment;
+    }
+
+    /**
+     * Compile and run the expression, and print its value, runtime
+     * errors are reported through Lox.
+     *
+     * @param expr expression to run
+     */
+    public void interpret(Expr expr) {
+        try {
+            System.out.println(Interpreter.stringify(compile(expr).evaluate()));
+        } catch (RuntimeError error) {
+            Lox.runtimeError(error);
+        }
+    }
+
+    /**
+     * @param expr expression to compile
+     * @return evaluator of the expression, it can run many times
+     */
+    public Evaluator compile(Expr expr) {
+        return expr.accept(this);
+    }
+
+    @Override
+    public Evaluator visitBinaryExpr(Expr.Binary expr) {
+        Evaluator left = compile(expr.left);
+        Evaluator right = compile(expr.right);
+        Token operator = expr.operator;
+
+        if (left instanceof Numeric && right instanceof Numeric) {
+            Evaluator numeric = numeric(operator, (Numeric) left, (Numeric) right);
+            if (numeric != null) return numeric;
+        }
+
+        switch (operator.type) {
+            case COMMA:
+                if (right instanceof Numeric) {
+                    NumberEvaluator b = ((Numeric) right).number;
+                    return new Numeric(() -> {
+                        left.evaluate();
+                        return b.evaluate();
+                    });
+                }
+                return () -> {
+                    left.evaluate();
+                    return right.evaluate();
+                };
+            case PLUS:
+                return () -> {
+                    Object a = left.evaluate();
+                    Object b = right.evaluate();
+                    if (a instanceof Double && b instanceof Double) return (double) a + (double) b;
+                    if (a instanceof String && b instanceof String) return (String) a + b;
+                    throw new RuntimeError(operator, "Operands must be two numbers or two strings.");
+                };
+            case MINUS:
+                return () -> {
+                    Object a = left.evaluate();
+                    Object b = right.evaluate();
+                    Interpreter.checkNumbers(a, b, operator.line);
+                    return (double) a - (double) b;
+                };
+            case STAR:
+                return () -> {
+                    Object a = left.evaluate();
+                    Object b = right.evaluate();
+                    Interpreter.checkNumbers(a, b, operator.line);
+                    return (double) a * (double) b;
+                };
+            case SLASH:
+                return () -> {
+                    Object a = left.evaluate();
+                    Object b = right.evaluate();
+                    Interpreter.checkNumbers(a, b, operator.line);
+                    return Interpreter.divide((double) a, (double) b, operator.line);
+                };
+            case GREATER:
+                return new Bool(() -> {
+                    Object a = left.evaluate();
+                    Object b = right.evaluate();
+                    Interpreter.checkNumbers(a, b, operator.line);
+                    return (double) a > (double) b;
+                });
+            case GREATER_EQUAL:
+                return new Bool(() -> {
+                    Object a = left.evaluate();
+                    Object b = right.evaluate();
+                    Interpreter.checkNumbers(a, b, operator.line);
+                    return (double) a >= (double) b;
+                });
+            case LESS:
+                return new Bool(() -> {
+                    Object a = left.evaluate();
+                    Object b = right.evaluate();
+                    Interpreter.checkNumbers(a, b, operator.line);
+                    return (double) a < (double) b;
+                });
+            case LESS_EQUAL:
+                return new Bool(() -> {
+                    Object a = left.evaluate();
+                    Object b = right.evaluate();
+                    Interpreter.checkNumbers(a, b, operator.line);
+                    return (double) a <= (double) b;
+                });
+            case EQUAL_EQUAL:
+                return new Bool(() -> {
+                    Object a = left.evaluate();
+                    return Interpreter.isEqual(a, right.evaluate());
+                });
+            case BANG_EQUAL:
+                return new Bool(() -> {
+                    Object a = left.evaluate();
+                    return !Interpreter.isEqual(a, right.evaluate());
+                });
+            default:
+                throw new RuntimeError(operator, "Unknown binary operator.");
+        }
+    }
+
+    @Override
+    public Evaluator visitConditionalExpr(Expr.Conditional expr) {
+        Evaluator condition = compile(expr.condition);
+        Evaluator trueBranch = compile(expr.true_statement);
+        Evaluator falseBranch = compile(expr.false_statement);
+
+        BooleanEvaluator test;
+        if (condition instanceof Bool) {
+            test = ((Bool) condition).bool;
+        } else if (condition instanceof Numeric) {
+            // a number is always truthy, but it still runs for its errors
+            NumberEvaluator number = ((Numeric) condition).number;
+            test = () -> {
+                number.evaluate();
+                return true;
+            };
+        } else {
+            test = () -> Interpreter.isTruthy(condition.evaluate());
+        }
+
+        if (trueBranch instanceof Numeric && falseBranch instanceof Numeric) {
+            NumberEvaluator a = ((Numeric) trueBranch).number;
+            NumberEvaluator b = ((Numeric) falseBranch).number;
+            return new Numeric(() -> test.evaluate() ? a.evaluate() : b.evaluate());
+        }
+        return () -> test.evaluate() ? trueBranch.evaluate() : falseBranch.evaluate();
+    }
+
+    @Override
+    public Evaluator visitGroupingExpr(Expr.Grouping expr) {
+        return compile(expr.expression);
+    }
+
+    @Override
+    public Evaluator visitLiteralExpr(Expr.Literal expr) {
+        Object value = expr.value;
+        if (value instanceof Double) {
+            return new Numeric((double) value);
+        }
+        if (value instanceof Boolean) {
+            boolean bool = (boolean) value;
+            return new Bool(() -> bool);
+        }
+        return () -> value;
+    }
+
+    @Override
+    public Evaluator visitUnaryExpr(Expr.Unary expr) {
+        Evaluator right = compile(expr.right);
+        Token operator = expr.operator;
+
+        switch (operator.type) {
+            case MINUS:
+                if (right instanceof Numeric) {
+                    NumberEvaluator a = ((Numeric) right).number;
+                    return new Numeric(() -> -a.evaluate());
+                }
+                return () -> {
+                    Object a = right.evaluate();
+                    if (!(a instanceof Double)) throw new RuntimeError(operator, "Operand must be a number.");
+                    return -(double) a;
+                };
+            case BANG:
+                if (right instanceof Bool) {
+                    BooleanEvaluator a = ((Bool) right).bool;
+                    return new Bool(() -> !a.evaluate());
+                }
+                return new Bool(() -> !Interpreter.isTruthy(right.evaluate()));
+            default:
+                throw new RuntimeError(operator, "Unknown unary operator.");
+        }
+    }
+
+    @Override
+    public Evaluator visitVariableExpr(Expr.Variable expr) {
+        Environment environment = this.environment;
+        Token name = expr.name;
+        return () -> environment.get(name);
+    }
+
+    /**
+     * Compile an operator whose operands both give a number. An operand
+     * that is a literal goes in the lambda as a constant, instead of
+     * being called.
+     *
+     * @param operator the operator
+     * @param left the left operand
+     * @param right the right operand
+     * @return the evaluator, null for the comma operator
+     */
+    private static Evaluator numeric(Token operator, Numeric left, Numeric right) {
+        NumberEvaluator a = left.number;
+        NumberEvaluator b = right.number;
+
+        if (right.constant) {
+            double c = right.value;
+            switch (operator.type) {
+                case PLUS: return new Numeric(() -> a.evaluate() + c);
+                case MINUS: return new Numeric(() -> a.evaluate() - c);
+                case STAR: return new Numeric(() -> a.evaluate() * c);
+                case SLASH:
+                    if (c != 0) return new Numeric(() -> a.evaluate() / c);
+                    break;
+                case GREATER: return new Bool(() -> a.evaluate() > c);
+                case GREATER_EQUAL: return new Bool(() -> a.evaluate() >= c);
+                case LESS: return new Bool(() -> a.evaluate() < c);
+                case LESS_EQUAL: return new Bool(() -> a.evaluate() <= c);
+            }
+        } else if (left.constant) {
+            double c = left.value;
+            switch (operator.type) {
+                case PLUS: return new Numeric(() -> c + b.evaluate());
+                case MINUS: return new Numeric(() -> c - b.evaluate());
+                case STAR: return new Numeric(() -> c * b.evaluate());
+            }
+        }
+
+        switch (operator.type) {
+            case PLUS: return new Numeric(() -> a.evaluate() + b.evaluate());
+            case MINUS: return new Numeric(() -> a.evaluate() - b.evaluate());
+            case STAR: return new Numeric(() -> a.evaluate() * b.evaluate());
+            case SLASH: return new Numeric(() -> Interpreter.divide(a.evaluate(), b.evaluate(), operator.line));
+            case GREATER: return new Bool(() -> a.evaluate() > b.evaluate());
+            case GREATER_EQUAL: return new Bool(() -> a.evaluate() >= b.evaluate());
+            case LESS: return new Bool(() -> a.evaluate() < b.evaluate());
+            case LESS_EQUAL: return new Bool(() -> a.evaluate() <= b.evaluate());
+            // same than Double.equals, NaN is equal to itself and 0 is not -0
+            case EQUAL_EQUAL:
+                return new Bool(() -> Double.doubleToLongBits(a.evaluate()) == Double.doubleToLongBits(b.evaluate()));
+            case BANG_EQUAL:
+                return new Bool(() -> Double.doubleToLongBits(a.evaluate()) != Double.doubleToLongBits(b.evaluate()));
+            default:
+                return null;
+        }
+    }
+
+}
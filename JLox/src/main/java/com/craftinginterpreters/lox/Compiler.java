@@ -0,0 +1,182 @@
+package com.craftinginterpreters.lox;
+
+import static com.craftinginterpreters.lox.Chunk.*;
+
+/***
+ * Compiler from the AST to the bytecode of the VM. The nodes are
+ * emitted in post-order, the operands first and then the operator,
+ * so the VM only needs a stack. The conditionals jump over the
+ * branch that is not taken, and the comma operator pops its left
+ * side.
+ *
+ * The compiler also counts how deep the stack goes, so the VM can
+ * allocate it once without checking for overflows.
+ */
+public class Compiler implements Expr.Visitor<Void> {
+
+    private Chunk chunk;
+    // values on the stack at this point of the code
+    private int depth;
+    // line of the last operator, used for the nodes without a token
+    private int line;
+
+    /**
+     * @param expr expression to compile
+     * @return chunk with the code, it leaves the value of the expression on the stack and returns it
+     */
+    public Chunk compile(Expr expr) {
+        chunk = new Chunk();
+        depth = 0;
+        line = 1;
+
+        expr.accept(this);
+        emit(OP_RETURN);
+        return chunk;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        expr.left.accept(this);
+        line = expr.operator.line;
+
+        if (expr.operator.type == TokenType.COMMA) {
+            emit(OP_POP);
+            pop();
+            expr.right.accept(this);
+            return null;
+        }
+
+        expr.right.accept(this);
+        line = expr.operator.line;
+        switch (expr.operator.type) {
+            case PLUS: emit(OP_ADD); break;
+            case MINUS: emit(OP_SUBTRACT); break;
+            case STAR: emit(OP_MULTIPLY); break;
+            case SLASH: emit(OP_DIVIDE); break;
+            case EQUAL_EQUAL: emit(OP_EQUAL); break;
+            case BANG_EQUAL: emit(OP_NOT_EQUAL); break;
+            case GREATER: emit(OP_GREATER); break;
+            case GREATER_EQUAL: emit(OP_GREATER_EQUAL); break;
+            case LESS: emit(OP_LESS); break;
+            case LESS_EQUAL: emit(OP_LESS_EQUAL); break;
+            default:
+                throw new RuntimeError(expr.operator, "Unknown binary operator.");
+        }
+        pop();
+        return null;
+    }
+
+    @Override
+    public Void visitConditionalExpr(Expr.Conditional expr) {
+        expr.condition.accept(this);
+        int elseJump = emitJump(OP_JUMP_IF_FALSE);
+        pop();
+
+        expr.true_statement.accept(this);
+        int endJump = emitJump(OP_JUMP);
+        // only one of the branches leaves its value
+        pop();
+
+        patchJump(elseJump);
+        expr.false_statement.accept(this);
+        patchJump(endJump);
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        expr.expression.accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        Object value = expr.value;
+        if (value == null) {
+            emit(OP_NIL);
+        } else if (value instanceof Boolean) {
+            emit((boolean) value ? OP_TRUE : OP_FALSE);
+        } else if (value instanceof Double) {
+            emitConstant(OP_NUMBER, OP_NUMBER_LONG, chunk.addNumber((double) value));
+        } else {
+            emitConstant(OP_CONSTANT, OP_CONSTANT_LONG, chunk.addConstant(value));
+        }
+        push();
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        expr.right.accept(this);
+        line = expr.operator.line;
+        switch (expr.operator.type) {
+            case BANG: emit(OP_NOT); break;
+            case MINUS: emit(OP_NEGATE); break;
+            default:
+                throw new RuntimeError(expr.operator, "Unknown unary operator.");
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        line = expr.name.line;
+        emitConstant(OP_VARIABLE, OP_VARIABLE_LONG, chunk.addConstant(expr.name.lexeme));
+        push();
+        return null;
+    }
+
+    private void emit(byte value) {
+        chunk.write(value, line);
+    }
+
+    /**
+     * Emit an instruction that loads a constant, with 2 bytes for the
+     * index, or 3 bytes for big pools.
+     *
+     * @throws RuntimeError if the index does not fit in 3 bytes
+     */
+    private void emitConstant(byte opcode, byte longOpcode, int index) {
+        if (index > MAX_CONSTANTS)
+            throw new RuntimeError(line, "Too many constants in one chunk.");
+        if (index <= 0xFFFF) {
+            emit(opcode);
+        } else {
+            emit(longOpcode);
+            emit((byte) (index >>> 16));
+        }
+        emit((byte) (index >>> 8));
+        emit((byte) index);
+    }
+
+    /**
+     * Emit a jump with an empty offset, to be patched when the
+     * destination is known.
+     *
+     * @param opcode the jump
+     * @return position of the offset
+     */
+    private int emitJump(byte opcode) {
+        emit(opcode);
+        int offset = chunk.count;
+        for (int i = 0; i < 4; i++) emit((byte) 0);
+        return offset;
+    }
+
+    /**
+     * Make a jump go to the next instruction that is emitted.
+     *
+     * @param offset position of the offset of the jump
+     */
+    private void patchJump(int offset) {
+        chunk.patch(offset, chunk.count - (offset + 4));
+    }
+
+    private void push() {
+        if (++depth > chunk.maxStack) chunk.maxStack = depth;
+    }
+
+    private void pop() {
+        depth--;
+    }
+}
@@ -0,0 +1,272 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.craftinginterpreters.lox.TokenType.*;
+
+/**
+ * Alternative to the Scanner driven by tables instead of a switch.
+ * Every character is first mapped to a class (digit, letter, quote...),
+ * and then a table says in which state the automaton goes with that
+ * class. Another table says which states accept a token and of which
+ * kind. The lexeme is the longest text that ends in an accepting state
+ * (the only time we need to go back is a number followed by a '.'
+ * that is not followed by a digit).
+ *
+ * It produces the same tokens and errors than the Scanner.
+ */
+public class DfaScanner implements TokenSource {
+
+    // Character classes
+    private static final int C_OTHER = 0;
+    private static final int C_SPACE = 1;
+    private static final int C_NEWLINE = 2;
+    private static final int C_DIGIT = 3;
+    private static final int C_ALPHA = 4;
+    private static final int C_DOT = 5;
+    private static final int C_QUOTE = 6;
+    private static final int C_SLASH = 7;
+    private static final int C_STAR = 8;
+    private static final int C_EQUAL = 9;
+    private static final int C_COMPARE = 10; // ! < >
+    private static final int C_SINGLE = 11; // the rest of one character tokens
+    private static final int CLASSES = 12;
+
+    // States
+    private static final int DEAD = -1;
+    private static final int S_START = 0;
+    private static final int S_SPACE = 1;
+    private static final int S_IDENTIFIER = 2;
+    private static final int S_INTEGER = 3;
+    private static final int S_INTEGER_DOT = 4;
+    private static final int S_DECIMAL = 5;
+    private static final int S_STRING = 6;
+    private static final int S_STRING_END = 7;
+    private static final int S_SLASH = 8;
+    private static final int S_LINE_COMMENT = 9;
+    private static final int S_BLOCK_COMMENT = 10;
+    private static final int S_BLOCK_STAR = 11;
+    private static final int S_BLOCK_END = 12;
+    private static final int S_OPERATOR = 13; // one character operators
+    private static final int S_COMPARE = 14; // ! = < > that can be followed by '='
+    private static final int S_COMPARE_EQUAL = 15; // != == <= >=
+    private static final int STATES = 16;
+
+    // What an accepting state produces, besides a token type
+    private static final int A_NONE = -1;
+    private static final int A_SKIP = -2;
+    private static final int A_OPERATOR = -3; // type depends on the first character
+    private static final int A_IDENTIFIER = -4; // identifier or keyword
+
+    private static final byte[] CLASS = new byte[128];
+    private static final int[][] TRANSITIONS = new int[STATES][CLASSES];
+    private static final int[] ACCEPT = new int[STATES];
+    // type of the operators by their first character, and when followed by '='
+    private static final TokenType[] OPERATOR = new TokenType[128];
+    private static final TokenType[] OPERATOR_EQUAL = new TokenType[128];
+
+    static {
+        for (char c = '0'; c <= '9'; c++) CLASS[c] = C_DIGIT;
+        for (char c = 'a'; c <= 'z'; c++) CLASS[c] = C_ALPHA;
+        for (char c = 'A'; c <= 'Z'; c++) CLASS[c] = C_ALPHA;
+        CLASS['_'] = C_ALPHA;
+        CLASS[' '] = C_SPACE;
+        CLASS['\r'] = C_SPACE;
+        CLASS['\t'] = C_SPACE;
+        CLASS['\n'] = C_NEWLINE;
+        CLASS['.'] = C_DOT;
+        CLASS['"'] = C_QUOTE;
+        CLASS['/'] = C_SLASH;
+        CLASS['*'] = C_STAR;
+        CLASS['='] = C_EQUAL;
+        for (char c : "!<>".toCharArray()) CLASS[c] = C_COMPARE;
+        for (char c : "(){},-+;:?".toCharArray()) CLASS[c] = C_SINGLE;
+
+        OPERATOR['('] = LEFT_PAREN;
+        OPERATOR[')'] = RIGHT_PAREN;
+        OPERATOR['{'] = LEFT_BRACE;
+        OPERATOR['}'] = RIGHT_BRACE;
+        OPERATOR[','] = COMMA;
+        OPERATOR['.'] = DOT;
+        OPERATOR['-'] = MINUS;
+        OPERATOR['+'] = PLUS;
+        OPERATOR[';'] = SEMICOLON;
+        OPERATOR['*'] = STAR;
+        OPERATOR[':'] = COLON;
+        OPERATOR['?'] = QUESTION_MARK;
+        OPERATOR['!'] = BANG;
+        OPERATOR['='] = EQUAL;
+        OPERATOR['<'] = LESS;
+        OPERATOR['>'] = GREATER;
+        OPERATOR_EQUAL['!'] = BANG_EQUAL;
+        OPERATOR_EQUAL['='] = EQUAL_EQUAL;
+        OPERATOR_EQUAL['<'] = LESS_EQUAL;
+        OPERATOR_EQUAL['>'] = GREATER_EQUAL;
+
+        for (int[] row : TRANSITIONS) Arrays.fill(row, DEAD);
+
+        int[] start = TRANSITIONS[S_START];
+        start[C_SPACE] = S_SPACE;
+        start[C_NEWLINE] = S_SPACE;
+        start[C_DIGIT] = S_INTEGER;
+        start[C_ALPHA] = S_IDENTIFIER;
+        start[C_DOT] = S_OPERATOR;
+        start[C_QUOTE] = S_STRING;
+        start[C_SLASH] = S_SLASH;
+        start[C_STAR] = S_OPERATOR;
+        start[C_EQUAL] = S_COMPARE;
+        start[C_COMPARE] = S_COMPARE;
+        start[C_SINGLE] = S_OPERATOR;
+
+        TRANSITIONS[S_COMPARE][C_EQUAL] = S_COMPARE_EQUAL;
+
+        TRANSITIONS[S_SPACE][C_SPACE] = S_SPACE;
+        TRANSITIONS[S_SPACE][C_NEWLINE] = S_SPACE;
+
+        TRANSITIONS[S_IDENTIFIER][C_ALPHA] = S_IDENTIFIER;
+        TRANSITIONS[S_IDENTIFIER][C_DIGIT] = S_IDENTIFIER;
+
+        TRANSITIONS[S_INTEGER][C_DIGIT] = S_INTEGER;
+        TRANSITIONS[S_INTEGER][C_DOT] = S_INTEGER_DOT;
+        TRANSITIONS[S_INTEGER_DOT][C_DIGIT] = S_DECIMAL;
+        TRANSITIONS[S_DECIMAL][C_DIGIT] = S_DECIMAL;
+
+        Arrays.fill(TRANSITIONS[S_STRING], S_STRING);
+        TRANSITIONS[S_STRING][C_QUOTE] = S_STRING_END;
+
+        TRANSITIONS[S_SLASH][C_SLASH] = S_LINE_COMMENT;
+        TRANSITIONS[S_SLASH][C_STAR] = S_BLOCK_COMMENT;
+        Arrays.fill(TRANSITIONS[S_LINE_COMMENT], S_LINE_COMMENT);
+        TRANSITIONS[S_LINE_COMMENT][C_NEWLINE] = DEAD;
+        Arrays.fill(TRANSITIONS[S_BLOCK_COMMENT], S_BLOCK_COMMENT);
+        TRANSITIONS[S_BLOCK_COMMENT][C_STAR] = S_BLOCK_STAR;
+        Arrays.fill(TRANSITIONS[S_BLOCK_STAR], S_BLOCK_COMMENT);
+        TRANSITIONS[S_BLOCK_STAR][C_STAR] = S_BLOCK_STAR;
+        TRANSITIONS[S_BLOCK_STAR][C_SLASH] = S_BLOCK_END;
+
+        Arrays.fill(ACCEPT, A_NONE);
+        ACCEPT[S_SPACE] = A_SKIP;
+        ACCEPT[S_IDENTIFIER] = A_IDENTIFIER;
+        ACCEPT[S_INTEGER] = NUMBER.ordinal();
+        ACCEPT[S_DECIMAL] = NUMBER.ordinal();
+        ACCEPT[S_STRING_END] = STRING.ordinal();
+        ACCEPT[S_SLASH] = SLASH.ordinal();
+        ACCEPT[S_LINE_COMMENT] = A_SKIP;
+        ACCEPT[S_BLOCK_END] = A_SKIP;
+        ACCEPT[S_OPERATOR] = A_OPERATOR;
+        ACCEPT[S_COMPARE] = A_OPERATOR;
+        ACCEPT[S_COMPARE_EQUAL] = A_OPERATOR;
+    }
+
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private final Source source;
+    private final Interner names;
+    private int current = 0;
+    private int line = 1;
+    private Scanner.ErrorReporter reporter = Lox::error;
+
+    DfaScanner(Source source, SymbolTable symbols) {
+        this.source = source;
+        this.names = new Interner(symbols);
+    }
+
+    void setErrorReporter(Scanner.ErrorReporter reporter) {
+        this.reporter = reporter;
+    }
+
+    List<Token> scanTokens() {
+        List<Token> tokens = new ArrayList<>();
+        Token token;
+        do {
+            token = nextToken();
+            tokens.add(token);
+        } while (token.type != EOF);
+        return tokens;
+    }
+
+    @Override
+    public Token nextToken() {
+        while (source.has(current)) {
+            int start = current;
+            source.release(start);
+
+            // run the automaton remembering the last accepting state
+            int state = S_START;
+            int pos = start;
+            int posLine = line;
+            int accepted = A_NONE;
+            int acceptedEnd = start;
+            int acceptedLine = line;
+            while (source.has(pos)) {
+                char c = source.charAt(pos);
+                int next = TRANSITIONS[state][c < 128 ? CLASS[c] : C_OTHER];
+                if (next == DEAD) break;
+                state = next;
+                pos++;
+                if (c == '\n') posLine++;
+                if (ACCEPT[state] != A_NONE) {
+                    accepted = ACCEPT[state];
+                    acceptedEnd = pos;
+                    acceptedLine = posLine;
+                }
+            }
+
+            // strings and comments cannot finish with the source
+            if (!source.has(pos) && (state == S_STRING || state == S_BLOCK_COMMENT || state == S_BLOCK_STAR)) {
+                int startLine = line;
+                current = pos;
+                line = posLine;
+                if (state == S_STRING) reporter.error(line, "Unterminated string.");
+                else reporter.error(line, "You didn't finish a fucking comment block starting at line: " + startLine + ".");
+                continue;
+            }
+
+            if (accepted == A_NONE) {
+                current = source.characterEnd(start);
+                reporter.error(line, "Unexpected character: " + source.text(start, current) + ".");
+                continue;
+            }
+
+            current = acceptedEnd;
+            line = acceptedLine;
+            if (accepted == A_SKIP) continue;
+            return token(accepted, start);
+        }
+        return new Token(EOF, "", null, line);
+    }
+
+    /**
+     * Create the token that finishes in the current position.
+     *
+     * @param accepted what the accepting state produces
+     * @param start first position of the token
+     * @return the token
+     */
+    private Token token(int accepted, int start) {
+        TokenType type;
+        switch (accepted) {
+            case A_OPERATOR:
+                char c = source.charAt(start);
+                type = current - start == 2 ? OPERATOR_EQUAL[c] : OPERATOR[c];
+                break;
+            case A_IDENTIFIER:
+                type = Scanner.keywordType(source, start, current);
+                break;
+            default:
+                type = TYPES[accepted];
+                break;
+        }
+
+        String text = type.lexeme;
+        if (text == null) {
+            text = type == IDENTIFIER ? names.intern(source, start, current)
+                                      : source.text(start, current);
+        }
+        Object literal = type == STRING ? names.intern(source, start + 1, current - 1)
+                                        : Scanner.literal(type, text);
+        return new Token(type, text, literal, line);
+    }
+}
@@ -0,0 +1,46 @@
+package com.craftinginterpreters.lox;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/***
+ * Values of the variables, by their name. There are no statements
+ * to declare them yet, they are defined from Java before running
+ * the expressions (e.g. the inputs of a formula).
+ */
+public class Environment {
+    private final Map<String, Object> values = new HashMap<>();
+
+    /**
+     * Define a variable, or change its value if it already exists.
+     *
+     * @param name name of the variable
+     * @param value its value, a Double, a String, a Boolean or null for nil
+     */
+    public void define(String name, Object value) {
+        values.put(name, value);
+    }
+
+    /**
+     * @param name token with the name of the variable
+     * @return value of the variable
+     * @throws RuntimeError if the variable is not defined
+     */
+    Object get(Token name) {
+        Object value = values.get(name.lexeme);
+        if (value == null && !values.containsKey(name.lexeme))
+            throw new RuntimeError(name, "Undefined variable '" + name.lexeme + "'.");
+        return value;
+    }
+
+    /**
+     * Same than `get(Token)`, for the VM that only keeps the names and
+     * the lines.
+     */
+    Object get(String name, int line) {
+        Object value = values.get(name);
+        if (value == null && !values.containsKey(name))
+            throw new RuntimeError(line, "Undefined variable '" + name + "'.");
+        return value;
+    }
+}
@@ -2,7 +2,7 @@
 * Generated by GenerateAst program
 * Do not modify this code.
 * Version 0.1
-* Generated the date: 2024.09.22.10.07.59
+* Generated the date: 2026.10.16.21.06.38
 * Author: Fare9
 * Expr.java contains all the expresions
 * from the language, as well as their
@@ -20,6 +20,7 @@ public abstract class Expr {
     R visitGroupingExpr(Grouping expr);
     R visitLiteralExpr(Literal expr);
     R visitUnaryExpr(Unary expr);
+    R visitVariableExpr(Variable expr);
   }
 
 
@@ -103,4 +104,17 @@ public abstract class Expr {
       return visitor.visitUnaryExpr(this);
     }
   }
+  public static class Variable extends Expr {
+
+    final public Token name;
+
+    Variable(Token name) {
+      this.name = name;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitVariableExpr(this);
+    }
+  }
 }
@@ -0,0 +1,197 @@
+/*************************************
+* Generated by GenerateAst program
+* Do not modify this code.
+* Version 0.1
+* Generated the date: 2026.10.16.21.06.38
+* Author: Fare9
+* ExprArena.java contains all the expresions
+* from the language stored in arrays,
+* the accessors of their fields and
+* the visit method
+*************************************/
+
+package com.craftinginterpreters.lox;
+
+import java.util.Arrays;
+
+public class ExprArena {
+
+  public interface Visitor<R> {
+    R visitBinaryExpr(int expr);
+    R visitConditionalExpr(int expr);
+    R visitGroupingExpr(int expr);
+    R visitLiteralExpr(int expr);
+    R visitUnaryExpr(int expr);
+    R visitVariableExpr(int expr);
+  }
+
+  // kinds of the nodes
+  public static final int BINARY = 0;
+  public static final int CONDITIONAL = 1;
+  public static final int GROUPING = 2;
+  public static final int LITERAL = 3;
+  public static final int UNARY = 4;
+  public static final int VARIABLE = 5;
+
+  // ints taken by each node, the kind and the fields, nodes are
+  // numbered in the order they are created, so when a tree is
+  // built bottom up the children always go before their parent
+  private static final int STRIDE = 4;
+
+  private final TokenBuffer tokens;
+  private int[] nodes;
+  private int size = 0;
+  private Object[] values = new Object[16];
+  private int valueCount = 0;
+
+  ExprArena(TokenBuffer tokens) {
+    this(tokens, 64);
+  }
+
+  // capacity is the number of nodes expected, it grows if needed
+  ExprArena(TokenBuffer tokens, int capacity) {
+    this.tokens = tokens;
+    this.nodes = new int[Math.max(capacity, 1) * STRIDE];
+  }
+
+  // tokens referenced by the nodes
+  public TokenBuffer tokens() {
+    return tokens;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int kind(int node) {
+    return nodes[node * STRIDE];
+  }
+
+  public <R> R accept(int node, Visitor<R> visitor) {
+    switch (kind(node)) {
+      case BINARY: return visitor.visitBinaryExpr(node);
+      case CONDITIONAL: return visitor.visitConditionalExpr(node);
+      case GROUPING: return visitor.visitGroupingExpr(node);
+      case LITERAL: return visitor.visitLiteralExpr(node);
+      case UNARY: return visitor.visitUnaryExpr(node);
+      case VARIABLE: return visitor.visitVariableExpr(node);
+      default: throw new IllegalStateException("Unknown kind of node: " + kind(node));
+    }
+  }
+
+  // build the Expr object tree of a node
+  public Expr expr(int node) {
+    switch (kind(node)) {
+      case BINARY: return new Expr.Binary(expr(nodes[node * STRIDE + 1]), tokens.token(nodes[node * STRIDE + 2]), expr(nodes[node * STRIDE + 3]));
+      case CONDITIONAL: return new Expr.Conditional(expr(nodes[node * STRIDE + 1]), expr(nodes[node * STRIDE + 2]), expr(nodes[node * STRIDE + 3]));
+      case GROUPING: return new Expr.Grouping(expr(nodes[node * STRIDE + 1]));
+      case LITERAL: return new Expr.Literal(values[nodes[node * STRIDE + 1]]);
+      case UNARY: return new Expr.Unary(tokens.token(nodes[node * STRIDE + 1]), expr(nodes[node * STRIDE + 2]));
+      case VARIABLE: return new Expr.Variable(tokens.token(nodes[node * STRIDE + 1]));
+      default: throw new IllegalStateException("Unknown kind of node: " + kind(node));
+    }
+  }
+
+  // Binary : Expr left, Token operator, Expr right
+  public int binary(int left, int operator, int right) {
+    int node = allocate(BINARY);
+    nodes[node * STRIDE + 1] = left;
+    nodes[node * STRIDE + 2] = operator;
+    nodes[node * STRIDE + 3] = right;
+    return node;
+  }
+
+  public int binaryLeft(int node) {
+    return nodes[node * STRIDE + 1];
+  }
+
+  public int binaryOperator(int node) {
+    return nodes[node * STRIDE + 2];
+  }
+
+  public int binaryRight(int node) {
+    return nodes[node * STRIDE + 3];
+  }
+
+  // Conditional : Expr condition, Expr true_statement, Expr false_statement
+  public int conditional(int condition, int true_statement, int false_statement) {
+    int node = allocate(CONDITIONAL);
+    nodes[node * STRIDE + 1] = condition;
+    nodes[node * STRIDE + 2] = true_statement;
+    nodes[node * STRIDE + 3] = false_statement;
+    return node;
+  }
+
+  public int conditionalCondition(int node) {
+    return nodes[node * STRIDE + 1];
+  }
+
+  public int conditionalTrue_statement(int node) {
+    return nodes[node * STRIDE + 2];
+  }
+
+  public int conditionalFalse_statement(int node) {
+    return nodes[node * STRIDE + 3];
+  }
+
+  // Grouping : Expr expression
+  public int grouping(int expression) {
+    int node = allocate(GROUPING);
+    nodes[node * STRIDE + 1] = expression;
+    return node;
+  }
+
+  public int groupingExpression(int node) {
+    return nodes[node * STRIDE + 1];
+  }
+
+  // Literal : Object value
+  public int literal(Object value) {
+    int node = allocate(LITERAL);
+    nodes[node * STRIDE + 1] = value(value);
+    return node;
+  }
+
+  public Object literalValue(int node) {
+    return values[nodes[node * STRIDE + 1]];
+  }
+
+  // Unary : Token operator, Expr right
+  public int unary(int operator, int right) {
+    int node = allocate(UNARY);
+    nodes[node * STRIDE + 1] = operator;
+    nodes[node * STRIDE + 2] = right;
+    return node;
+  }
+
+  public int unaryOperator(int node) {
+    return nodes[node * STRIDE + 1];
+  }
+
+  public int unaryRight(int node) {
+    return nodes[node * STRIDE + 2];
+  }
+
+  // Variable : Token name
+  public int variable(int name) {
+    int node = allocate(VARIABLE);
+    nodes[node * STRIDE + 1] = name;
+    return node;
+  }
+
+  public int variableName(int node) {
+    return nodes[node * STRIDE + 1];
+  }
+
+  private int allocate(int kind) {
+    if ((size + 1) * STRIDE > nodes.length) nodes = Arrays.copyOf(nodes, nodes.length * 2);
+    nodes[size * STRIDE] = kind;
+    return size++;
+  }
+
+  private int value(Object value) {
+    if (valueCount == values.length) values = Arrays.copyOf(values, valueCount * 2);
+    values[valueCount] = value;
+    return valueCount++;
+  }
+}
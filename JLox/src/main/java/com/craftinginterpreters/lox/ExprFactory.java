@@ -0,0 +1,33 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * Creates the nodes of the AST for the parsers. This one always
+ * creates a new node, HashConsingFactory shares the nodes that
+ * are the same.
+ */
+public class ExprFactory {
+
+    Expr binary(Expr left, Token operator, Expr right) {
+        return new Expr.Binary(left, operator, right);
+    }
+
+    Expr conditional(Expr condition, Expr true_statement, Expr false_statement) {
+        return new Expr.Conditional(condition, true_statement, false_statement);
+    }
+
+    Expr grouping(Expr expression) {
+        return new Expr.Grouping(expression);
+    }
+
+    Expr literal(Object value) {
+        return new Expr.Literal(value);
+    }
+
+    Expr unary(Token operator, Expr right) {
+        return new Expr.Unary(operator, right);
+    }
+
+    Expr variable(Token name) {
+        return new Expr.Variable(name);
+    }
+}
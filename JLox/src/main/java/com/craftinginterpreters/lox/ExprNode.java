@@ -0,0 +1,96 @@
+/*************************************
+* Generated by GenerateAst program
+* Do not modify this code.
+* Version 0.1
+* Generated the date: 2026.10.16.21.24.46
+* Author: Fare9
+* ExprNode.java contains all the expresions
+* from the language as records of a
+* sealed interface, with their kind
+*************************************/
+
+package com.craftinginterpreters.lox;
+
+public sealed interface ExprNode permits ExprNode.Binary, ExprNode.Conditional, ExprNode.Grouping, ExprNode.Literal, ExprNode.Unary, ExprNode.Variable {
+
+  // kinds of the nodes
+  int BINARY = 0;
+  int CONDITIONAL = 1;
+  int GROUPING = 2;
+  int LITERAL = 3;
+  int UNARY = 4;
+  int VARIABLE = 5;
+
+  int kind();
+
+  // build the records from the Expr object tree
+  static ExprNode from(Expr expr) {
+    if (expr instanceof Expr.Binary) {
+      Expr.Binary node = (Expr.Binary) expr;
+      return new Binary(from(node.left), node.operator, from(node.right));
+    }
+    if (expr instanceof Expr.Conditional) {
+      Expr.Conditional node = (Expr.Conditional) expr;
+      return new Conditional(from(node.condition), from(node.true_statement), from(node.false_statement));
+    }
+    if (expr instanceof Expr.Grouping) {
+      Expr.Grouping node = (Expr.Grouping) expr;
+      return new Grouping(from(node.expression));
+    }
+    if (expr instanceof Expr.Literal) {
+      Expr.Literal node = (Expr.Literal) expr;
+      return new Literal(node.value);
+    }
+    if (expr instanceof Expr.Unary) {
+      Expr.Unary node = (Expr.Unary) expr;
+      return new Unary(node.operator, from(node.right));
+    }
+    if (expr instanceof Expr.Variable) {
+      Expr.Variable node = (Expr.Variable) expr;
+      return new Variable(node.name);
+    }
+    throw new IllegalStateException("Unknown node: " + expr);
+  }
+
+  record Binary(ExprNode left, Token operator, ExprNode right) implements ExprNode {
+    @Override
+    public int kind() {
+      return BINARY;
+    }
+  }
+
+  record Conditional(ExprNode condition, ExprNode true_statement, ExprNode false_statement) implements ExprNode {
+    @Override
+    public int kind() {
+      return CONDITIONAL;
+    }
+  }
+
+  record Grouping(ExprNode expression) implements ExprNode {
+    @Override
+    public int kind() {
+      return GROUPING;
+    }
+  }
+
+  record Literal(Object value) implements ExprNode {
+    @Override
+    public int kind() {
+      return LITERAL;
+    }
+  }
+
+  record Unary(Token operator, ExprNode right) implements ExprNode {
+    @Override
+    public int kind() {
+      return UNARY;
+    }
+  }
+
+  record Variable(Token name) implements ExprNode {
+    @Override
+    public int kind() {
+      return VARIABLE;
+    }
+  }
+}
@@ -0,0 +1,183 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Arrays;
+
+/***
+ * Walks an AST depth first without recursion, the path from the root
+ * to the current node is kept in arrays on the heap, so trees of any
+ * depth can be walked, while an Expr.Visitor overflows the stack of
+ * the thread after some thousands of nested nodes.
+ *
+ * A Listener is told when the walk enters a node, when it goes to
+ * each one of its children, and when it leaves it. `fold` builds on
+ * top of it to compute a value from the values of the children.
+ *
+ * The children are visited in the order of the fields of the nodes.
+ * Shared nodes (see HashConsingFactory) are walked every time they
+ * appear.
+ */
+public final class ExprWalker {
+
+    public interface Listener {
+        /**
+         * Called before the children of the node.
+         */
+        void enter(Expr expr);
+
+        /**
+         * Called before going to a child of the node.
+         *
+         * @param expr the parent
+         * @param index position of the child, from 0
+         */
+        default void child(Expr expr, int index) {
+        }
+
+        /**
+         * Called after the children of the node.
+         */
+        default void exit(Expr expr) {
+        }
+    }
+
+    /**
+     * Computes the value of each node from the values of its children,
+     * all the children get a value (both branches of a conditional).
+     *
+     * @param <R> value of the nodes
+     */
+    public interface Folder<R> {
+        R binary(Expr.Binary expr, R left, R right);
+
+        R conditional(Expr.Conditional expr, R condition, R whenTrue, R whenFalse);
+
+        R grouping(Expr.Grouping expr, R expression);
+
+        R literal(Expr.Literal expr);
+
+        R unary(Expr.Unary expr, R right);
+
+        R variable(Expr.Variable expr);
+    }
+
+    private ExprWalker() {
+    }
+
+    /**
+     * @param root node where the walk starts
+     * @param listener told about every node
+     */
+    public static void walk(Expr root, Listener listener) {
+        // the path to the current node, with the next child to visit of each one
+        Expr[] path = new Expr[64];
+        int[] next = new int[64];
+        int top = 0;
+
+        listener.enter(root);
+        path[0] = root;
+        top++;
+
+        while (top > 0) {
+            Expr expr = path[top - 1];
+            int index = next[top - 1];
+            Expr child = child(expr, index);
+            if (child == null) {
+                listener.exit(expr);
+                top--;
+                continue;
+            }
+
+            next[top - 1] = index + 1;
+            listener.child(expr, index);
+            listener.enter(child);
+            if (top == path.length) {
+                path = Arrays.copyOf(path, top * 2);
+                next = Arrays.copyOf(next, top * 2);
+            }
+            path[top] = child;
+            next[top] = 0;
+            top++;
+        }
+    }
+
+    /**
+     * Compute a value for the tree, the value of each node is computed
+     * once the values of its children are ready.
+     *
+     * @param root node where the walk starts
+     * @param folder computes the value of each node
+     * @return value of the root
+     */
+    public static <R> R fold(Expr root, Folder<R> folder) {
+        Folding<R> folding = new Folding<>(folder);
+        walk(root, folding);
+        return folding.values[0];
+    }
+
+    /**
+     * @param expr a node
+     * @param index position of the child, from 0
+     * @return the child, null if the node has no more children
+     */
+    static Expr child(Expr expr, int index) {
+        if (expr instanceof Expr.Binary) {
+            Expr.Binary binary = (Expr.Binary) expr;
+            return index == 0 ? binary.left : index == 1 ? binary.right : null;
+        }
+        if (expr instanceof Expr.Conditional) {
+            Expr.Conditional conditional = (Expr.Conditional) expr;
+            switch (index) {
+                case 0: return conditional.condition;
+                case 1: return conditional.true_statement;
+                case 2: return conditional.false_statement;
+                default: return null;
+            }
+        }
+        if (expr instanceof Expr.Grouping) return index == 0 ? ((Expr.Grouping) expr).expression : null;
+        if (expr instanceof Expr.Unary) return index == 0 ? ((Expr.Unary) expr).right : null;
+        return null;
+    }
+
+    /**
+     * Keeps the values of the children in a stack, when a node is left
+     * its children are on the top.
+     */
+    private static final class Folding<R> implements Listener {
+        private final Folder<R> folder;
+        private R[] values;
+        private int top = 0;
+
+        @SuppressWarnings("unchecked")
+        Folding(Folder<R> folder) {
+            this.folder = folder;
+            this.values = (R[]) new Object[64];
+        }
+
+        @Override
+        public void enter(Expr expr) {
+        }
+
+        @Override
+        public void exit(Expr expr) {
+            R value;
+            if (expr instanceof Expr.Binary) {
+                value = folder.binary((Expr.Binary) expr, values[top - 2], values[top - 1]);
+                top -= 2;
+            } else if (expr instanceof Expr.Conditional) {
+                value = folder.conditional((Expr.Conditional) expr, values[top - 3], values[top - 2], values[top - 1]);
+                top -= 3;
+            } else if (expr instanceof Expr.Grouping) {
+                value = folder.grouping((Expr.Grouping) expr, values[--top]);
+            } else if (expr instanceof Expr.Unary) {
+                value = folder.unary((Expr.Unary) expr, values[--top]);
+            } else if (expr instanceof Expr.Literal) {
+                value = folder.literal((Expr.Literal) expr);
+            } else {
+                value = folder.variable((Expr.Variable) expr);
+            }
+
+            if (top == values.length) values = Arrays.copyOf(values, top * 2);
+            values[top++] = value;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.craftinginterpreters.lox;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/***
+ * Node factory that returns the same node every time a subtree
+ * that was already created is asked again, so repeated code shares
+ * its nodes and the AST becomes a DAG (hash-consing).
+ *
+ * The nodes are immutable, and the children are created before their
+ * parent, so two subtrees are equal when their children are the same
+ * objects, there is no need to compare the whole subtrees. Operators
+ * are compared by their type and their line, two operators in
+ * different lines are kept apart so errors still show their line.
+ * Literals are compared with equals, which keeps 0 and -0 apart
+ * as they print different. Variables are compared by their name and
+ * their line.
+ *
+ * Visitors that go through the same node many times should remember
+ * their results per node, see MemoizingVisitor.
+ */
+public class HashConsingFactory extends ExprFactory {
+
+    // kinds of nodes in the keys
+    private static final int BINARY = 0;
+    private static final int CONDITIONAL = 1;
+    private static final int GROUPING = 2;
+    private static final int UNARY = 3;
+    private static final int VARIABLE = 4;
+
+    /**
+     * Key of a node that has children, the children are
+     * compared by identity.
+     */
+    private static final class Key {
+        final int kind;
+        final Expr first;
+        final Expr second;
+        final Expr third;
+        final TokenType operator;
+        final int line;
+        // name of a variable
+        final String name;
+
+        Key(int kind, Expr first, Expr second, Expr third, Token operator) {
+            this.kind = kind;
+            this.first = first;
+            this.second = second;
+            this.third = third;
+            this.operator = operator == null ? null : operator.type;
+            this.line = operator == null ? 0 : operator.line;
+            this.name = kind == VARIABLE ? operator.lexeme : null;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return kind == other.kind && first == other.first && second == other.second
+                    && third == other.third && operator == other.operator && line == other.line
+                    && Objects.equals(name, other.name);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = kind;
+            hash = 31 * hash + System.identityHashCode(first);
+            hash = 31 * hash + System.identityHashCode(second);
+            hash = 31 * hash + System.identityHashCode(third);
+            hash = 31 * hash + (operator == null ? 0 : operator.ordinal());
+            hash = 31 * hash + Objects.hashCode(name);
+            return 31 * hash + line;
+        }
+    }
+
+    private final Map<Key, Expr> nodes = new HashMap<>();
+    private final Map<Object, Expr> literals = new HashMap<>();
+    private int created = 0;
+    private int shared = 0;
+
+    @Override
+    Expr binary(Expr left, Token operator, Expr right) {
+        Key key = new Key(BINARY, left, right, null, operator);
+        Expr node = nodes.get(key);
+        if (node == null) {
+            node = super.binary(left, operator, right);
+            return add(key, node);
+        }
+        shared++;
+        return node;
+    }
+
+    @Override
+    Expr conditional(Expr condition, Expr true_statement, Expr false_statement) {
+        Key key = new Key(CONDITIONAL, condition, true_statement, false_statement, null);
+        Expr node = nodes.get(key);
+        if (node == null) {
+            node = super.conditional(condition, true_statement, false_statement);
+            return add(key, node);
+        }
+        shared++;
+        return node;
+    }
+
+    @Override
+    Expr grouping(Expr expression) {
+        Key key = new Key(GROUPING, expression, null, null, null);
+        Expr node = nodes.get(key);
+        if (node == null) {
+            node = super.grouping(expression);
+            return add(key, node);
+        }
+        shared++;
+        return node;
+    }
+
+    @Override
+    Expr unary(Token operator, Expr right) {
+        Key key = new Key(UNARY, right, null, null, operator);
+        Expr node = nodes.get(key);
+        if (node == null) {
+            node = super.unary(operator, right);
+            return add(key, node);
+        }
+        shared++;
+        return node;
+    }
+
+    @Override
+    Expr variable(Token name) {
+        Key key = new Key(VARIABLE, null, null, null, name);
+        Expr node = nodes.get(key);
+        if (node == null) {
+            node = super.variable(name);
+            return add(key, node);
+        }
+        shared++;
+        return node;
+    }
+
+    @Override
+    Expr literal(Object value) {
+        Expr node = literals.get(value);
+        if (node == null) {
+            node = super.literal(value);
+            literals.put(value, node);
+            created++;
+            return node;
+        }
+        shared++;
+        return node;
+    }
+
+    private Expr add(Key key, Expr node) {
+        nodes.put(key, node);
+        created++;
+        return node;
+    }
+
+    /**
+     * @return number of different nodes created
+     */
+    public int created() {
+        return created;
+    }
+
+    /**
+     * @return number of times an existing node was returned instead of a new one
+     */
+    public int shared() {
+        return shared;
+    }
+}
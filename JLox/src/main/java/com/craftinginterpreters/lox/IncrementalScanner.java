@@ -0,0 +1,108 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * Update the tokens of a source after an edit without scanning the
+ * whole source again. The idea is that the Scanner is always in the
+ * same state (outside strings and comments) at the end of a token,
+ * so we can restart scanning at the end of a token before the edit,
+ * and we can stop as soon as a new token starts at the same place an
+ * old token started after the edit: from there the text is the same,
+ * so the tokens are the same, only moved. Those tokens are copied
+ * with their positions and lines shifted, not scanned again.
+ */
+public class IncrementalScanner {
+    // the scanner can look up to two characters after the end
+    // of a token (numbers check for a digit after the '.')
+    private static final int LOOKAHEAD = 2;
+
+    private IncrementalScanner() {
+    }
+
+    /**
+     * Apply an edit to the source of a buffer and compute the new
+     * tokens. The new source is built from the old one.
+     *
+     * @param old tokens of the source before the edit
+     * @param offset position where the edit starts
+     * @param removed number of characters removed
+     * @param inserted text inserted at offset
+     * @return tokens of the edited source
+     */
+    public static TokenBuffer edit(TokenBuffer old, int offset, int removed, String inserted) {
+        Source source = old.source();
+        // the EOF token is at the end of the source
+        int length = old.start(old.size() - 1);
+        String text = source.text(0, offset) + inserted + source.text(offset + removed, length);
+        return rescan(old, new StringSource(text), offset, removed, inserted);
+    }
+
+    /**
+     * Compute the new tokens after an edit, when the caller already
+     * has the edited source.
+     *
+     * @param old tokens of the source before the edit
+     * @param source source after the edit
+     * @param offset position where the edit starts
+     * @param removed number of characters removed
+     * @param inserted text inserted at offset
+     * @return tokens of the edited source
+     */
+    public static TokenBuffer rescan(TokenBuffer old, Source source,
+                                     int offset, int removed, String inserted) {
+        int delta = inserted.length() - removed;
+        int lineDelta = countLines(new StringSource(inserted), 0, inserted.length())
+                - countLines(old.source(), offset, offset + removed);
+        TokenBuffer tokens = new TokenBuffer(source, old.symbols());
+
+        // keep the tokens that end (with the lookahead) before the edit,
+        // we restart at the end of the last one
+        int eof = old.size() - 1;
+        int kept = 0;
+        while (kept < eof && end(old, kept) + LOOKAHEAD <= offset) kept++;
+
+        int position = 0;
+        int line = 1;
+        for (int i = 0; i < kept; i++) {
+            tokens.add(old.type(i), old.start(i), old.length(i), old.line(i));
+            position = end(old, i);
+            line = old.line(i);
+        }
+
+        // scan until a new token starts where an old one started
+        Scanner scanner = new Scanner(source, old.symbols(), position, line);
+        int editEnd = offset + inserted.length();
+        int next = kept;
+        while (scanner.scanInto(tokens)) {
+            int last = tokens.size() - 1;
+            int start = tokens.start(last);
+            if (start < editEnd) continue;
+
+            // old position of the same text
+            int oldStart = start - delta;
+            while (next < eof && old.start(next) < oldStart) next++;
+            if (next < eof && old.start(next) == oldStart) {
+                // the tokens line up again, the rest is shifted
+                tokens.removeLast();
+                for (int i = next; i <= eof; i++) {
+                    tokens.add(old.type(i), old.start(i) + delta, old.length(i), old.line(i) + lineDelta);
+                }
+                return tokens;
+            }
+        }
+
+        tokens.add(TokenType.EOF, scanner.position(), 0, scanner.line());
+        return tokens;
+    }
+
+    private static int end(TokenBuffer tokens, int index) {
+        return tokens.start(index) + tokens.length(index);
+    }
+
+    private static int countLines(Source source, int start, int end) {
+        int lines = 0;
+        for (int i = start; i < end; i++) {
+            if (source.charAt(i) == '\n') lines++;
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,103 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * Table of Strings that can be looked up directly with a range of
+ * a Source, the String is only created the first time a text is
+ * found, the next times we return the same instance without
+ * allocating anything.
+ *
+ * It works as a cache in front of a SymbolTable: it is used by a
+ * single Scanner so it does not need any synchronization, and only
+ * the texts it has not seen yet go to the shared table.
+ *
+ * It is an open addressing hash table with linear probing.
+ *
+ * Texts that are not ASCII skip the table: a MappedSource gives their
+ * UTF-8 bytes while the Strings hold the decoded characters, so they
+ * would never match their own entry.
+ */
+class Interner {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final SymbolTable symbols;
+
+    private String[] strings = new String[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private int count = 0;
+
+    Interner(SymbolTable symbols) {
+        this.symbols = symbols;
+    }
+
+    /**
+     * Retrieve the String for the text in the given range of the
+     * source, creating it if it is the first time we see it.
+     *
+     * @param source source with the text
+     * @param start first position (inclusive)
+     * @param end last position (exclusive)
+     * @return the String with that text stored in the SymbolTable
+     */
+    String intern(Source source, int start, int end) {
+        if (!isAscii(source, start, end)) return symbols.intern(source.text(start, end));
+
+        int hash = hash(source, start, end);
+        int mask = strings.length - 1;
+        int index = hash & mask;
+
+        while (strings[index] != null) {
+            if (hashes[index] == hash && matches(strings[index], source, start, end))
+                return strings[index];
+            index = (index + 1) & mask;
+        }
+
+        String string = symbols.intern(source.text(start, end));
+        strings[index] = string;
+        hashes[index] = hash;
+        // keep the table at most half full
+        if (++count * 2 > strings.length) grow();
+        return string;
+    }
+
+    private static boolean isAscii(Source source, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (source.charAt(i) >= 0x80) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Same hash than String.hashCode, but computed from the source.
+     */
+    private static int hash(Source source, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + source.charAt(i);
+        }
+        return hash;
+    }
+
+    private static boolean matches(String string, Source source, int start, int end) {
+        if (string.length() != end - start) return false;
+        for (int i = 0; i < string.length(); i++) {
+            if (string.charAt(i) != source.charAt(start + i)) return false;
+        }
+        return true;
+    }
+
+    private void grow() {
+        String[] oldStrings = strings;
+        int[] oldHashes = hashes;
+        strings = new String[oldStrings.length * 2];
+        hashes = new int[oldStrings.length * 2];
+        int mask = strings.length - 1;
+
+        for (int i = 0; i < oldStrings.length; i++) {
+            if (oldStrings[i] == null) continue;
+            int index = oldHashes[i] & mask;
+            while (strings[index] != null) index = (index + 1) & mask;
+            strings[index] = oldStrings[i];
+            hashes[index] = oldHashes[i];
+        }
+    }
+}
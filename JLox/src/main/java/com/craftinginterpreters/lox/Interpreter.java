@@ -0,0 +1,276 @@
+package com.craftinginterpreters.lox;
+
+import static com.craftinginterpreters.lox.TokenType.*;
+
+/***
+ * Tree-walking interpreter, it evaluates the expressions following
+ * the rules of Lox:
+ *
+ * - `+` adds two numbers or joins two strings, the other arithmetic
+ *   operators and the comparisons only take numbers.
+ * - Dividing by zero is a runtime error.
+ * - `nil` is only equal to itself, values of different types are
+ *   never equal, and numbers are equal when Double.equals says so.
+ * - Only `nil` and `false` are falsey.
+ * - The comma operator evaluates both sides and gives the right one.
+ * - Variables are read from an Environment, reading one that is not
+ *   defined is a runtime error.
+ *
+ * Most of the values in an expression are numbers, so the nodes are
+ * not evaluated through the visitor, which returns an Object, but
+ * through `evaluateNumber`, which returns a double and does not box
+ * the operands and the results of the operators. When a node gives
+ * something that is not a number (a string, a boolean or nil) it
+ * returns NaN and leaves the value in a field, and the caller takes it
+ * with `isNumber`. The visitor is only the entry point, it boxes the
+ * final result.
+ *
+ * The errors are thrown as a RuntimeError with the token of the
+ * operator, so they can be reported with its line.
+ */
+public class Interpreter implements Expr.Visitor<Object> {
+
+    // set by notNumber when evaluateNumber gives a value that is not
+    // a number, the value is left in `value` until isNumber takes it
+    private boolean notNumber = false;
+    private Object value = null;
+
+    private final Environment environment;
+
+    public Interpreter() {
+        this(new Environment());
+    }
+
+    /**
+     * @param environment variables the expressions can read
+     */
+    public Interpreter(Environment environment) {
+        this.environment = environment;
+    }
+
+    /**
+     * Evaluate the expression and print its value, runtime errors
+     * are reported through Lox.
+     *
+     * @param expr expression to run
+     */
+    public void interpret(Expr expr) {
+        try {
+            System.out.println(stringify(evaluate(expr)));
+        } catch (RuntimeError error) {
+            notNumber = false;
+            Lox.runtimeError(error);
+        }
+    }
+
+    /**
+     * @param expr expression to evaluate
+     * @return value of the expression, a Double, a String, a Boolean or null for nil
+     */
+    public Object evaluate(Expr expr) {
+        return expr.accept(this);
+    }
+
+    @Override
+    public Object visitBinaryExpr(Expr.Binary expr) {
+        return box(binary(expr));
+    }
+
+    @Override
+    public Object visitConditionalExpr(Expr.Conditional expr) {
+        return box(conditional(expr));
+    }
+
+    @Override
+    public Object visitGroupingExpr(Expr.Grouping expr) {
+        return evaluate(expr.expression);
+    }
+
+    @Override
+    public Object visitLiteralExpr(Expr.Literal expr) {
+        return expr.value;
+    }
+
+    @Override
+    public Object visitUnaryExpr(Expr.Unary expr) {
+        return box(unary(expr));
+    }
+
+    @Override
+    public Object visitVariableExpr(Expr.Variable expr) {
+        return environment.get(expr.name);
+    }
+
+    /**
+     * Evaluate an expression without boxing the numbers. If the value
+     * is not a number it returns NaN and the caller must ask isNumber
+     * for the real value.
+     *
+     * @param expr expression to evaluate
+     * @return the number, or NaN if the value is not a number
+     */
+    double evaluateNumber(Expr expr) {
+        if (expr instanceof Expr.Literal) {
+            Object literal = ((Expr.Literal) expr).value;
+            return literal instanceof Double ? (double) literal : notNumber(literal);
+        }
+        if (expr instanceof Expr.Variable) {
+            Object variable = environment.get(((Expr.Variable) expr).name);
+            return variable instanceof Double ? (double) variable : notNumber(variable);
+        }
+        if (expr instanceof Expr.Binary) return binary((Expr.Binary) expr);
+        if (expr instanceof Expr.Unary) return unary((Expr.Unary) expr);
+        if (expr instanceof Expr.Grouping) return evaluateNumber(((Expr.Grouping) expr).expression);
+        return conditional((Expr.Conditional) expr);
+    }
+
+    private double binary(Expr.Binary expr) {
+        double left = evaluateNumber(expr.left);
+        boolean leftNumber = isNumber(left);
+        Object leftValue = value;
+
+        if (expr.operator.type == COMMA) return evaluateNumber(expr.right);
+
+        double right = evaluateNumber(expr.right);
+        boolean rightNumber = isNumber(right);
+        Object rightValue = value;
+
+        switch (expr.operator.type) {
+            case PLUS:
+                if (leftNumber && rightNumber) return left + right;
+                if (!leftNumber && !rightNumber && leftValue instanceof String && rightValue instanceof String)
+                    return notNumber((String) leftValue + rightValue);
+                throw new RuntimeError(expr.operator, "Operands must be two numbers or two strings.");
+            case EQUAL_EQUAL:
+                return notNumber(isEqual(left, leftNumber, leftValue, right, rightNumber, rightValue));
+            case BANG_EQUAL:
+                return notNumber(!isEqual(left, leftNumber, leftValue, right, rightNumber, rightValue));
+        }
+
+        if (!leftNumber || !rightNumber) throw new RuntimeError(expr.operator, "Operands must be numbers.");
+
+        switch (expr.operator.type) {
+            case MINUS: return left - right;
+            case STAR: return left * right;
+            case SLASH: return divide(left, right, expr.operator.line);
+            case GREATER: return notNumber(left > right);
+            case GREATER_EQUAL: return notNumber(left >= right);
+            case LESS: return notNumber(left < right);
+            case LESS_EQUAL: return notNumber(left <= right);
+            default:
+                throw new RuntimeError(expr.operator, "Unknown binary operator.");
+        }
+    }
+
+    private double conditional(Expr.Conditional expr) {
+        double condition = evaluateNumber(expr.condition);
+        // numbers are always truthy
+        boolean truthy = isNumber(condition) || isTruthy(value);
+        return evaluateNumber(truthy ? expr.true_statement : expr.false_statement);
+    }
+
+    private double unary(Expr.Unary expr) {
+        double right = evaluateNumber(expr.right);
+        boolean number = isNumber(right);
+
+        switch (expr.operator.type) {
+            case BANG:
+                return notNumber(!(number || isTruthy(value)));
+            case MINUS:
+                if (!number) throw new RuntimeError(expr.operator, "Operand must be a number.");
+                return -right;
+            default:
+                throw new RuntimeError(expr.operator, "Unknown unary operator.");
+        }
+    }
+
+    /**
+     * Give a value that is not a number from evaluateNumber.
+     *
+     * @param value the value
+     * @return NaN, the caller must check isNumber
+     */
+    private double notNumber(Object value) {
+        this.notNumber = true;
+        this.value = value;
+        return Double.NaN;
+    }
+
+    /**
+     * Check a result of evaluateNumber, it must be called once for
+     * each result. If it was not a number the value is in `value`.
+     *
+     * @param result result of evaluateNumber
+     * @return `true` if the result is a number
+     */
+    private boolean isNumber(double result) {
+        // a NaN can also be a real number, e.g. from `inf - inf`
+        if (result == result || !notNumber) return true;
+        notNumber = false;
+        return false;
+    }
+
+    private Object box(double result) {
+        return isNumber(result) ? (Object) result : value;
+    }
+
+    private static boolean isEqual(double left, boolean leftNumber, Object leftValue,
+                                   double right, boolean rightNumber, Object rightValue) {
+        // same than Double.equals, NaN is equal to itself and 0 is not -0
+        if (leftNumber && rightNumber) return Double.doubleToLongBits(left) == Double.doubleToLongBits(right);
+        if (leftNumber || rightNumber) return false;
+        return isEqual(leftValue, rightValue);
+    }
+
+    /**
+     * `false` and `nil` are falsey, everything else is truthy.
+     */
+    static boolean isTruthy(Object value) {
+        if (value == null) return false;
+        if (value instanceof Boolean) return (boolean) value;
+        return true;
+    }
+
+    /**
+     * Numbers are equal when Double.equals says so, NaN is equal to
+     * itself and 0 is not -0.
+     */
+    static boolean isEqual(Object a, Object b) {
+        if (a == null) return b == null;
+        return a.equals(b);
+    }
+
+    /**
+     * @param line line of the operator, for the error
+     * @throws RuntimeError if an operand is not a number
+     */
+    static void checkNumbers(Object a, Object b, int line) {
+        if (!(a instanceof Double) || !(b instanceof Double))
+            throw new RuntimeError(line, "Operands must be numbers.");
+    }
+
+    /**
+     * @param line line of the operator, for the error
+     * @throws RuntimeError if b is 0
+     */
+    static double divide(double a, double b, int line) {
+        if (b == 0) throw new RuntimeError(line, "Division by zero.");
+        return a / b;
+    }
+
+    /**
+     * @param value value of an expression
+     * @return the value as Lox shows it, integral numbers without ".0"
+     */
+    static String stringify(Object value) {
+        if (value == null) return "nil";
+
+        if (value instanceof Double) {
+            String text = value.toString();
+            if (text.endsWith(".0")) text = text.substring(0, text.length() - 2);
+            return text;
+        }
+
+        return value.toString();
+    }
+}
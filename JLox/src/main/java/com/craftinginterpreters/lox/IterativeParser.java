@@ -0,0 +1,155 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+import static com.craftinginterpreters.lox.PrattParser.*;
+import static com.craftinginterpreters.lox.TokenType.*;
+
+/***
+ * Same parser than PrattParser, with the same binding powers, trees
+ * and errors, but without recursion: whenever PrattParser would call
+ * itself for an operand, this one pushes a Frame with what it must
+ * do once the operand is parsed (build a unary, a grouping, a binary
+ * or the next branch of a conditional) and starts parsing the operand
+ * in the same loop. The depth of the expressions is only limited by
+ * the memory, not by the stack of the thread.
+ *
+ * `power` is always the binding power of the level being parsed, each
+ * frame keeps the one of the level it goes back to.
+ */
+public class IterativeParser extends Parser {
+
+    private enum Kind { UNARY, GROUPING, BINARY, TRUE_BRANCH, FALSE_BRANCH }
+
+    /**
+     * An operator waiting for its operand.
+     */
+    private static final class Frame {
+        final Kind kind;
+        final int power;
+        final Token operator;
+        // operands already parsed: the left of a binary, the
+        // condition and the true branch of a conditional
+        final Expr first;
+        final Expr second;
+
+        Frame(Kind kind, int power, Token operator, Expr first, Expr second) {
+            this.kind = kind;
+            this.power = power;
+            this.operator = operator;
+            this.first = first;
+            this.second = second;
+        }
+    }
+
+    IterativeParser(List<Token> tokens) {
+        super(tokens);
+    }
+
+    IterativeParser(TokenSource tokens) {
+        super(tokens);
+    }
+
+    IterativeParser(TokenBuffer buffer) {
+        super(buffer);
+    }
+
+    @Override
+    Expr expression() {
+        Deque<Frame> frames = new ArrayDeque<>();
+        int power = COMMA_POWER;
+
+        operand:
+        for (;;) {
+            Expr expr = prefix(frames, power);
+            if (expr == null) {
+                // a unary operator or a grouping, its operand
+                // is a new level
+                power = frames.peek().kind == Kind.GROUPING ? COMMA_POWER : UNARY;
+                continue;
+            }
+
+            for (;;) {
+                // EOF is not an operator, so this also stops at the end
+                int infix = infix(peekType());
+                if (infix != NONE && infix >= power) {
+                    if (infix == TERNARY) {
+                        step();
+                        frames.push(new Frame(Kind.TRUE_BRANCH, power, null, expr, null));
+                        power = EQUALITY;
+                    } else {
+                        frames.push(new Frame(Kind.BINARY, power, advance(), expr, null));
+                        power = infix + 1;
+                    }
+                    continue operand;
+                }
+
+                // the level is done, expr is the operand of the last frame
+                if (frames.isEmpty()) return expr;
+                Frame frame = frames.pop();
+                power = frame.power;
+                switch (frame.kind) {
+                    case UNARY:
+                        expr = factory().unary(frame.operator, expr);
+                        break;
+                    case GROUPING:
+                        consume(RIGHT_PAREN, "Expected ')' after expression.");
+                        expr = factory().grouping(expr);
+                        break;
+                    case BINARY:
+                        expr = factory().binary(frame.first, frame.operator, expr);
+                        break;
+                    case TRUE_BRANCH:
+                        consume(COLON, "Expected ':' token in ternary operation.");
+                        frames.push(new Frame(Kind.FALSE_BRANCH, power, null, frame.first, expr));
+                        power = EQUALITY;
+                        continue operand;
+                    case FALSE_BRANCH:
+                        expr = factory().conditional(frame.first, frame.second, expr);
+                        break;
+                }
+            }
+        }
+    }
+
+    /**
+     * The tokens that can start an expression. Literals and variables
+     * are returned, unary operators and groupings push their frame and
+     * return null, their operand comes next.
+     *
+     * @param frames stack of the operators waiting for their operand
+     * @param power binding power of the level being parsed
+     * @return a parsed expression, or null
+     */
+    private Expr prefix(Deque<Frame> frames, int power) {
+        switch (peekType()) {
+            case BANG:
+            case MINUS:
+                frames.push(new Frame(Kind.UNARY, power, advance(), null, null));
+                return null;
+            case FALSE:
+                step();
+                return factory().literal(false);
+            case TRUE:
+                step();
+                return factory().literal(true);
+            case NIL:
+                step();
+                return factory().literal(null);
+            case NUMBER:
+            case STRING:
+                step();
+                return factory().literal(previousLiteral());
+            case IDENTIFIER:
+                return factory().variable(advance());
+            case LEFT_PAREN:
+                step();
+                frames.push(new Frame(Kind.GROUPING, power, null, null, null));
+                return null;
+            default:
+                throw error(peek(), "Expected expression.");
+        }
+    }
+}
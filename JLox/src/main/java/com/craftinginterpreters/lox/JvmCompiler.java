@@ -0,0 +1,456 @@
+package com.craftinginterpreters.lox;
+
+import java.lang.invoke.MethodHandles;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import static com.craftinginterpreters.lox.ClassFile.*;
+
+/***
+ * Compiles an expression to JVM bytecode, a class that implements
+ * ClosureCompiler.Evaluator, and loads it as a hidden class, so the
+ * JIT of the JVM compiles it like any other Java code.
+ *
+ * Before generating the code the types of the nodes are resolved from
+ * the shape of the tree, like in the ClosureCompiler: the nodes that
+ * always give a number are computed with doubles in the operand stack
+ * of the JVM (dadd, dsub...), and the comparisons with booleans, so
+ * they are never boxed. The rest box their operands and call the
+ * operations of JvmRuntime, which check the types when they run.
+ *
+ * The JVM does not compile methods larger than 8000 bytes, so big
+ * subtrees are generated in their own static methods.
+ *
+ * Variables are not compiled yet, the class has no way to reach the
+ * Environment, so expressions that read them fail to compile.
+ */
+class JvmCompiler implements Expr.Visitor<Void> {
+    private static final String CLASS = "com/craftinginterpreters/lox/JvmCode";
+    private static final String EVALUATOR = "com/craftinginterpreters/lox/ClosureCompiler$Evaluator";
+    private static final String RUNTIME = "com/craftinginterpreters/lox/JvmRuntime";
+    private static final String INTERPRETER = "com/craftinginterpreters/lox/Interpreter";
+
+    // nodes of a subtree that are generated in the same method before
+    // moving it to its own one
+    private static final int SPLIT = 150;
+
+    private enum Type {
+        NUMBER("D", 2), BOOLEAN("Z", 1), OBJECT("Ljava/lang/Object;", 1);
+
+        final String descriptor;
+        // slots it takes in the operand stack
+        final int slots;
+
+        Type(String descriptor, int slots) {
+            this.descriptor = descriptor;
+            this.slots = slots;
+        }
+    }
+
+    private static final class Info {
+        final Type type;
+        // nodes generated with it in the method of its parent
+        final int size;
+        // whether it goes in its own method
+        final boolean split;
+        String method = null;
+
+        Info(Type type, int size, boolean split) {
+            this.type = type;
+            this.size = size;
+            this.split = split;
+        }
+    }
+
+    private final Map<Expr, Info> infos = new IdentityHashMap<>();
+    private ClassFile file;
+    private ClassFile.Code code;
+    // expression whose method is being generated
+    private Expr method;
+    private int methods = 0;
+
+    /**
+     * Compile the expression and load its class.
+     *
+     * @param expr expression to compile
+     * @return evaluator of the expression, it can run many times
+     * @throws ReflectiveOperationException if the class cannot be loaded
+     */
+    ClosureCompiler.Evaluator compile(Expr expr) throws ReflectiveOperationException {
+        byte[] bytes = classFile(expr);
+        Class<?> type = MethodHandles.lookup().defineHiddenClass(bytes, true).lookupClass();
+        return (ClosureCompiler.Evaluator) type.getDeclaredConstructor().newInstance();
+    }
+
+    /**
+     * @param expr expression to compile
+     * @return bytes of the class file
+     */
+    byte[] classFile(Expr expr) {
+        infos.clear();
+        methods = 0;
+        analyze(expr);
+
+        file = new ClassFile(CLASS, "java/lang/Object", EVALUATOR);
+
+        code = file.method(ACC_PUBLIC, "<init>", "()V", 1);
+        code.op(ALOAD_0, 1);
+        code.op(INVOKESPECIAL, file.methodRef("java/lang/Object", "<init>", "()V"), -1);
+        code.op(RETURN, 0);
+
+        code = file.method(ACC_PUBLIC, "evaluate", "()Ljava/lang/Object;", 1);
+        method = expr;
+        expr.accept(this);
+        convert(info(expr).type, Type.OBJECT);
+        code.op(ARETURN, -1);
+
+        byte[] bytes = file.toBytes(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+        file = null;
+        code = null;
+        method = null;
+        infos.clear();
+        return bytes;
+    }
+
+    /**
+     * Resolve the type of every node, and decide which ones go in their
+     * own method.
+     */
+    private Info analyze(Expr expr) {
+        Info info = infos.get(expr);
+        // a shared subtree is only generated once, in its method
+        if (info != null) return info;
+
+        Type type;
+        int size = 1;
+        if (expr instanceof Expr.Variable) {
+            throw new IllegalArgumentException("Variables are not compiled.");
+        } else if (expr instanceof Expr.Literal) {
+            Object value = ((Expr.Literal) expr).value;
+            type = value instanceof Double ? Type.NUMBER : value instanceof Boolean ? Type.BOOLEAN : Type.OBJECT;
+        } else if (expr instanceof Expr.Grouping) {
+            Info inner = analyze(((Expr.Grouping) expr).expression);
+            // a grouping generates nothing, so it is never split
+            info = new Info(inner.type, weight(inner), false);
+            infos.put(expr, info);
+            return info;
+        } else if (expr instanceof Expr.Unary) {
+            Expr.Unary unary = (Expr.Unary) expr;
+            size += weight(analyze(unary.right));
+            type = unary.operator.type == TokenType.BANG ? Type.BOOLEAN : Type.NUMBER;
+        } else if (expr instanceof Expr.Binary) {
+            Expr.Binary binary = (Expr.Binary) expr;
+            Info left = analyze(binary.left);
+            Info right = analyze(binary.right);
+            size += weight(left) + weight(right);
+            switch (binary.operator.type) {
+                case COMMA: type = right.type; break;
+                case PLUS:
+                    type = left.type == Type.NUMBER && right.type == Type.NUMBER ? Type.NUMBER : Type.OBJECT;
+                    break;
+                case MINUS:
+                case STAR:
+                case SLASH:
+                    type = Type.NUMBER;
+                    break;
+                default:
+                    type = Type.BOOLEAN;
+            }
+        } else {
+            Expr.Conditional conditional = (Expr.Conditional) expr;
+            Info condition = analyze(conditional.condition);
+            Info trueBranch = analyze(conditional.true_statement);
+            size += weight(condition) + weight(trueBranch);
+            if (condition.type == Type.NUMBER) {
+                // numbers are always truthy, the false branch is never generated
+                type = trueBranch.type;
+            } else {
+                Info falseBranch = analyze(conditional.false_statement);
+                size += weight(falseBranch);
+                type = trueBranch.type == falseBranch.type ? trueBranch.type : Type.OBJECT;
+            }
+        }
+
+        info = new Info(type, size, size > SPLIT);
+        infos.put(expr, info);
+        return info;
+    }
+
+    /**
+     * @return nodes that the subtree adds to the method of its parent
+     */
+    private static int weight(Info info) {
+        return info.split ? 1 : info.size;
+    }
+
+    private Info info(Expr expr) {
+        return infos.get(expr);
+    }
+
+    /**
+     * Generate the code of an expression, or a call to its method if it
+     * has its own.
+     */
+    private void generate(Expr expr) {
+        Info info = info(expr);
+        if (!info.split || expr == method) {
+            expr.accept(this);
+            return;
+        }
+
+        if (info.method == null) {
+            info.method = "m" + methods++;
+            ClassFile.Code enclosing = code;
+            Expr enclosingMethod = method;
+            code = file.method(ACC_PRIVATE | ACC_STATIC, info.method, "()" + info.type.descriptor, 0);
+            method = expr;
+            expr.accept(this);
+            code.op(returnOf(info.type), -info.type.slots);
+            code = enclosing;
+            method = enclosingMethod;
+        }
+        code.op(INVOKESTATIC, file.methodRef(CLASS, info.method, "()" + info.type.descriptor), info.type.slots);
+    }
+
+    /**
+     * Generate an expression and leave its value with the given type.
+     */
+    private void generate(Expr expr, Type type) {
+        generate(expr);
+        convert(info(expr).type, type);
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        Type left = info(expr.left).type;
+        Type right = info(expr.right).type;
+        boolean numbers = left == Type.NUMBER && right == Type.NUMBER;
+        int line = expr.operator.line;
+
+        switch (expr.operator.type) {
+            case COMMA:
+                generate(expr.left);
+                code.op(left.slots == 2 ? POP2 : POP, -left.slots);
+                generate(expr.right);
+                break;
+            case PLUS:
+                if (numbers) {
+                    arithmetic(expr, DADD);
+                } else {
+                    operands(expr, Type.OBJECT);
+                    runtime("add", "(Ljava/lang/Object;Ljava/lang/Object;I)Ljava/lang/Object;", line, Type.OBJECT);
+                }
+                break;
+            case MINUS:
+                if (numbers) arithmetic(expr, DSUB);
+                else boxed(expr, "subtract", Type.NUMBER);
+                break;
+            case STAR:
+                if (numbers) arithmetic(expr, DMUL);
+                else boxed(expr, "multiply", Type.NUMBER);
+                break;
+            case SLASH:
+                if (numbers && isNonZero(expr.right)) {
+                    arithmetic(expr, DDIV);
+                } else if (numbers) {
+                    operands(expr, Type.NUMBER);
+                    runtime(INTERPRETER, "divide", "(DDI)D", line, Type.NUMBER);
+                } else {
+                    boxed(expr, "divide", Type.NUMBER);
+                }
+                break;
+            case GREATER: comparison(expr, "greater", numbers); break;
+            case GREATER_EQUAL: comparison(expr, "greaterEqual", numbers); break;
+            case LESS: comparison(expr, "less", numbers); break;
+            case LESS_EQUAL: comparison(expr, "lessEqual", numbers); break;
+            case EQUAL_EQUAL:
+            case BANG_EQUAL:
+                Type type = numbers ? Type.NUMBER : Type.OBJECT;
+                operands(expr, type);
+                code.op(INVOKESTATIC, numbers
+                        ? file.methodRef(RUNTIME, "equal", "(DD)Z")
+                        : file.methodRef(INTERPRETER, "isEqual", "(Ljava/lang/Object;Ljava/lang/Object;)Z"),
+                        1 - 2 * type.slots);
+                if (expr.operator.type == TokenType.BANG_EQUAL) not();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown binary operator " + expr.operator.lexeme + ".");
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitConditionalExpr(Expr.Conditional expr) {
+        Type type = info(expr).type;
+        Type condition = info(expr.condition).type;
+
+        if (condition == Type.NUMBER) {
+            // always truthy, it only runs for its errors
+            generate(expr.condition);
+            code.op(POP2, -2);
+            generate(expr.true_statement, type);
+            return null;
+        }
+
+        generate(expr.condition);
+        if (condition == Type.OBJECT) code.op(INVOKESTATIC, file.methodRef(INTERPRETER, "isTruthy", "(Ljava/lang/Object;)Z"), 0);
+        int elseJump = code.jump(IFEQ, -1);
+        int stack = code.stack();
+        generate(expr.true_statement, type);
+        int endJump = code.jump(GOTO, 0);
+        code.setStack(stack);
+        code.patch(elseJump);
+        generate(expr.false_statement, type);
+        code.patch(endJump);
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        generate(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        Object value = expr.value;
+        if (value instanceof Double) {
+            double number = (double) value;
+            long bits = Double.doubleToRawLongBits(number);
+            if (bits == Double.doubleToRawLongBits(0)) code.op(DCONST_0, 2);
+            else if (bits == Double.doubleToRawLongBits(1)) code.op(DCONST_1, 2);
+            else code.op(LDC2_W, file.doubleConstant(number), 2);
+        } else if (value instanceof Boolean) {
+            code.op((boolean) value ? ICONST_1 : ICONST_0, 1);
+        } else if (value instanceof String) {
+            int index = file.string((String) value);
+            if (index <= 0xFF) code.opByte(LDC, index, 1);
+            else code.op(LDC_W, index, 1);
+        } else {
+            code.op(ACONST_NULL, 1);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        Type right = info(expr.right).type;
+
+        switch (expr.operator.type) {
+            case MINUS:
+                generate(expr.right);
+                if (right == Type.NUMBER) {
+                    code.op(DNEG, 0);
+                } else {
+                    convert(right, Type.OBJECT);
+                    line(expr.operator.line);
+                    code.op(INVOKESTATIC, file.methodRef(RUNTIME, "negate", "(Ljava/lang/Object;I)D"), 0);
+                }
+                break;
+            case BANG:
+                generate(expr.right);
+                if (right == Type.NUMBER) {
+                    // numbers are always truthy
+                    code.op(POP2, -2);
+                    code.op(ICONST_0, 1);
+                } else {
+                    if (right == Type.OBJECT)
+                        code.op(INVOKESTATIC, file.methodRef(INTERPRETER, "isTruthy", "(Ljava/lang/Object;)Z"), 0);
+                    not();
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown unary operator " + expr.operator.lexeme + ".");
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        throw new IllegalArgumentException("Variables are not compiled.");
+    }
+
+    private void operands(Expr.Binary expr, Type type) {
+        generate(expr.left, type);
+        generate(expr.right, type);
+    }
+
+    private void arithmetic(Expr.Binary expr, int opcode) {
+        operands(expr, Type.NUMBER);
+        code.op(opcode, -2);
+    }
+
+    /**
+     * Operator of JvmRuntime that takes two Object and the line.
+     */
+    private void boxed(Expr.Binary expr, String name, Type result) {
+        operands(expr, Type.OBJECT);
+        runtime(name, "(Ljava/lang/Object;Ljava/lang/Object;I)" + result.descriptor, expr.operator.line, result);
+    }
+
+    private void comparison(Expr.Binary expr, String name, boolean numbers) {
+        if (numbers) {
+            operands(expr, Type.NUMBER);
+            code.op(INVOKESTATIC, file.methodRef(RUNTIME, name, "(DD)Z"), -3);
+        } else {
+            boxed(expr, name, Type.BOOLEAN);
+        }
+    }
+
+    /**
+     * Call an operator of JvmRuntime whose last argument is the line,
+     * the other arguments are already in the stack.
+     */
+    private void runtime(String name, String descriptor, int line, Type result) {
+        runtime(RUNTIME, name, descriptor, line, result);
+    }
+
+    /**
+     * Same than `runtime`, for an operator of another class.
+     */
+    private void runtime(String owner, String name, String descriptor, int line, Type result) {
+        int before = code.stack();
+        line(line);
+        code.op(INVOKESTATIC, file.methodRef(owner, name, descriptor), 0);
+        // the arguments are the two operands, both of the same type
+        int operands = descriptor.startsWith("(DD") ? 4 : 2;
+        code.setStack(before - operands + result.slots);
+    }
+
+    private void line(int line) {
+        if (line <= 5) code.op(ICONST_0 + line, 1);
+        else if (line <= Byte.MAX_VALUE) code.opByte(BIPUSH, line, 1);
+        else if (line <= Short.MAX_VALUE) code.op(SIPUSH, line, 1);
+        else code.op(LDC_W, file.integer(line), 1);
+    }
+
+    private void not() {
+        code.op(ICONST_1, 1);
+        code.op(IXOR, -1);
+    }
+
+    /**
+     * Convert the value on top of the stack, only boxing is needed.
+     */
+    private void convert(Type from, Type to) {
+        if (from == to) return;
+        if (to != Type.OBJECT) throw new IllegalStateException("Cannot convert " + from + " to " + to + ".");
+        if (from == Type.NUMBER)
+            code.op(INVOKESTATIC, file.methodRef("java/lang/Double", "valueOf", "(D)Ljava/lang/Double;"), -1);
+        else
+            code.op(INVOKESTATIC, file.methodRef("java/lang/Boolean", "valueOf", "(Z)Ljava/lang/Boolean;"), 0);
+    }
+
+    private static boolean isNonZero(Expr expr) {
+        while (expr instanceof Expr.Grouping) expr = ((Expr.Grouping) expr).expression;
+        return expr instanceof Expr.Literal && (double) ((Expr.Literal) expr).value != 0;
+    }
+
+    private static int returnOf(Type type) {
+        switch (type) {
+            case NUMBER: return DRETURN;
+            case BOOLEAN: return IRETURN;
+            default: return ARETURN;
+        }
+    }
+}
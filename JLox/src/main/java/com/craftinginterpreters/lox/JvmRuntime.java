@@ -0,0 +1,83 @@
+package com.craftinginterpreters.lox;
+
+/***
+ * Operations called by the classes of the JvmCompiler, for the
+ * operators whose operands are not known to be numbers while
+ * compiling, and for the ones that can fail. They use the rules of
+ * the Interpreter, and the errors carry the line of the operator. The
+ * generated code calls Interpreter directly for the truthiness, the
+ * equality of values and the division of numbers.
+ */
+final class JvmRuntime {
+    private JvmRuntime() {
+    }
+
+    static Object add(Object a, Object b, int line) {
+        if (a instanceof Double && b instanceof Double) return (double) a + (double) b;
+        if (a instanceof String && b instanceof String) return (String) a + b;
+        throw new RuntimeError(line, "Operands must be two numbers or two strings.");
+    }
+
+    static double subtract(Object a, Object b, int line) {
+        Interpreter.checkNumbers(a, b, line);
+        return (double) a - (double) b;
+    }
+
+    static double multiply(Object a, Object b, int line) {
+        Interpreter.checkNumbers(a, b, line);
+        return (double) a * (double) b;
+    }
+
+    static double divide(Object a, Object b, int line) {
+        Interpreter.checkNumbers(a, b, line);
+        return Interpreter.divide((double) a, (double) b, line);
+    }
+
+    static boolean greater(double a, double b) {
+        return a > b;
+    }
+
+    static boolean greaterEqual(double a, double b) {
+        return a >= b;
+    }
+
+    static boolean less(double a, double b) {
+        return a < b;
+    }
+
+    static boolean lessEqual(double a, double b) {
+        return a <= b;
+    }
+
+    static boolean greater(Object a, Object b, int line) {
+        Interpreter.checkNumbers(a, b, line);
+        return (double) a > (double) b;
+    }
+
+    static boolean greaterEqual(Object a, Object b, int line) {
+        Interpreter.checkNumbers(a, b, line);
+        return (double) a >= (double) b;
+    }
+
+    static boolean less(Object a, Object b, int line) {
+        Interpreter.checkNumbers(a, b, line);
+        return (double) a < (double) b;
+    }
+
+    static boolean lessEqual(Object a, Object b, int line) {
+        Interpreter.checkNumbers(a, b, line);
+        return (double) a <= (double) b;
+    }
+
+    /**
+     * Same than Double.equals, NaN is equal to itself and 0 is not -0.
+     */
+    static boolean equal(double a, double b) {
+        return Double.doubleToLongBits(a) == Double.doubleToLongBits(b);
+    }
+
+    static double negate(Object a, int line) {
+        if (!(a instanceof Double)) throw new RuntimeError(line, "Operand must be a number.");
+        return -(double) a;
+    }
+}
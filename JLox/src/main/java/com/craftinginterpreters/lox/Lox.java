@@ -3,17 +3,52 @@ package com.craftinginterpreters.lox;
 import com.craftinginterpreters.lox.printers.*;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class Lox {
 
     // Flag that indicates there was an error parsing
     static boolean hadError = false;
+    // Flag that indicates there was an error running the code
+    static boolean hadRuntimeError = false;
+
+    // How the code runs, selected with --mode=
+    private static final List<String> MODES = Arrays.asList("tree", "vm", "specialize", "closure", "tiered");
+    private static String mode = "tree";
+    private static final Interpreter interpreter = new Interpreter();
+    private static final VM vm = new VM();
+    private static final TieredInterpreter tiered = new TieredInterpreter();
+
+    // Scanner used to read the files, selected with --lexer=
+    private static final List<String> LEXERS = Arrays.asList("stream", "parallel", "dfa");
+    private static String lexer = "stream";
+    // Parser for the expressions, selected with --parser=
+    private static final List<String> PARSERS = Arrays.asList("descent", "pratt", "iterative", "arena");
+    private static String parser = "descent";
+    // Scan in its own thread while parsing, set with --pipeline
+    private static boolean pipeline = false;
+    // Share the repeated subtrees of the AST, set with --hash-cons
+    private static boolean hashCons = false;
+    // Simplify the AST before running it, set with --optimize
+    private static boolean optimize = false;
+    // Directory where parsed files are cached, set with --cache=
+    private static String cacheDirectory = null;
+    // Print the AST instead of running it, set with --ast
+    private static boolean printAst = false;
 
 
     /**
@@ -22,21 +57,94 @@ public class Lox {
      * with JLox code, and the other is directly as a command prompt
      * not providing any parameter
      *
-     * @param args array with an optional lox file
+     * The options go before the file:
+     *   --lexer=stream    scan the file while it is parsed (default)
+     *   --lexer=parallel  scan the whole file using all the cores, only
+     *                     for UTF-8 files that can be mapped
+     *   --lexer=dfa       scan with the table driven DfaScanner
+     *   --parser=descent  recursive descent Parser (default)
+     *   --parser=pratt    PrattParser, driven by a table of binding powers
+     *   --parser=iterative IterativeParser, the PrattParser without
+     *                     recursion, for expressions of any depth (but
+     *                     the optimizer and the engines still recurse,
+     *                     running an expression deeper than their stack
+     *                     is a runtime error, "Expression too deep.")
+     *   --parser=arena    ArenaParser, nodes stored in arrays, it needs
+     *                     all the tokens scanned in a buffer first (not
+     *                     with --lexer=dfa or --pipeline)
+     *   --pipeline        scan in another thread while parsing, with
+     *                     the stream and dfa lexers
+     *   --hash-cons       share the nodes of repeated subexpressions
+     *                     (not with the arena parser)
+     *   --optimize        fold the constant expressions before running
+     *                     (not with the arena parser)
+     *   --cache=dir       keep the parsed files in dir, and load them from
+     *                     there while they do not change, only for UTF-8
+     *                     files that can be mapped (not with the arena
+     *                     parser)
+     *   --mode=tree       run walking the AST with the Interpreter (default)
+     *   --mode=vm         compile the AST to bytecode and run it in the VM
+     *   --mode=specialize run a tree of nodes that specialize themselves
+     *                     for the types they see
+     *   --mode=closure    compile the AST to a tree of lambdas and run it
+     *   --mode=tiered     interpret the AST, and compile it to JVM bytecode
+     *                     once it has run enough times
+     *   --ast             print the parsed expression instead of its value
+     *
+     * @param args array with the options and an optional lox file
      */
     public static void main(String[] args) throws IOException {
         //showPrinters();
 
-        if (args.length > 1) {
-            System.out.println("USAGE: jlox [script]");
-            System.exit(64);
-        } else if (args.length == 1) {
-            runFile(args[0]);
+        List<String> scripts = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--lexer=")) {
+                lexer = arg.substring("--lexer=".length());
+                if (!LEXERS.contains(lexer)) usage();
+            } else if (arg.startsWith("--parser=")) {
+                parser = arg.substring("--parser=".length());
+                if (!PARSERS.contains(parser)) usage();
+            } else if (arg.equals("--pipeline")) {
+                pipeline = true;
+            } else if (arg.equals("--hash-cons")) {
+                hashCons = true;
+            } else if (arg.equals("--optimize")) {
+                optimize = true;
+            } else if (arg.startsWith("--cache=")) {
+                cacheDirectory = arg.substring("--cache=".length());
+                if (cacheDirectory.isEmpty()) usage();
+            } else if (arg.startsWith("--mode=")) {
+                mode = arg.substring("--mode=".length());
+                if (!MODES.contains(mode)) usage();
+            } else if (arg.equals("--ast")) {
+                printAst = true;
+            } else if (arg.startsWith("--")) {
+                usage();
+            } else {
+                scripts.add(arg);
+            }
+        }
+
+        // only the Scanner fills the buffer the arena parser reads
+        if (parser.equals("arena") && (lexer.equals("dfa") || pipeline)) usage();
+
+        if (scripts.size() > 1) {
+            usage();
+        } else if (scripts.size() == 1) {
+            runFile(scripts.get(0));
         } else {
             runPrompt();
         }
     }
 
+    private static void usage() {
+        System.out.println("USAGE: jlox [--lexer=" + String.join("|", LEXERS) + "]"
+                + " [--parser=" + String.join("|", PARSERS) + "] [--pipeline] [--hash-cons]"
+                + " [--optimize] [--cache=dir]"
+                + " [--mode=" + String.join("|", MODES) + "] [--ast] [script]");
+        System.exit(64);
+    }
+
 
     private static void showPrinters() {
         Expr expression = new Expr.Binary(
@@ -73,17 +181,87 @@ public class Lox {
 
     /**
      * In case the user provided one file, here we will directly run it
-     * in the interpreter.
+     * in the interpreter. The file is not loaded in memory: UTF-8
+     * files are mapped and scanned as bytes, anything else (other
+     * charsets, pipes, huge files) is read as a stream while the
+     * parser asks for tokens. The parallel lexer needs the whole
+     * file, so it is only used with mapped files, and so does the
+     * cache, which hashes the whole file.
      *
      * @param path path to a lox file
      * @throws IOException
      */
     private static void runFile(String path) throws IOException {
-        byte[] bytes = Files.readAllBytes(Paths.get(path));
-        run(new String(bytes, Charset.defaultCharset()));
+        Path file = Paths.get(path);
+        if (canMap(file)) {
+            MappedSource source = MappedSource.map(file);
+            if (cacheDirectory != null && !parser.equals("arena"))
+                runCached(source, new AstCache(Paths.get(cacheDirectory)));
+            else if (lexer.equals("parallel"))
+                run(ParallelScanner.scan(source, source.length(), new SymbolTable()));
+            else
+                run(source, new SymbolTable());
+        } else {
+            if (lexer.equals("parallel")) warnNotMapped("--lexer=parallel", path + " is scanned with the streaming lexer");
+            if (cacheDirectory != null) warnNotMapped("--cache", path + " is not cached");
+            try (Reader reader = new InputStreamReader(
+                    Files.newInputStream(file), Charset.defaultCharset())) {
+                run(new ReaderSource(reader), new SymbolTable());
+            }
+        }
         // In case there was an error parsing, we can exit with a
         // specific error
         if (hadError) System.exit(65);
+        if (hadRuntimeError) System.exit(70);
+    }
+
+    /**
+     * The parallel lexer and the cache need the whole input mapped in
+     * memory, tell the user when they cannot be used, so a run does not
+     * measure or skip something without anyone noticing.
+     *
+     * @param option option that is not used
+     * @param fallback what is done instead
+     */
+    private static void warnNotMapped(String option, String fallback) {
+        System.err.println("Warning: " + option + " needs a regular file and a UTF-8 charset, "
+                + fallback + ".");
+    }
+
+    /**
+     * Run a file using the cache, when the same content was already
+     * parsed the AST is loaded from the cache, and the scanner and the
+     * parser are not used at all. Otherwise the file is parsed and, if
+     * there were no errors, the AST is stored for the next time.
+     *
+     * @param source content of the file
+     * @param cache cache of parsed files
+     */
+    private static void runCached(MappedSource source, AstCache cache) {
+        SymbolTable symbols = new SymbolTable();
+        byte[] key = cache.key(source.bytes());
+        Expr expr = cache.load(key, symbols);
+        if (expr == null) {
+            expr = lexer.equals("parallel") ? parse(ParallelScanner.scan(source, source.length(), symbols))
+                                            : parse(source, symbols);
+            if (!hadError) cache.store(key, expr);
+        }
+        execute(expr);
+    }
+
+    /**
+     * The mapped source reads the file as UTF-8, so we only use it when
+     * that is also the charset we would use to decode it (even ASCII
+     * decodes the bytes above 0x7F differently), and when the file is
+     * a regular file that fits in a single mapping.
+     *
+     * @param file file to run
+     * @return `true` if the file can be scanned mapped in memory
+     * @throws IOException
+     */
+    private static boolean canMap(Path file) throws IOException {
+        if (!Charset.defaultCharset().equals(StandardCharsets.UTF_8)) return false;
+        return Files.isRegularFile(file) && Files.size(file) <= Integer.MAX_VALUE;
     }
 
     /**
@@ -95,16 +273,22 @@ public class Lox {
         // Java needs streams to read from the keyboard
         InputStreamReader input = new InputStreamReader(System.in);
         BufferedReader reader = new BufferedReader(input);
+        // names are shared by all the lines of the session, the
+        // table is bounded so it does not grow forever
+        SymbolTable symbols = new SymbolTable();
+        if (lexer.equals("parallel")) warnNotMapped("--lexer=parallel", "the prompt is scanned with the streaming lexer");
+        if (cacheDirectory != null) warnNotMapped("--cache", "the prompt is not cached");
 
         // now loop to run lines
         for (;;) {
             System.out.print("> ");
             String line = reader.readLine();
             if (line == null) break;
-            run(line);
-            // in the loop, we just clean the flag
+            run(new StringSource(line), symbols);
+            // in the loop, we just clean the flags
             // for not to kill the whole session
             hadError = false;
+            hadRuntimeError = false;
         }
     }
 
@@ -135,21 +319,196 @@ public class Lox {
     /***
      * V2 of run method, here we retrieve the tokens with a scanner,
      * and then we parse it into an Expression AST, then we print it
-     * using our AstPrinter
+     * using our AstPrinter. The parser pulls the tokens from the
+     * scanner, so we never have the whole list of tokens in memory.
      *
-     * @param source raw input with the code
+     * @param source input with the code
+     * @param symbols table where names and strings are interned
      */
-    private static void run(String source) {
-        Scanner scanner = new Scanner(source);
-        List<Token> tokens = scanner.scanTokens();
-        Parser parser = new Parser(tokens);
-        Expr expr = parser.parse();
+    private static void run(Source source, SymbolTable symbols) {
+        if (parser.equals("arena")) {
+            run(new Scanner(source, symbols).scanBuffer());
+            return;
+        }
+
+        execute(parse(source, symbols));
+    }
+
+    /**
+     * Scan and parse the code, the parser pulls the tokens from the
+     * scanner selected with --lexer.
+     *
+     * @param source input with the code
+     * @param symbols table where names and strings are interned
+     * @return parsed expression, null if there was an error
+     */
+    private static Expr parse(Source source, SymbolTable symbols) {
+        TokenSource scanner;
+        if (pipeline) {
+            PipelinedScanner pipe = new PipelinedScanner();
+            pipe.start(scanner(source, symbols, pipe::error));
+            scanner = pipe;
+        } else {
+            scanner = scanner(source, symbols, Lox::error);
+        }
+        Expr expr = parse(parser.equals("pratt") ? new PrattParser(scanner)
+                          : parser.equals("iterative") ? new IterativeParser(scanner)
+                          : new Parser(scanner));
+        // the parser may stop before the end of the input, keep
+        // scanning so lexical errors are still reported
+        while (scanner.nextToken().type != TokenType.EOF);
+
+        return expr;
+    }
+
+    /**
+     * Create the scanner selected with --lexer.
+     *
+     * @param source input with the code
+     * @param symbols table where names and strings are interned
+     * @param reporter where the errors of the scanner go
+     * @return the scanner
+     */
+    private static TokenSource scanner(Source source, SymbolTable symbols, Scanner.ErrorReporter reporter) {
+        if (lexer.equals("dfa")) {
+            DfaScanner scanner = new DfaScanner(source, symbols);
+            scanner.setErrorReporter(reporter);
+            return scanner;
+        }
+        Scanner scanner = new Scanner(source, symbols);
+        scanner.setErrorReporter(reporter);
+        return scanner;
+    }
 
+    /**
+     * Run the code once all the tokens were scanned in a buffer.
+     *
+     * @param tokens tokens of the code
+     */
+    private static void run(TokenBuffer tokens) {
+        if (parser.equals("arena")) {
+            ArenaParser arenaParser = new ArenaParser(tokens);
+            int root = arenaParser.parseNode();
+            if (hadError) return;
+            if (printAst) {
+                printAst(out -> new ArenaAstPrinter(arenaParser.arena()).print(root, out));
+                return;
+            }
+            try {
+                evaluate(arenaParser.arena().expr(root));
+            } catch (StackOverflowError error) {
+                tooDeep();
+            }
+            return;
+        }
+
+        execute(parse(tokens));
+    }
+
+    /**
+     * Parse the tokens of a buffer.
+     *
+     * @param tokens tokens of the code
+     * @return parsed expression, null if there was an error
+     */
+    private static Expr parse(TokenBuffer tokens) {
+        return parse(parser.equals("pratt") ? new PrattParser(tokens)
+                     : parser.equals("iterative") ? new IterativeParser(tokens)
+                     : new Parser(tokens));
+    }
+
+    /**
+     * Parse the expression, sharing the repeated subtrees
+     * with --hash-cons.
+     *
+     * @param exprParser parser with the tokens
+     * @return parsed expression, null if there was an error
+     */
+    private static Expr parse(Parser exprParser) {
+        if (hashCons) exprParser.setFactory(new HashConsingFactory());
+        return exprParser.parse();
+    }
+
+    /**
+     * Last step of run, evaluate the parsed expression (optimized with
+     * --optimize) and print its value, or print the expression using
+     * our AstPrinter with --ast.
+     *
+     * @param expr parsed expression
+     */
+    private static void execute(Expr expr) {
         // Stop if there was a syntax error.
         if (hadError) return;
 
-        // we use the AstPrinter to print the expression
-        System.out.println(new AstPrinter().print(expr));
+        try {
+            if (optimize) expr = new Optimizer(hashCons).optimize(expr);
+
+            if (printAst) {
+                Expr tree = expr;
+                printAst(out -> new AstPrinter().print(tree, out));
+                return;
+            }
+
+            evaluate(expr);
+        } catch (StackOverflowError error) {
+            tooDeep();
+        }
+    }
+
+    private interface AstWriter {
+        void print(Appendable out) throws IOException;
+    }
+
+    /**
+     * Print an AST for --ast, the printer writes it to the standard
+     * output as it goes, without building it in a string first.
+     *
+     * @param printer prints the AST into the Appendable
+     */
+    private static void printAst(AstWriter printer) {
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, Charset.defaultCharset()));
+        try {
+            printer.print(out);
+            out.write(System.lineSeparator());
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Run the expression with the engine selected with --mode and
+     * print its value.
+     *
+     * @param expr expression to run
+     */
+    private static void evaluate(Expr expr) {
+        switch (mode) {
+            case "vm": {
+                Chunk chunk;
+                try {
+                    chunk = new Compiler().compile(expr);
+                } catch (RuntimeError error) {
+                    // the code does not fit in a chunk
+                    runtimeError(error);
+                    return;
+                }
+                vm.interpret(chunk);
+                break;
+            }
+            case "specialize":
+                new SpecializingInterpreter().interpret(expr);
+                break;
+            case "closure":
+                new ClosureCompiler().interpret(expr);
+                break;
+            case "tiered":
+                tiered.interpret(expr);
+                break;
+            default:
+                interpreter.interpret(expr);
+                break;
+        }
     }
 
 
@@ -168,6 +527,24 @@ public class Lox {
         report(line, "", message);
     }
 
+    /*
+    Errors found while running the code, they are reported with
+    the line of the operator that failed.
+     */
+    static void runtimeError(RuntimeError error) {
+        System.err.println(error.getMessage() + "\n[line " + error.line + "]");
+        hadRuntimeError = true;
+    }
+
+    /*
+    The optimizer and the engines recurse over the AST, an expression
+    deeper than the stack of the thread fails like a runtime error.
+     */
+    private static void tooDeep() {
+        System.err.println("Expression too deep.");
+        hadRuntimeError = true;
+    }
+
     private static void report(int line, String where, String message) {
         System.err.println("[line " + line + "] Error" + where + ": " + message);
         hadError = true;
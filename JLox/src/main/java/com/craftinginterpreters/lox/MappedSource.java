@@ -0,0 +1,78 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Source over the UTF-8 bytes of a file mapped in memory, the file
+ * is never copied into the heap. Everything the Scanner checks
+ * (operators, digits, letters, quotes, new lines) is ASCII, and in
+ * UTF-8 the bytes of a multibyte character are never ASCII, so the
+ * Scanner can work with the bytes directly. Only when the text of
+ * a lexeme is needed we decode it.
+ */
+public class MappedSource extends Source {
+    private final ByteBuffer bytes;
+
+    public MappedSource(ByteBuffer bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * Map a file in memory, files bigger than 2GB cannot be mapped
+     * in a single buffer, in that case the caller should read the
+     * file as a stream.
+     *
+     * @param path path of the file
+     * @return a source over the mapped file
+     * @throws IOException if the file cannot be mapped
+     */
+    public static MappedSource map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new MappedSource(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * @return the bytes of the source, a read only view
+     */
+    public ByteBuffer bytes() {
+        return bytes.asReadOnlyBuffer();
+    }
+
+    public int length() {
+        return bytes.limit();
+    }
+
+    @Override
+    public boolean has(int pos) {
+        return pos < bytes.limit();
+    }
+
+    @Override
+    public char charAt(int pos) {
+        return (char) (bytes.get(pos) & 0xFF);
+    }
+
+    /**
+     * A multibyte character goes on until the next byte that is not
+     * a continuation byte (10xxxxxx).
+     */
+    @Override
+    public int characterEnd(int pos) {
+        int end = pos + 1;
+        while (end < bytes.limit() && (bytes.get(end) & 0xC0) == 0x80) end++;
+        return end;
+    }
+
+    @Override
+    public String text(int start, int end) {
+        byte[] lexeme = new byte[end - start];
+        bytes.get(start, lexeme);
+        return new String(lexeme, StandardCharsets.UTF_8);
+    }
+}
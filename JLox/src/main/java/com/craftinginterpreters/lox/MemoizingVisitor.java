@@ -0,0 +1,40 @@
+package com.craftinginterpreters.lox;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Base for visitors whose result only depends on the node, when the
+ * AST is a DAG (see HashConsingFactory) a shared node is visited
+ * once and its result is reused. The visitors must go to the children
+ * with `visit` instead of calling `accept` themselves. Memoizing is
+ * optional, for trees it only costs time.
+ *
+ * @param <R> result of the visitor
+ */
+public abstract class MemoizingVisitor<R> implements Expr.Visitor<R> {
+
+    // results by node, compared by identity, null if not memoizing
+    private final Map<Expr, R> results;
+
+    protected MemoizingVisitor(boolean memoize) {
+        this.results = memoize ? new IdentityHashMap<>() : null;
+    }
+
+    /**
+     * Visit a node, or return the result from the last time it was visited.
+     *
+     * @param expr node to visit
+     * @return result of the visitor
+     */
+    public R visit(Expr expr) {
+        if (results == null) return expr.accept(this);
+
+        R result = results.get(expr);
+        if (result == null && !results.containsKey(expr)) {
+            result = expr.accept(this);
+            results.put(expr, result);
+        }
+        return result;
+    }
+}
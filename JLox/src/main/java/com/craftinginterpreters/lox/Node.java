@@ -0,0 +1,656 @@
+package com.craftinginterpreters.lox;
+
+import static com.craftinginterpreters.lox.TokenType.*;
+
+/***
+ * Executable tree for the SpecializingInterpreter. It is built from
+ * the AST, but the nodes of the operators start uninitialized, and the
+ * first time they run they look at the types of their operands and
+ * replace themselves in the tree with a node for those types:
+ *
+ * - `+` becomes NumberArithmetic when it adds numbers, or StringAdd
+ *   when it joins strings.
+ * - `-`, `*` and `/` become NumberArithmetic, and the comparisons and
+ *   the equalities of numbers NumberComparison.
+ * - A conditional whose condition is a boolean becomes
+ *   BooleanConditional, `-` Negate and `!` of a boolean Not.
+ *
+ * The specialized nodes do not check the types, they ask their
+ * children for the type they expect with executeNumber or
+ * executeBoolean, which give the value without boxing it. When a
+ * child gives something else it throws UnexpectedResult with the
+ * value, and the node replaces itself with a generic one, that
+ * checks the types every time like the Interpreter (so a node that
+ * sees more than one type stops trying). Groupings are not nodes,
+ * the tree already has the precedence.
+ *
+ * The nodes keep their parent, so they can replace themselves, and a
+ * Root on top of the tree, so the first node can be replaced too.
+ */
+public abstract class Node {
+
+    Node parent;
+
+    /**
+     * @return value of the node, a Double, a String, a Boolean or null for nil
+     */
+    abstract Object execute();
+
+    /**
+     * @return value of the node, when it is a number
+     * @throws UnexpectedResult with the value, when it is not a number
+     */
+    double executeNumber() throws UnexpectedResult {
+        return expectNumber(execute());
+    }
+
+    /**
+     * @return value of the node, when it is a boolean
+     * @throws UnexpectedResult with the value, when it is not a boolean
+     */
+    boolean executeBoolean() throws UnexpectedResult {
+        return expectBoolean(execute());
+    }
+
+    /**
+     * Put a node in the place of this one in the tree.
+     *
+     * @param node the new node
+     * @return the new node
+     */
+    <T extends Node> T replace(T node) {
+        parent.replaceChild(this, node);
+        return node;
+    }
+
+    /**
+     * Change one of the children of this node.
+     *
+     * @param child the current child
+     * @param node the new child
+     */
+    void replaceChild(Node child, Node node) {
+        throw new IllegalStateException("Node without children.");
+    }
+
+    <T extends Node> T adopt(T child) {
+        child.parent = this;
+        return child;
+    }
+
+    static double expectNumber(Object value) throws UnexpectedResult {
+        if (value instanceof Double) return (double) value;
+        throw new UnexpectedResult(value);
+    }
+
+    static boolean expectBoolean(Object value) throws UnexpectedResult {
+        if (value instanceof Boolean) return (boolean) value;
+        throw new UnexpectedResult(value);
+    }
+
+    /**
+     * A value of another type than the one asked by executeNumber or
+     * executeBoolean. It does not fill the stack trace, it only tells
+     * the parent to stop specializing.
+     */
+    static class UnexpectedResult extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final Object value;
+
+        UnexpectedResult(Object value) {
+            super(null, null, false, false);
+            this.value = value;
+        }
+    }
+
+    /**
+     * Top of the tree, only there so the first node has a parent.
+     */
+    static class Root extends Node {
+        Node body;
+
+        Root(Node body) {
+            this.body = adopt(body);
+        }
+
+        @Override
+        Object execute() {
+            return body.execute();
+        }
+
+        @Override
+        void replaceChild(Node child, Node node) {
+            if (body == child) body = adopt(node);
+        }
+    }
+
+    static class NumberLiteral extends Node {
+        final double value;
+        // boxed once, for execute
+        final Object boxed;
+
+        NumberLiteral(double value) {
+            this.value = value;
+            this.boxed = value;
+        }
+
+        @Override
+        Object execute() {
+            return boxed;
+        }
+
+        @Override
+        double executeNumber() {
+            return value;
+        }
+    }
+
+    /**
+     * Literal that is not a number: a string, a boolean or nil.
+     */
+    static class Literal extends Node {
+        final Object value;
+
+        Literal(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        Object execute() {
+            return value;
+        }
+    }
+
+    /**
+     * Variable, read from its Environment every time it runs, its
+     * parent specializes for the type of its value.
+     */
+    static class Variable extends Node {
+        final Environment environment;
+        final Token name;
+
+        Variable(Environment environment, Token name) {
+            this.environment = environment;
+            this.name = name;
+        }
+
+        @Override
+        Object execute() {
+            return environment.get(name);
+        }
+    }
+
+    /**
+     * Base of the nodes with two operands, the specialized versions
+     * of an operator take the children of the node they replace.
+     */
+    abstract static class Binary extends Node {
+        final Token operator;
+        Node left;
+        Node right;
+
+        Binary(Token operator, Node left, Node right) {
+            this.operator = operator;
+            this.left = adopt(left);
+            this.right = adopt(right);
+        }
+
+        Binary(Binary node) {
+            this(node.operator, node.left, node.right);
+        }
+
+        @Override
+        void replaceChild(Node child, Node node) {
+            if (left == child) left = adopt(node);
+            if (right == child) right = adopt(node);
+        }
+
+        /**
+         * Replace this node with a generic one and compute the values
+         * that did not fit this node.
+         *
+         * @param leftValue value of the left operand
+         * @param rightValue value of the right operand
+         * @return result of the operator
+         */
+        Object generalize(Object leftValue, Object rightValue) {
+            return replace(new GenericBinary(this)).compute(leftValue, rightValue);
+        }
+    }
+
+    /**
+     * An operator that did not run yet, it runs once with the generic
+     * rules and then replaces itself for the types it saw.
+     */
+    static class UninitializedBinary extends Binary {
+
+        UninitializedBinary(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        Object execute() {
+            Object leftValue = left.execute();
+            Object rightValue = right.execute();
+            boolean numbers = leftValue instanceof Double && rightValue instanceof Double;
+
+            switch (operator.type) {
+                case PLUS:
+                    if (numbers) replace(new NumberArithmetic(this));
+                    else if (leftValue instanceof String && rightValue instanceof String) replace(new StringAdd(this));
+                    else return generalize(leftValue, rightValue);
+                    break;
+                case MINUS:
+                case STAR:
+                case SLASH:
+                    if (!numbers) return generalize(leftValue, rightValue);
+                    replace(new NumberArithmetic(this));
+                    break;
+                default:
+                    if (!numbers) return generalize(leftValue, rightValue);
+                    replace(new NumberComparison(this));
+                    break;
+            }
+            return GenericBinary.compute(operator, leftValue, rightValue);
+        }
+    }
+
+    /**
+     * `+`, `-`, `*` or `/` of two numbers.
+     */
+    static class NumberArithmetic extends Binary {
+
+        NumberArithmetic(Binary node) {
+            super(node);
+        }
+
+        @Override
+        Object execute() {
+            try {
+                return executeNumber();
+            } catch (UnexpectedResult e) {
+                return e.value;
+            }
+        }
+
+        @Override
+        double executeNumber() throws UnexpectedResult {
+            double a;
+            try {
+                a = left.executeNumber();
+            } catch (UnexpectedResult e) {
+                // the right side still runs before the error
+                return expectNumber(generalize(e.value, right.execute()));
+            }
+            double b;
+            try {
+                b = right.executeNumber();
+            } catch (UnexpectedResult e) {
+                return expectNumber(generalize(a, e.value));
+            }
+
+            switch (operator.type) {
+                case PLUS: return a + b;
+                case MINUS: return a - b;
+                case STAR: return a * b;
+                default: return Interpreter.divide(a, b, operator.line);
+            }
+        }
+    }
+
+    /**
+     * Comparison or equality of two numbers.
+     */
+    static class NumberComparison extends Binary {
+
+        NumberComparison(Binary node) {
+            super(node);
+        }
+
+        @Override
+        Object execute() {
+            try {
+                return executeBoolean();
+            } catch (UnexpectedResult e) {
+                return e.value;
+            }
+        }
+
+        @Override
+        boolean executeBoolean() throws UnexpectedResult {
+            double a;
+            try {
+                a = left.executeNumber();
+            } catch (UnexpectedResult e) {
+                return expectBoolean(generalize(e.value, right.execute()));
+            }
+            double b;
+            try {
+                b = right.executeNumber();
+            } catch (UnexpectedResult e) {
+                return expectBoolean(generalize(a, e.value));
+            }
+
+            switch (operator.type) {
+                case GREATER: return a > b;
+                case GREATER_EQUAL: return a >= b;
+                case LESS: return a < b;
+                case LESS_EQUAL: return a <= b;
+                // same than Double.equals, NaN is equal to itself and 0 is not -0
+                case EQUAL_EQUAL: return Double.doubleToLongBits(a) == Double.doubleToLongBits(b);
+                default: return Double.doubleToLongBits(a) != Double.doubleToLongBits(b);
+            }
+        }
+    }
+
+    /**
+     * `+` of two strings.
+     */
+    static class StringAdd extends Binary {
+
+        StringAdd(Binary node) {
+            super(node);
+        }
+
+        @Override
+        Object execute() {
+            Object leftValue = left.execute();
+            Object rightValue = right.execute();
+            if (leftValue instanceof String && rightValue instanceof String)
+                return (String) leftValue + rightValue;
+            return generalize(leftValue, rightValue);
+        }
+    }
+
+    /**
+     * Any binary operator, for the operands of any type.
+     */
+    static class GenericBinary extends Binary {
+
+        GenericBinary(Binary node) {
+            super(node);
+        }
+
+        @Override
+        Object execute() {
+            Object leftValue = left.execute();
+            return compute(leftValue, right.execute());
+        }
+
+        Object compute(Object leftValue, Object rightValue) {
+            return compute(operator, leftValue, rightValue);
+        }
+
+        static Object compute(Token operator, Object left, Object right) {
+            switch (operator.type) {
+                case PLUS:
+                    if (left instanceof Double && right instanceof Double) return (double) left + (double) right;
+                    if (left instanceof String && right instanceof String) return (String) left + right;
+                    throw new RuntimeError(operator, "Operands must be two numbers or two strings.");
+                case EQUAL_EQUAL:
+                    return Interpreter.isEqual(left, right);
+                case BANG_EQUAL:
+                    return !Interpreter.isEqual(left, right);
+            }
+
+            Interpreter.checkNumbers(left, right, operator.line);
+            double a = (double) left;
+            double b = (double) right;
+
+            switch (operator.type) {
+                case MINUS: return a - b;
+                case STAR: return a * b;
+                case SLASH: return Interpreter.divide(a, b, operator.line);
+                case GREATER: return a > b;
+                case GREATER_EQUAL: return a >= b;
+                case LESS: return a < b;
+                case LESS_EQUAL: return a <= b;
+                default:
+                    throw new RuntimeError(operator, "Unknown binary operator.");
+            }
+        }
+    }
+
+    /**
+     * The comma operator, the left side only runs for its effects.
+     */
+    static class Comma extends Binary {
+
+        Comma(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        Object execute() {
+            left.execute();
+            return right.execute();
+        }
+
+        @Override
+        double executeNumber() throws UnexpectedResult {
+            left.execute();
+            return right.executeNumber();
+        }
+
+        @Override
+        boolean executeBoolean() throws UnexpectedResult {
+            left.execute();
+            return right.executeBoolean();
+        }
+    }
+
+    /**
+     * Base of the conditionals, the branches are asked for the same
+     * type than the conditional.
+     */
+    abstract static class Conditional extends Node {
+        Node condition;
+        Node trueBranch;
+        Node falseBranch;
+
+        Conditional(Node condition, Node trueBranch, Node falseBranch) {
+            this.condition = adopt(condition);
+            this.trueBranch = adopt(trueBranch);
+            this.falseBranch = adopt(falseBranch);
+        }
+
+        Conditional(Conditional node) {
+            this(node.condition, node.trueBranch, node.falseBranch);
+        }
+
+        /**
+         * @return `true` if the condition is truthy
+         */
+        abstract boolean test();
+
+        @Override
+        Object execute() {
+            return test() ? trueBranch.execute() : falseBranch.execute();
+        }
+
+        @Override
+        double executeNumber() throws UnexpectedResult {
+            return test() ? trueBranch.executeNumber() : falseBranch.executeNumber();
+        }
+
+        @Override
+        boolean executeBoolean() throws UnexpectedResult {
+            return test() ? trueBranch.executeBoolean() : falseBranch.executeBoolean();
+        }
+
+        @Override
+        void replaceChild(Node child, Node node) {
+            if (condition == child) condition = adopt(node);
+            if (trueBranch == child) trueBranch = adopt(node);
+            if (falseBranch == child) falseBranch = adopt(node);
+        }
+    }
+
+    static class UninitializedConditional extends Conditional {
+
+        UninitializedConditional(Node condition, Node trueBranch, Node falseBranch) {
+            super(condition, trueBranch, falseBranch);
+        }
+
+        @Override
+        boolean test() {
+            Object value = condition.execute();
+            if (value instanceof Boolean) replace(new BooleanConditional(this));
+            else replace(new GenericConditional(this));
+            return Interpreter.isTruthy(value);
+        }
+    }
+
+    /**
+     * Conditional whose condition gives a boolean.
+     */
+    static class BooleanConditional extends Conditional {
+
+        BooleanConditional(Conditional node) {
+            super(node);
+        }
+
+        @Override
+        boolean test() {
+            try {
+                return condition.executeBoolean();
+            } catch (UnexpectedResult e) {
+                replace(new GenericConditional(this));
+                return Interpreter.isTruthy(e.value);
+            }
+        }
+    }
+
+    static class GenericConditional extends Conditional {
+
+        GenericConditional(Conditional node) {
+            super(node);
+        }
+
+        @Override
+        boolean test() {
+            return Interpreter.isTruthy(condition.execute());
+        }
+    }
+
+    /**
+     * Base of the nodes with one operand.
+     */
+    abstract static class Unary extends Node {
+        final Token operator;
+        Node right;
+
+        Unary(Token operator, Node right) {
+            this.operator = operator;
+            this.right = adopt(right);
+        }
+
+        Unary(Unary node) {
+            this(node.operator, node.right);
+        }
+
+        @Override
+        void replaceChild(Node child, Node node) {
+            if (right == child) right = adopt(node);
+        }
+
+        Object generalize(Object value) {
+            return replace(new GenericUnary(this)).compute(value);
+        }
+    }
+
+    static class UninitializedUnary extends Unary {
+
+        UninitializedUnary(Token operator, Node right) {
+            super(operator, right);
+        }
+
+        @Override
+        Object execute() {
+            Object value = right.execute();
+            if (operator.type == MINUS && value instanceof Double) replace(new Negate(this));
+            else if (operator.type == BANG && value instanceof Boolean) replace(new Not(this));
+            else return generalize(value);
+            return GenericUnary.compute(operator, value);
+        }
+    }
+
+    /**
+     * `-` of a number.
+     */
+    static class Negate extends Unary {
+
+        Negate(Unary node) {
+            super(node);
+        }
+
+        @Override
+        Object execute() {
+            try {
+                return executeNumber();
+            } catch (UnexpectedResult e) {
+                return e.value;
+            }
+        }
+
+        @Override
+        double executeNumber() throws UnexpectedResult {
+            try {
+                return -right.executeNumber();
+            } catch (UnexpectedResult e) {
+                return expectNumber(generalize(e.value));
+            }
+        }
+    }
+
+    /**
+     * `!` of a boolean.
+     */
+    static class Not extends Unary {
+
+        Not(Unary node) {
+            super(node);
+        }
+
+        @Override
+        Object execute() {
+            try {
+                return executeBoolean();
+            } catch (UnexpectedResult e) {
+                return e.value;
+            }
+        }
+
+        @Override
+        boolean executeBoolean() throws UnexpectedResult {
+            try {
+                return !right.executeBoolean();
+            } catch (UnexpectedResult e) {
+                return expectBoolean(generalize(e.value));
+            }
+        }
+    }
+
+    static class GenericUnary extends Unary {
+
+        GenericUnary(Unary node) {
+            super(node);
+        }
+
+        @Override
+        Object execute() {
+            return compute(right.execute());
+        }
+
+        Object compute(Object value) {
+            return compute(operator, value);
+        }
+
+        static Object compute(Token operator, Object value) {
+            if (operator.type == BANG) return !Interpreter.isTruthy(value);
+            if (!(value instanceof Double)) throw new RuntimeError(operator, "Operand must be a number.");
+            return -(double) value;
+        }
+    }
+}
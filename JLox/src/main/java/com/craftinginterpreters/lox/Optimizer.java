@@ -0,0 +1,225 @@
+package com.craftinginterpreters.lox;
+
+import static com.craftinginterpreters.lox.TokenType.*;
+
+/***
+ * Optional pass that runs between the parser and the execution, it
+ * returns a simpler expression that gives the same result:
+ *
+ * - Operations whose operands are literals are computed (constant
+ *   folding), following the rules of Lox: `+` adds numbers or joins
+ *   strings, `nil` is only equal to itself, and only `nil` and `false`
+ *   are falsey. Operations that would be a runtime error (e.g. `-"a"`
+ *   or `1 < nil`) are kept, so the error still happens when they run,
+ *   and so are divisions by zero.
+ * - Conditionals with a literal condition become the chosen branch.
+ * - Comma expressions drop their left side when it is a literal, as
+ *   it does nothing.
+ * - Groupings are removed, the tree already has the precedence.
+ * - A few identities, only when the operand is known to be a number
+ *   (or a boolean), so the result does not change for other types:
+ *   `n - 0`, `n * 1`, `n / 1` and `-(-n)` are `n`, `!!b` is `b`.
+ *   `n + 0` is not one of them, `-0 + 0` is `0`.
+ *
+ * Nodes that do not change are returned as they are. When the AST is
+ * a DAG (see HashConsingFactory) the shared nodes can be optimized
+ * only once memoizing.
+ */
+public class Optimizer extends MemoizingVisitor<Expr> {
+
+    public Optimizer() {
+        this(false);
+    }
+
+    /**
+     * @param memoize optimize each node only once, for ASTs with shared nodes
+     */
+    public Optimizer(boolean memoize) {
+        super(memoize);
+    }
+
+    public Expr optimize(Expr expr) {
+        return visit(expr);
+    }
+
+    @Override
+    public Expr visitBinaryExpr(Expr.Binary expr) {
+        Expr left = visit(expr.left);
+        Expr right = visit(expr.right);
+
+        if (left instanceof Expr.Literal && right instanceof Expr.Literal) {
+            Expr folded = fold(expr.operator.type, ((Expr.Literal) left).value, ((Expr.Literal) right).value);
+            if (folded != null) return folded;
+        }
+
+        switch (expr.operator.type) {
+            case COMMA:
+                // the left side of a comma is only run for its effects
+                if (left instanceof Expr.Literal) return right;
+                break;
+            case MINUS:
+                if (isNumber(left) && isLiteral(right, 0.0)) return left;
+                break;
+            case STAR:
+                if (isNumber(left) && isLiteral(right, 1.0)) return left;
+                if (isLiteral(left, 1.0) && isNumber(right)) return right;
+                break;
+            case SLASH:
+                if (isNumber(left) && isLiteral(right, 1.0)) return left;
+                break;
+        }
+
+        if (left == expr.left && right == expr.right) return expr;
+        return new Expr.Binary(left, expr.operator, right);
+    }
+
+    @Override
+    public Expr visitConditionalExpr(Expr.Conditional expr) {
+        Expr condition = visit(expr.condition);
+        if (condition instanceof Expr.Literal) {
+            return Interpreter.isTruthy(((Expr.Literal) condition).value) ? visit(expr.true_statement)
+                                                              : visit(expr.false_statement);
+        }
+
+        Expr true_statement = visit(expr.true_statement);
+        Expr false_statement = visit(expr.false_statement);
+        if (condition == expr.condition && true_statement == expr.true_statement
+                && false_statement == expr.false_statement) return expr;
+        return new Expr.Conditional(condition, true_statement, false_statement);
+    }
+
+    @Override
+    public Expr visitGroupingExpr(Expr.Grouping expr) {
+        return visit(expr.expression);
+    }
+
+    @Override
+    public Expr visitLiteralExpr(Expr.Literal expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitVariableExpr(Expr.Variable expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitUnaryExpr(Expr.Unary expr) {
+        Expr right = visit(expr.right);
+
+        if (right instanceof Expr.Literal) {
+            Object value = ((Expr.Literal) right).value;
+            if (expr.operator.type == BANG) return new Expr.Literal(!Interpreter.isTruthy(value));
+            if (expr.operator.type == MINUS && value instanceof Double) return new Expr.Literal(-(double) value);
+        }
+
+        // -(-n) and !!b
+        if (right instanceof Expr.Unary && ((Expr.Unary) right).operator.type == expr.operator.type) {
+            Expr inner = ((Expr.Unary) right).right;
+            if (expr.operator.type == MINUS && isNumber(inner)) return inner;
+            if (expr.operator.type == BANG && isBoolean(inner)) return inner;
+        }
+
+        if (right == expr.right) return expr;
+        return new Expr.Unary(expr.operator, right);
+    }
+
+    /**
+     * Compute a binary operation over two literals.
+     *
+     * @param operator type of the operator
+     * @param left value on the left
+     * @param right value on the right
+     * @return a literal with the result, null if it cannot be computed here
+     */
+    private static Expr fold(TokenType operator, Object left, Object right) {
+        switch (operator) {
+            case COMMA:
+                return new Expr.Literal(right);
+            case EQUAL_EQUAL:
+                return new Expr.Literal(Interpreter.isEqual(left, right));
+            case BANG_EQUAL:
+                return new Expr.Literal(!Interpreter.isEqual(left, right));
+            case PLUS:
+                if (left instanceof Double && right instanceof Double)
+                    return new Expr.Literal((double) left + (double) right);
+                if (left instanceof String && right instanceof String)
+                    return new Expr.Literal((String) left + right);
+                return null;
+        }
+
+        if (!(left instanceof Double) || !(right instanceof Double)) return null;
+        double a = (double) left;
+        double b = (double) right;
+
+        switch (operator) {
+            case MINUS: return new Expr.Literal(a - b);
+            case STAR: return new Expr.Literal(a * b);
+            // dividing by zero is a runtime error of the Interpreter
+            case SLASH: return b == 0 ? null : new Expr.Literal(a / b);
+            case GREATER: return new Expr.Literal(a > b);
+            case GREATER_EQUAL: return new Expr.Literal(a >= b);
+            case LESS: return new Expr.Literal(a < b);
+            case LESS_EQUAL: return new Expr.Literal(a <= b);
+            default: return null;
+        }
+    }
+
+    private static boolean isLiteral(Expr expr, double value) {
+        return expr instanceof Expr.Literal && Double.valueOf(value).equals(((Expr.Literal) expr).value);
+    }
+
+    /**
+     * @return `true` if the expression can only give a number (or a runtime error)
+     */
+    private static boolean isNumber(Expr expr) {
+        if (expr instanceof Expr.Literal) return ((Expr.Literal) expr).value instanceof Double;
+        if (expr instanceof Expr.Grouping) return isNumber(((Expr.Grouping) expr).expression);
+        if (expr instanceof Expr.Unary) return ((Expr.Unary) expr).operator.type == MINUS;
+        if (expr instanceof Expr.Conditional) {
+            Expr.Conditional conditional = (Expr.Conditional) expr;
+            return isNumber(conditional.true_statement) && isNumber(conditional.false_statement);
+        }
+        if (expr instanceof Expr.Binary) {
+            Expr.Binary binary = (Expr.Binary) expr;
+            switch (binary.operator.type) {
+                case MINUS:
+                case STAR:
+                case SLASH:
+                    return true;
+                case PLUS:
+                    return isNumber(binary.left) || isNumber(binary.right);
+                case COMMA:
+                    return isNumber(binary.right);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return `true` if the expression can only give a boolean (or a runtime error)
+     */
+    private static boolean isBoolean(Expr expr) {
+        if (expr instanceof Expr.Literal) return ((Expr.Literal) expr).value instanceof Boolean;
+        if (expr instanceof Expr.Grouping) return isBoolean(((Expr.Grouping) expr).expression);
+        if (expr instanceof Expr.Unary) return ((Expr.Unary) expr).operator.type == BANG;
+        if (expr instanceof Expr.Conditional) {
+            Expr.Conditional conditional = (Expr.Conditional) expr;
+            return isBoolean(conditional.true_statement) && isBoolean(conditional.false_statement);
+        }
+        if (expr instanceof Expr.Binary) {
+            switch (((Expr.Binary) expr).operator.type) {
+                case EQUAL_EQUAL:
+                case BANG_EQUAL:
+                case GREATER:
+                case GREATER_EQUAL:
+                case LESS:
+                case LESS_EQUAL:
+                    return true;
+                case COMMA:
+                    return isBoolean(((Expr.Binary) expr).right);
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,239 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * Scan a big source using several threads. The source is split in
+ * chunks that finish at the end of a line, and each chunk is scanned
+ * by its own Scanner in a ForkJoin pool. At the end, the tokens of all
+ * the chunks are joined in a single TokenBuffer, and the errors are
+ * reported in the same order the sequential Scanner would report them.
+ *
+ * The problem are strings and block comments, because they can have
+ * new lines in the middle, so a chunk could start inside them. Before
+ * scanning, a cheap pass (it only looks for quotes, comments and new
+ * lines) computes for every chunk in which state it ends depending on
+ * the state it starts in, and how many lines it has. This pass also
+ * runs in parallel, and then joining the results of the chunks in
+ * order tells us the state and the line at the start of each chunk.
+ * The chunks that start inside a string or a comment are joined with
+ * the previous one.
+ */
+public class ParallelScanner {
+    // sources smaller than this are not worth splitting
+    static final int MIN_CHUNK_SIZE = 64 * 1024;
+
+    // states of the pre-pass
+    private static final int CODE = 0;
+    private static final int STRING = 1;
+    private static final int COMMENT = 2;
+    private static final int STATES = 3;
+
+    private ParallelScanner() {
+    }
+
+    /**
+     * Scan a source using the common ForkJoin pool.
+     *
+     * @param source input with the code, kept in memory
+     * @param length length of the source
+     * @param symbols table where names and strings are interned
+     * @return buffer with all the tokens, finished with EOF
+     */
+    public static TokenBuffer scan(Source source, int length, SymbolTable symbols) {
+        return scan(source, length, symbols, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Scan a source using the threads of the given pool.
+     *
+     * @param source input with the code, kept in memory
+     * @param length length of the source
+     * @param symbols table where names and strings are interned
+     * @param pool pool where chunks are scanned
+     * @return buffer with all the tokens, finished with EOF
+     */
+    public static TokenBuffer scan(Source source, int length, SymbolTable symbols, ForkJoinPool pool) {
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, length / (pool.getParallelism() * 4));
+        if (length <= chunkSize) {
+            return new Scanner(source, symbols).scanBuffer();
+        }
+
+        // split at the end of the lines
+        List<Chunk> chunks = new ArrayList<>();
+        int begin = 0;
+        while (begin < length) {
+            int end = Math.min(length, begin + chunkSize);
+            while (end < length && source.charAt(end - 1) != '\n') end++;
+            chunks.add(new Chunk(source, begin, end));
+            begin = end;
+        }
+
+        pool.invoke(new ForEach(chunks, Chunk::summarize));
+
+        // join the chunks that do not start in the code, and compute
+        // the line where each one starts
+        List<Chunk> segments = new ArrayList<>();
+        int state = CODE;
+        int line = 1;
+        for (Chunk chunk : chunks) {
+            if (state == CODE) {
+                chunk.line = line;
+                segments.add(chunk);
+            } else {
+                segments.get(segments.size() - 1).end = chunk.end;
+            }
+            line += chunk.lines;
+            state = chunk.exit[state];
+        }
+
+        for (Chunk segment : segments) {
+            segment.symbols = symbols;
+        }
+        pool.invoke(new ForEach(segments, Chunk::scan));
+
+        TokenBuffer tokens = new TokenBuffer(source, symbols);
+        int lastLine = 1;
+        for (Chunk segment : segments) {
+            tokens.addAll(segment.tokens);
+            for (Chunk.Error error : segment.errors) {
+                Lox.error(error.line, error.message);
+            }
+            lastLine = segment.lastLine;
+        }
+        tokens.add(TokenType.EOF, length, 0, lastLine);
+        return tokens;
+    }
+
+    /**
+     * A piece of the source, it keeps the results of the pre-pass
+     * and later the tokens and errors found scanning it.
+     */
+    private static class Chunk {
+        final Source source;
+        final int begin;
+        int end;
+
+        // state at the end of the chunk for each possible initial state
+        final int[] exit = new int[STATES];
+        int lines;
+
+        int line;
+        SymbolTable symbols;
+        TokenBuffer tokens;
+        int lastLine;
+        final List<Error> errors = new ArrayList<>();
+
+        private static class Error {
+            final int line;
+            final String message;
+
+            Error(int line, String message) {
+                this.line = line;
+                this.message = message;
+            }
+        }
+
+        Chunk(Source source, int begin, int end) {
+            this.source = source;
+            this.begin = begin;
+            this.end = end;
+        }
+
+        /**
+         * The pre-pass, run the chunk once for each initial state. The
+         * number of lines does not depend on the state.
+         */
+        void summarize() {
+            for (int state = 0; state < STATES; state++) {
+                exit[state] = run(state);
+            }
+            for (int i = begin; i < end; i++) {
+                if (source.charAt(i) == '\n') lines++;
+            }
+        }
+
+        /**
+         * Follow the states the Scanner goes through, only the characters
+         * that open or close strings and comments matter. Line comments
+         * finish with the line, and a chunk always finishes with a line
+         * (but the last one), so they never cross chunks.
+         *
+         * @param state state at the beginning of the chunk
+         * @return state at the end of the chunk
+         */
+        private int run(int state) {
+            int i = begin;
+            while (i < end) {
+                char c = source.charAt(i++);
+                switch (state) {
+                    case CODE:
+                        if (c == '"') {
+                            state = STRING;
+                        } else if (c == '/' && i < end) {
+                            char next = source.charAt(i);
+                            if (next == '/') {
+                                while (i < end && source.charAt(i) != '\n') i++;
+                            } else if (next == '*') {
+                                i++;
+                                state = COMMENT;
+                            }
+                        }
+                        break;
+                    case STRING:
+                        if (c == '"') state = CODE;
+                        break;
+                    case COMMENT:
+                        if (c == '*' && i < end && source.charAt(i) == '/') {
+                            i++;
+                            state = CODE;
+                        }
+                        break;
+                }
+            }
+            return state;
+        }
+
+        void scan() {
+            Scanner scanner = new Scanner(source, symbols, begin, line);
+            scanner.setEnd(end);
+            scanner.setErrorReporter((line, message) -> errors.add(new Error(line, message)));
+            tokens = new TokenBuffer(source, symbols);
+            while (scanner.scanInto(tokens));
+            lastLine = scanner.line();
+        }
+    }
+
+    /**
+     * Run an action over every chunk, each one in its own task.
+     */
+    private static class ForEach extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Chunk> chunks;
+        private final Consumer<Chunk> action;
+
+        ForEach(List<Chunk> chunks, Consumer<Chunk> action) {
+            this.chunks = chunks;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            List<RecursiveAction> tasks = new ArrayList<>();
+            for (Chunk chunk : chunks) {
+                tasks.add(new RecursiveAction() {
+                    @Override
+                    protected void compute() {
+                        action.accept(chunk);
+                    }
+                });
+            }
+            invokeAll(tasks);
+        }
+    }
+}
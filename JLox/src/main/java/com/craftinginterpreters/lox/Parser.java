@@ -19,7 +19,7 @@ import static com.craftinginterpreters.lox.TokenType.*;
  * factor -> unary (("/"|"*") unary)* ;
  * unary -> ("!"|"-") unary
  *       | primary ;
- * primary -> NUMBER | STRING | "true" | "false" | "nil"
+ * primary -> NUMBER | STRING | "true" | "false" | "nil" | IDENTIFIER
  *          | "(" expression ")" ;
  *
  * We can augment this grammar with a comma operator like the one from C
@@ -32,7 +32,7 @@ import static com.craftinginterpreters.lox.TokenType.*;
  * factor -> unary (("/"|"*") unary)* ;
  * unary -> ("!"|"-") unary
  *       | primary ;
- * primary -> NUMBER | STRING | "true" | "false" | "nil"
+ * primary -> NUMBER | STRING | "true" | "false" | "nil" | IDENTIFIER
  *          | "(" expression ")" ;
  *
  * Now we can even include a ternary operator with a higher precedence to
@@ -47,7 +47,7 @@ import static com.craftinginterpreters.lox.TokenType.*;
  * factor -> unary (("/"|"*") unary)* ;
  * unary -> ("!"|"-") unary
  *       | primary ;
- * primary -> NUMBER | STRING | "true" | "false" | "nil"
+ * primary -> NUMBER | STRING | "true" | "false" | "nil" | IDENTIFIER
  *          | "(" expression ")" ;
  *
  * The precedence of these rules goes from bottom (primary) to top (expression),
@@ -73,15 +73,58 @@ import static com.craftinginterpreters.lox.TokenType.*;
 
 public class Parser {
 
-    private static class ParseError extends RuntimeException {}
-
-    // list of tokens to parse
-    private final List<Token> tokens;
-    // pointer to the analyzed token
-    private int current = 0;
+    static class ParseError extends RuntimeException {}
+
+    // where the tokens to parse come from, either a stream of
+    // tokens or a TokenBuffer, the other one is null
+    private final TokenSource tokens;
+    private final TokenBuffer buffer;
+    // the analyzed token, and the last consumed one, this is
+    // all the lookahead the grammar needs
+    private Token current;
+    private Token previous = null;
+    // pointer to the analyzed token when reading from the buffer
+    private int index = 0;
+    // creates the nodes of the AST
+    private ExprFactory factory = new ExprFactory();
 
     Parser(List<Token> tokens) {
+        this(TokenSource.of(tokens));
+    }
+
+    Parser(TokenSource tokens) {
         this.tokens = tokens;
+        this.buffer = null;
+        this.current = tokens.nextToken();
+    }
+
+    /**
+     * Parse directly from a TokenBuffer, checking the types of the
+     * tokens does not create any Token object, they are only created
+     * for the tokens the AST keeps (operators) and for errors.
+     *
+     * @param buffer scanned tokens
+     */
+    Parser(TokenBuffer buffer) {
+        this.tokens = null;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Change how the nodes are created, e.g. to share the repeated
+     * subtrees with a HashConsingFactory.
+     *
+     * @param factory factory for the nodes
+     */
+    void setFactory(ExprFactory factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * @return factory for the nodes, for the parsers that extend this one
+     */
+    protected ExprFactory factory() {
+        return factory;
     }
 
     public Expr parse() {
@@ -94,11 +137,13 @@ public class Parser {
 
     /**
      * Method to parse the expression, expression just directly
-     * calls to the next rule `equality`
+     * calls to the next rule `equality`. Subclasses can replace the
+     * way expressions are parsed, the rest of the Parser (tokens and
+     * errors) is shared.
      *
      * @return a parsed expression
      */
-    private Expr expression() {
+    Expr expression() {
         return comma();
     }
 
@@ -115,7 +160,7 @@ public class Parser {
         while (match(COMMA)) {
             Token operator = previous();
             Expr right = ternary();
-            expr = new Expr.Binary(expr, operator, right);
+            expr = factory.binary(expr, operator, right);
         }
 
         return expr;
@@ -135,7 +180,7 @@ public class Parser {
             Expr true_expr = equality();
             consume(COLON, "Expected ':' token in ternary operation.");
             Expr false_expr = equality();
-            expr = new Expr.Conditional(expr, true_expr, false_expr);
+            expr = factory.conditional(expr, true_expr, false_expr);
         }
 
         return expr;
@@ -154,7 +199,7 @@ public class Parser {
         while (match(BANG_EQUAL, EQUAL_EQUAL)) { // while we have != or ==
             Token operator = previous(); // get the operator
             Expr right = comparison();
-            expr = new Expr.Binary(expr, operator, right);
+            expr = factory.binary(expr, operator, right);
         }
 
         return expr;
@@ -173,7 +218,7 @@ public class Parser {
         while (match(GREATER, GREATER_EQUAL, LESS, LESS_EQUAL)) {
             Token operator = previous();
             Expr right = term();
-            expr = new Expr.Binary(expr, operator, right);
+            expr = factory.binary(expr, operator, right);
         }
 
         return expr;
@@ -192,7 +237,7 @@ public class Parser {
         while (match(MINUS, PLUS)) {
             Token operator = previous();
             Expr right = factor();
-            expr = new Expr.Binary(expr, operator, right);
+            expr = factory.binary(expr, operator, right);
         }
 
         return expr;
@@ -211,7 +256,7 @@ public class Parser {
         while (match(SLASH, STAR)) {
             Token operator = previous();
             Expr right = unary();
-            expr = new Expr.Binary(expr, operator, right);
+            expr = factory.binary(expr, operator, right);
         }
 
         return expr;
@@ -229,7 +274,7 @@ public class Parser {
         if (match(BANG, MINUS)) {
             Token operator = previous();
             Expr right = unary();
-            return new Expr.Unary(operator, right);
+            return factory.unary(operator, right);
         }
         // | part of the rule
         return primary();
@@ -238,24 +283,26 @@ public class Parser {
     /**
      * Match the next rule:
      *
-     * primary -> NUMBER | STRING | "true" | "false" | "nil"
+     * primary -> NUMBER | STRING | "true" | "false" | "nil" | IDENTIFIER
      *          | "(" expression ")" ;
      *
      * @return
      */
     private Expr primary() {
-        if (match(FALSE)) return new Expr.Literal(false);
-        if (match(TRUE)) return new Expr.Literal(true);
-        if (match(NIL)) return new Expr.Literal(null);
+        if (match(FALSE)) return factory.literal(false);
+        if (match(TRUE)) return factory.literal(true);
+        if (match(NIL)) return factory.literal(null);
 
         if (match(NUMBER, STRING)) {
-            return new Expr.Literal(previous().literal);
+            return factory.literal(previousLiteral());
         }
 
+        if (match(IDENTIFIER)) return factory.variable(previous());
+
         if (match(LEFT_PAREN)) {
             Expr expr = expression();
             consume(RIGHT_PAREN, "Expected ')' after expression.");
-            return new Expr.Grouping(expr);
+            return factory.grouping(expr);
         }
 
         throw error(peek(), "Expected expression.");
@@ -263,12 +310,12 @@ public class Parser {
 
     private void synchronize() {
         // skip the token where the error happened
-        advance();
+        step();
 
         while (!isAtEnd()) { // while it is not at the end, look for the next statement
-            if (previous().type == SEMICOLON) return; // if the previous token is a semicolon, we have found the next statement
+            if (previousType() == SEMICOLON) return; // if the previous token is a semicolon, we have found the next statement
 
-            switch (peek().type) { // we look for possible initial tokens for statements
+            switch (peekType()) { // we look for possible initial tokens for statements
                 case CLASS:
                 case FUN:
                 case VAR:
@@ -280,7 +327,7 @@ public class Parser {
                     return;
             }
 
-            advance();
+            step();
         }
     }
 
@@ -293,7 +340,7 @@ public class Parser {
      * @param message message in case of error
      * @return current token if the type is correct
      */
-    private Token consume(TokenType type, String message) {
+    Token consume(TokenType type, String message) {
         if (check(type)) return advance();
         throw error(peek(), message);
     }
@@ -305,7 +352,7 @@ public class Parser {
      * @param message message to show
      * @return a new error
      */
-    private ParseError error(Token token, String message) {
+    ParseError error(Token token, String message) {
         Lox.error(token, message);
         return new ParseError();
     }
@@ -321,7 +368,7 @@ public class Parser {
             // check if type of current token matches
             if (check(tokenType)) {
                 // consume the token
-                advance();
+                step();
                 // return true
                 return true;
             }
@@ -335,41 +382,89 @@ public class Parser {
      * @param type type to check
      * @return `true` if current token is the type, `false` otherwise
      */
-    private boolean check(TokenType type) {
+    boolean check(TokenType type) {
         if (isAtEnd()) return false;
-        return peek().type == type;
+        return peekType() == type;
     }
 
     /**
-     * Consumes the current token if it is not at the end of the list.
+     * Consumes the current token if it is not at the end of the tokens.
      *
      * @return consumed token
      */
-    private Token advance() {
-        if (!isAtEnd()) current++;
+    Token advance() {
+        step();
         return previous();
     }
 
+    /**
+     * Move to the next token if it is not at the end, like `advance` but
+     * it does not return the consumed token, so no Token is created
+     * when reading from a buffer.
+     */
+    void step() {
+        if (isAtEnd()) return;
+        if (buffer != null) {
+            index++;
+        } else {
+            previous = current;
+            current = tokens.nextToken();
+        }
+    }
+
     /**
      * Return the previous token to the current one
      *
      * @return previous token
      */
-    private Token previous() {
-        return tokens.get(current - 1);
+    Token previous() {
+        if (buffer != null) return buffer.token(index - 1);
+        return previous;
+    }
+
+    /**
+     * @return index in the TokenBuffer of the previous token
+     */
+    int previousIndex() {
+        return index - 1;
+    }
+
+    /**
+     * @return type of the previous token
+     */
+    TokenType previousType() {
+        if (buffer != null) return buffer.type(index - 1);
+        return previous.type;
+    }
+
+    /**
+     * @return literal value of the previous token
+     */
+    Object previousLiteral() {
+        if (buffer != null) return buffer.literal(index - 1);
+        return previous.literal;
     }
 
     /**
      * @return current token
      */
-    private Token peek() {
-        return tokens.get(current);
+    Token peek() {
+        if (buffer != null) return buffer.token(index);
+        return current;
+    }
+
+    /**
+     * @return type of the current token
+     */
+    TokenType peekType() {
+        if (buffer != null) return buffer.type(index);
+        return current.type;
     }
 
     /**
-     * @return `true` if we are at the end of the list of Tokens, `false` otherwise
+     * @return `true` if we are at the end of the Tokens, `false` otherwise
      */
-    private boolean isAtEnd() {
-        return peek().type == EOF;
+    boolean isAtEnd() {
+        return peekType() == EOF;
     }
 }
@@ -0,0 +1,187 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.craftinginterpreters.lox.TokenType.EOF;
+
+/***
+ * Run the scanner in its own thread while the parser consumes the
+ * tokens, so scanning and parsing of a big script overlap and the
+ * whole run takes around the time of the slowest of both.
+ *
+ * The scanner thread (the producer) puts the tokens in batches, and
+ * the batches go through a ring buffer to the parser (the consumer).
+ * There is only one producer and one consumer, so the ring buffer
+ * does not need locks: the producer is the only one writing `tail`
+ * and the consumer the only one writing `head`. When the ring buffer
+ * is full the producer waits, so no more than CAPACITY batches are
+ * ever in memory whatever the size of the script.
+ *
+ * The errors of the scanner are not printed by the producer, they are
+ * stored with the batch and reported when the parser reaches the
+ * token that came after them, so they appear in the same order as
+ * when the parser pulls the tokens from the scanner itself.
+ */
+public class PipelinedScanner implements TokenSource {
+    // tokens in each batch, and batches in the ring buffer
+    private static final int BATCH_SIZE = 256;
+    private static final int CAPACITY = 64;
+    private static final int MASK = CAPACITY - 1;
+
+    /**
+     * An error from the scanner, found before the token
+     * at `index` in the batch.
+     */
+    private static class Error {
+        final int index;
+        final int line;
+        final String message;
+
+        Error(int index, int line, String message) {
+            this.index = index;
+            this.line = line;
+            this.message = message;
+        }
+    }
+
+    private static class Batch {
+        final Token[] tokens = new Token[BATCH_SIZE];
+        final List<Error> errors = new ArrayList<>();
+        int size;
+    }
+
+    private final Batch[] ring = new Batch[CAPACITY];
+    // next batch to read, only written by the consumer
+    private final AtomicLong head = new AtomicLong();
+    // next batch to write, only written by the producer
+    private final AtomicLong tail = new AtomicLong();
+    // what made the producer stop before EOF
+    private volatile Throwable failure;
+
+    // producer side
+    private Batch writing;
+
+    // consumer side
+    private Batch reading;
+    private int position;
+    private int nextError;
+    private Token eof;
+
+    /**
+     * Start the thread that pulls the tokens from the scanner. The
+     * errors of the scanner must go to `error` of this object.
+     *
+     * @param scanner where the tokens come from
+     */
+    void start(TokenSource scanner) {
+        Thread producer = new Thread(() -> produce(scanner), "lox-scanner");
+        // if the parser dies, nobody is waiting for this thread
+        producer.setDaemon(true);
+        producer.start();
+    }
+
+    /**
+     * Error reporter for the scanner, runs in the producer thread.
+     *
+     * @param line line of the error
+     * @param message message to show
+     */
+    void error(int line, String message) {
+        writing.errors.add(new Error(writing.size, line, message));
+    }
+
+    private void produce(TokenSource scanner) {
+        try {
+            long next = tail.get();
+            writing = claim(next);
+            for (;;) {
+                Token token = scanner.nextToken();
+                writing.tokens[writing.size++] = token;
+                if (token.type == EOF || writing.size == BATCH_SIZE) {
+                    // publish the batch, lazySet is enough as the
+                    // consumer reads tail as a volatile
+                    tail.lazySet(++next);
+                    if (token.type == EOF) return;
+                    writing = claim(next);
+                }
+            }
+        } catch (Throwable e) {
+            failure = e;
+        }
+    }
+
+    /**
+     * Wait for the slot of a batch to be free, the consumer
+     * frees it moving `head` after reading it.
+     *
+     * @param index index of the batch
+     * @return empty batch for the slot
+     */
+    private Batch claim(long index) {
+        for (int round = 0; index - head.get() >= CAPACITY; round++) idle(round);
+
+        Batch batch = ring[(int) (index & MASK)];
+        if (batch == null) {
+            batch = new Batch();
+            ring[(int) (index & MASK)] = batch;
+        }
+        batch.size = 0;
+        batch.errors.clear();
+        return batch;
+    }
+
+    @Override
+    public Token nextToken() {
+        // like a Scanner, keep returning EOF at the end
+        if (eof != null) return eof;
+
+        if (reading == null || position == reading.size) {
+            if (reading != null) head.lazySet(head.get() + 1);
+            reading = take();
+            position = 0;
+            nextError = 0;
+        }
+
+        while (nextError < reading.errors.size() && reading.errors.get(nextError).index == position) {
+            Error error = reading.errors.get(nextError++);
+            Lox.error(error.line, error.message);
+        }
+
+        Token token = reading.tokens[position++];
+        if (token.type == EOF) eof = token;
+        return token;
+    }
+
+    /**
+     * Wait for the producer to publish the next batch.
+     *
+     * @return next batch of tokens
+     */
+    private Batch take() {
+        long index = head.get();
+        for (int round = 0; index == tail.get(); round++) {
+            Throwable e = failure;
+            if (e instanceof RuntimeException) throw (RuntimeException) e;
+            if (e instanceof java.lang.Error) throw (java.lang.Error) e;
+            if (e != null) throw new IllegalStateException(e);
+            idle(round);
+        }
+        return ring[(int) (index & MASK)];
+    }
+
+    /**
+     * Wait while the other thread works, first spinning, then letting
+     * other threads run, and at last sleeping for a while, so a
+     * thread waiting for long does not eat a core.
+     *
+     * @param round how many times it waited already
+     */
+    private static void idle(int round) {
+        if (round < 64) Thread.onSpinWait();
+        else if (round < 128) Thread.yield();
+        else LockSupport.parkNanos(20_000);
+    }
+}
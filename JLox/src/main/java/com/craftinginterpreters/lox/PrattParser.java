@@ -0,0 +1,158 @@
+package com.craftinginterpreters.lox;
+
+import java.util.List;
+
+import static com.craftinginterpreters.lox.TokenType.*;
+
+/***
+ * Parser for the same grammar than Parser, but the expressions are
+ * parsed with a Pratt parser (or precedence climbing) instead of
+ * one method for each rule. Every infix operator has a binding
+ * power, the higher the power the tighter the operator binds:
+ *
+ * +-------------+----------------------+---------------+
+ * | Power       | Operators            | Associativity |
+ * | COMMA       | ,                    | left          |
+ * | TERNARY     | ? :                  | left          |
+ * | EQUALITY    | != ==                | left          |
+ * | COMPARISON  | > >= < <=            | left          |
+ * | TERM        | - +                  | left          |
+ * | FACTOR      | / *                  | left          |
+ * | UNARY       | ! - (prefix)         | right         |
+ * +-------------+----------------------+---------------+
+ *
+ * Instead of going through every rule down to `primary`, an operand
+ * is parsed with one call to `parsePrecedence`, which keeps consuming
+ * operators while they bind at least as tight as the given power.
+ * The operators are looked up in a table indexed by TokenType, so
+ * there is no `match(TokenType...)` (and no array) for each probe.
+ *
+ * The trees and the errors are the same than the ones from Parser,
+ * the ternary operator still takes equality expressions in its
+ * branches, so `a ? b : c ? d : e` is `(a ? b : c) ? d : e`.
+ */
+public class PrattParser extends Parser {
+
+    // binding powers, 0 means the token is not an infix operator
+    static final int NONE = 0;
+    static final int COMMA_POWER = 1;
+    static final int TERNARY = 2;
+    static final int EQUALITY = 3;
+    static final int COMPARISON = 4;
+    static final int TERM = 5;
+    static final int FACTOR = 6;
+    static final int UNARY = 7;
+
+    private static final int[] INFIX = new int[TokenType.values().length];
+
+    static {
+        INFIX[COMMA.ordinal()] = COMMA_POWER;
+        INFIX[QUESTION_MARK.ordinal()] = TERNARY;
+        INFIX[BANG_EQUAL.ordinal()] = EQUALITY;
+        INFIX[EQUAL_EQUAL.ordinal()] = EQUALITY;
+        INFIX[GREATER.ordinal()] = COMPARISON;
+        INFIX[GREATER_EQUAL.ordinal()] = COMPARISON;
+        INFIX[LESS.ordinal()] = COMPARISON;
+        INFIX[LESS_EQUAL.ordinal()] = COMPARISON;
+        INFIX[MINUS.ordinal()] = TERM;
+        INFIX[PLUS.ordinal()] = TERM;
+        INFIX[SLASH.ordinal()] = FACTOR;
+        INFIX[STAR.ordinal()] = FACTOR;
+    }
+
+    /**
+     * @param type type of a token
+     * @return binding power of the token as an infix operator, NONE if it is not one
+     */
+    static int infix(TokenType type) {
+        return INFIX[type.ordinal()];
+    }
+
+    PrattParser(List<Token> tokens) {
+        super(tokens);
+    }
+
+    PrattParser(TokenSource tokens) {
+        super(tokens);
+    }
+
+    PrattParser(TokenBuffer buffer) {
+        super(buffer);
+    }
+
+    @Override
+    Expr expression() {
+        return parsePrecedence(COMMA_POWER);
+    }
+
+    /**
+     * Parse an operand and then all the infix operators that bind at
+     * least as tight as `power`. The right operand of an operator is
+     * parsed with one more than its power, so the operators of the same
+     * level are left associative.
+     *
+     * @param power minimum binding power of the operators to consume
+     * @return a parsed expression
+     */
+    private Expr parsePrecedence(int power) {
+        Expr expr = prefix();
+
+        for (;;) {
+            // EOF is not an operator, so this also stops at the end
+            int infix = infix(peekType());
+            if (infix == NONE || infix < power) return expr;
+
+            if (infix == TERNARY) {
+                step();
+                Expr true_expr = parsePrecedence(EQUALITY);
+                consume(COLON, "Expected ':' token in ternary operation.");
+                Expr false_expr = parsePrecedence(EQUALITY);
+                expr = factory().conditional(expr, true_expr, false_expr);
+            } else {
+                Token operator = advance();
+                Expr right = parsePrecedence(infix + 1);
+                expr = factory().binary(expr, operator, right);
+            }
+        }
+    }
+
+    /**
+     * The tokens that can start an expression: unary operators, literals,
+     * variables and groupings.
+     *
+     * @return a parsed expression
+     */
+    private Expr prefix() {
+        switch (peekType()) {
+            case BANG:
+            case MINUS: {
+                Token operator = advance();
+                Expr right = parsePrecedence(UNARY);
+                return factory().unary(operator, right);
+            }
+            case FALSE:
+                step();
+                return factory().literal(false);
+            case TRUE:
+                step();
+                return factory().literal(true);
+            case NIL:
+                step();
+                return factory().literal(null);
+            case NUMBER:
+            case STRING:
+                step();
+                return factory().literal(previousLiteral());
+            case IDENTIFIER:
+                return factory().variable(advance());
+            case LEFT_PAREN: {
+                step();
+                Expr expr = expression();
+                consume(RIGHT_PAREN, "Expected ')' after expression.");
+                return factory().grouping(expr);
+            }
+            default:
+                throw error(peek(), "Expected expression.");
+        }
+    }
+}
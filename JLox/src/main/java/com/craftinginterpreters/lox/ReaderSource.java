@@ -0,0 +1,87 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+
+/**
+ * Source that pulls the characters from a Reader on demand. Only a
+ * window of the input is kept in memory: everything before the lexeme
+ * the Scanner is reading is discarded when the buffer is refilled, so
+ * the memory used depends on the size of the longest lexeme and not
+ * on the size of the file.
+ */
+public class ReaderSource extends Source {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Reader reader;
+    private char[] buffer = new char[BUFFER_SIZE];
+    // absolute position of buffer[0]
+    private int offset = 0;
+    // number of valid characters in the buffer
+    private int length = 0;
+    // first absolute position we still need to keep
+    private int mark = 0;
+    private boolean eof = false;
+
+    public ReaderSource(Reader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public boolean has(int pos) {
+        while (pos >= offset + length) {
+            if (eof || !fill()) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public char charAt(int pos) {
+        return buffer[pos - offset];
+    }
+
+    @Override
+    public String text(int start, int end) {
+        return new String(buffer, start - offset, end - start);
+    }
+
+    @Override
+    public void release(int pos) {
+        mark = pos;
+    }
+
+    /**
+     * Read more characters from the reader, first we drop the
+     * characters that were released, and if the buffer is still
+     * full (a very long lexeme), we make it bigger.
+     *
+     * @return `true` if some characters were read, `false` at end of input
+     */
+    private boolean fill() {
+        int discard = mark - offset;
+        if (discard > 0) {
+            System.arraycopy(buffer, discard, buffer, 0, length - discard);
+            offset += discard;
+            length -= discard;
+        }
+        if (length == buffer.length) {
+            char[] bigger = new char[buffer.length * 2];
+            System.arraycopy(buffer, 0, bigger, 0, length);
+            buffer = bigger;
+        }
+
+        int read;
+        try {
+            read = reader.read(buffer, length, buffer.length - length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (read < 0) {
+            eof = true;
+            return false;
+        }
+        length += read;
+        return true;
+    }
+}
@@ -0,0 +1,25 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * Error while running the code, it keeps the token where it
+ * happened so the line can be reported. The VM does not have the
+ * tokens anymore, its errors only have the line.
+ */
+public class RuntimeError extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    final public Token token;
+    final public int line;
+
+    RuntimeError(Token token, String message) {
+        super(message);
+        this.token = token;
+        this.line = token.line;
+    }
+
+    RuntimeError(int line, String message) {
+        super(message);
+        this.token = null;
+        this.line = line;
+    }
+}
@@ -0,0 +1,98 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * BatchKernels with plain loops, the JIT may still vectorize some of
+ * them by itself.
+ */
+class ScalarKernels implements BatchKernels {
+
+    @Override
+    public void add(double[] a, double[] b, double[] out, int rows) {
+        for (int i = 0; i < rows; i++) out[i] = a[i] + b[i];
+    }
+
+    @Override
+    public void subtract(double[] a, double[] b, double[] out, int rows) {
+        for (int i = 0; i < rows; i++) out[i] = a[i] - b[i];
+    }
+
+    @Override
+    public void multiply(double[] a, double[] b, double[] out, int rows) {
+        for (int i = 0; i < rows; i++) out[i] = a[i] * b[i];
+    }
+
+    @Override
+    public void divide(double[] a, double[] b, double[] out, int rows) {
+        for (int i = 0; i < rows; i++) out[i] = a[i] / b[i];
+    }
+
+    @Override
+    public void negate(double[] a, double[] out, int rows) {
+        for (int i = 0; i < rows; i++) out[i] = -a[i];
+    }
+
+    @Override
+    public void compare(TokenType operator, double[] a, double[] b, boolean[] out, int rows) {
+        switch (operator) {
+            case GREATER:
+                for (int i = 0; i < rows; i++) out[i] = a[i] > b[i];
+                break;
+            case GREATER_EQUAL:
+                for (int i = 0; i < rows; i++) out[i] = a[i] >= b[i];
+                break;
+            case LESS:
+                for (int i = 0; i < rows; i++) out[i] = a[i] < b[i];
+                break;
+            case LESS_EQUAL:
+                for (int i = 0; i < rows; i++) out[i] = a[i] <= b[i];
+                break;
+            case EQUAL_EQUAL:
+                for (int i = 0; i < rows; i++)
+                    out[i] = Double.doubleToLongBits(a[i]) == Double.doubleToLongBits(b[i]);
+                break;
+            case BANG_EQUAL:
+                for (int i = 0; i < rows; i++)
+                    out[i] = Double.doubleToLongBits(a[i]) != Double.doubleToLongBits(b[i]);
+                break;
+            default:
+                throw new IllegalArgumentException("Not a comparison: " + operator);
+        }
+    }
+
+    @Override
+    public void equal(boolean[] a, boolean[] b, boolean[] out, int rows) {
+        for (int i = 0; i < rows; i++) out[i] = a[i] == b[i];
+    }
+
+    @Override
+    public void not(boolean[] a, boolean[] out, int rows) {
+        for (int i = 0; i < rows; i++) out[i] = !a[i];
+    }
+
+    @Override
+    public void or(boolean[] a, boolean[] b, boolean[] out, int rows) {
+        for (int i = 0; i < rows; i++) out[i] = a[i] | b[i];
+    }
+
+    @Override
+    public void zeros(double[] divisor, boolean[] errors, boolean[] out, int rows) {
+        for (int i = 0; i < rows; i++) out[i] = errors[i] | divisor[i] == 0;
+    }
+
+    @Override
+    public void blend(boolean[] condition, double[] a, double[] b, double[] out, int rows) {
+        for (int i = 0; i < rows; i++) out[i] = condition[i] ? a[i] : b[i];
+    }
+
+    @Override
+    public void blend(boolean[] condition, boolean[] a, boolean[] b, boolean[] out, int rows) {
+        for (int i = 0; i < rows; i++) out[i] = condition[i] ? a[i] : b[i];
+    }
+
+    @Override
+    public int first(boolean[] a, int rows) {
+        for (int i = 0; i < rows; i++)
+            if (a[i]) return i;
+        return -1;
+    }
+}
@@ -2,61 +2,190 @@ package com.craftinginterpreters.lox;
 
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import static com.craftinginterpreters.lox.TokenType.*;
 
 /**
  * Class that will retrieve all the characters from the source
  * code, and it will transform them into a list of tokens.
+ *
+ * The Scanner can also be used as a TokenSource, in that case the
+ * tokens are scanned one by one as the Parser asks for them, and
+ * nothing is kept after they are returned.
  */
-public class Scanner {
-    private final String source;
-    private final List<Token> tokens = new ArrayList<>();
-    // map to keep the existing keywords in our scanner
-    // we use these to see if the read identifiers are
-    // keywords instead of identifiers
-    private static final Map<String, TokenType> keywords;
+public class Scanner implements TokenSource {
+    private final Source source;
+    // token produced by the last call to scanToken, if any
+    private Token next = null;
+    // value of the last number read
+    private Double number = null;
+    // when scanning into a buffer, tokens are stored here instead
+    private TokenBuffer sink = null;
+    // names and strings already found, so the same text is
+    // always the same String, shared with other compilations
+    // through the SymbolTable
+    private final SymbolTable symbols;
+    private final Interner names;
+
+    // up to this number of digits, a mantissa is exact in a double
+    private static final int MAX_EXACT_DIGITS = 15;
+    // powers of ten exactly represented in a double
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20,
+            1e21, 1e22
+    };
+    private static final long NEGATIVE_ZERO_BITS = Double.doubleToRawLongBits(-0.0);
+    // boxed values of the small integers
+    private static final Double[] SMALL_NUMBERS = new Double[256];
+
+    static {
+        for (int i = 0; i < SMALL_NUMBERS.length; i++) {
+            SMALL_NUMBERS[i] = (double) i;
+        }
+    }
 
     // fields to keep track of where the scanner is
     private int start = 0;
     private int current = 0;
     private int line = 1;
+    // the scanner stops here even if the source is longer
+    private int end = Integer.MAX_VALUE;
+    // where the errors are sent
+    private ErrorReporter reporter = Lox::error;
 
-    static {
-        keywords = new HashMap<>();
-        keywords.put("and", AND);
-        keywords.put("class", CLASS);
-        keywords.put("else", ELSE);
-        keywords.put("false", FALSE);
-        keywords.put("for", FOR);
-        keywords.put("fun", FUN);
-        keywords.put("if", IF);
-        keywords.put("nil", NIL);
-        keywords.put("or", OR);
-        keywords.put("print", PRINT);
-        keywords.put("return", RETURN);
-        keywords.put("super", SUPER);
-        keywords.put("this", THIS);
-        keywords.put("true", TRUE);
-        keywords.put("var", VAR);
-        keywords.put("while", WHILE);
+    /**
+     * Receives the errors found while scanning, by default
+     * they are reported by Lox.
+     */
+    interface ErrorReporter {
+        void error(int line, String message);
     }
 
     Scanner(String source) {
+        this(new StringSource(source));
+    }
+
+    Scanner(Source source) {
+        this(source, new SymbolTable());
+    }
+
+    Scanner(Source source, SymbolTable symbols) {
+        this(source, symbols, 0, 1);
+    }
+
+    /**
+     * Create a Scanner that starts in the middle of a source, the
+     * position must be outside any token, string or comment.
+     *
+     * @param source input with the code
+     * @param symbols table where names and strings are interned
+     * @param position position where scanning starts
+     * @param line line of that position
+     */
+    Scanner(Source source, SymbolTable symbols, int position, int line) {
         this.source = source;
+        this.symbols = symbols;
+        this.names = new Interner(symbols);
+        this.start = position;
+        this.current = position;
+        this.line = line;
     }
 
     List<Token> scanTokens() {
+        List<Token> tokens = new ArrayList<>();
+        Token token;
+        do {
+            token = nextToken();
+            tokens.add(token);
+        } while (token.type != EOF);
+        return tokens;
+    }
+
+    /**
+     * Scan the whole source storing the tokens in a TokenBuffer,
+     * no Token objects or lexemes are created. The source must
+     * be kept entirely in memory (not a ReaderSource), since the
+     * buffer reads the lexemes from it later.
+     *
+     * @return buffer with all the tokens, finished with EOF
+     */
+    TokenBuffer scanBuffer() {
+        TokenBuffer buffer = new TokenBuffer(source, symbols);
+        while (scanInto(buffer));
+        buffer.add(EOF, current, 0, line);
+        return buffer;
+    }
+
+    /**
+     * Scan characters until one token is added to the buffer, the
+     * EOF token is not added at the end of the source.
+     *
+     * @param buffer buffer where the token is stored
+     * @return `true` if a token was added, `false` at the end of the source
+     */
+    boolean scanInto(TokenBuffer buffer) {
+        sink = buffer;
+        int size = buffer.size();
         while (!isAtEnd()) {
             // we are at the beginning of the next lexeme
             start = current;
             scanToken();
+            if (buffer.size() != size) return true;
         }
-        tokens.add(new Token(EOF, "", null, line));
-        return tokens;
+        return false;
+    }
+
+    /**
+     * Stop scanning at the given position, like if the source
+     * finished there.
+     *
+     * @param end position where the scanner stops
+     */
+    void setEnd(int end) {
+        this.end = end;
+    }
+
+    void setErrorReporter(ErrorReporter reporter) {
+        this.reporter = reporter;
+    }
+
+    /**
+     * @return position where the scanner is
+     */
+    int position() {
+        return current;
+    }
+
+    /**
+     * @return line where the scanner is
+     */
+    int line() {
+        return line;
+    }
+
+    /**
+     * Scan characters until we have a new token, whitespaces
+     * and comments do not produce tokens so we may need to
+     * run more than one time `scanToken`.
+     *
+     * @return the next token, or EOF at the end of the source
+     */
+    @Override
+    public Token nextToken() {
+        while (!isAtEnd()) {
+            // we are at the beginning of the next lexeme
+            start = current;
+            source.release(start);
+            scanToken();
+            if (next != null) {
+                Token token = next;
+                next = null;
+                return token;
+            }
+        }
+        return new Token(EOF, "", null, line);
     }
 
     private void scanToken() {
@@ -123,7 +252,9 @@ public class Scanner {
                 } else if (isAlpha(c)) {
                     identifier();
                 } else {
-                    Lox.error(line, "Unexpected character: " + c + ".");
+                    // the bytes of a multibyte character are reported together
+                    current = source.characterEnd(start);
+                    reporter.error(line, "Unexpected character: " + source.text(start, current) + ".");
                 }
                 break;
         }
@@ -146,17 +277,16 @@ public class Scanner {
         }
 
         if (isAtEnd()) {
-            Lox.error(line, "Unterminated string.");
+            reporter.error(line, "Unterminated string.");
             return;
         }
 
         // The closing '"'.
         advance();
 
-        // Now Trim the surrounding quotes.
-        // Create a token with the value
-        String value = source.substring(start+1, current-1);
-        addToken(STRING, value);
+        // Create a token, the value is the text
+        // without the surrounding quotes.
+        addToken(STRING);
     }
 
     /**
@@ -164,28 +294,175 @@ public class Scanner {
      * with the real value.
      */
     private void number() {
+        // we compute the value while reading the digits,
+        // all of them go to the mantissa, and we count the
+        // ones after the "." (the first digit was already read)
+        long mantissa = source.charAt(start) - '0';
+        int digits = 1;
+        int decimals = 0;
+
         // while we are reading digits,
         // advance the pointer
-        while (isDigit(peek())) advance();
+        while (isDigit(peek())) {
+            mantissa = mantissa * 10 + (advance() - '0');
+            digits++;
+        }
 
         if (peek() == '.' && isDigit(peekNext())) {
             // Consume the "."
             advance();
 
-            while (isDigit(peek())) advance();
+            while (isDigit(peek())) {
+                mantissa = mantissa * 10 + (advance() - '0');
+                digits++;
+                decimals++;
+            }
         }
 
-        addToken(NUMBER, Double.parseDouble(source.substring(start, current)));
+        // a buffer does not keep the values
+        if (sink == null) {
+            double value = exactNumber(mantissa, digits, decimals);
+            if (Double.isNaN(value)) value = Double.parseDouble(source.text(start, current));
+            number = boxNumber(value);
+        }
+        addToken(NUMBER);
+    }
+
+    /**
+     * Compute the value of a number from its digits without parsing the
+     * text. When the mantissa has at most 15 digits it is exactly
+     * represented by a double, and so are the powers of ten up to 1e22,
+     * so a single division gives the correctly rounded result, the same
+     * one Double.parseDouble would give.
+     *
+     * @param mantissa all the digits of the number, without the "."
+     * @param digits number of digits in the mantissa
+     * @param decimals number of digits after the "."
+     * @return the value, or NaN if the fast path cannot be exact
+     */
+    private static double exactNumber(long mantissa, int digits, int decimals) {
+        if (digits > MAX_EXACT_DIGITS || decimals >= POWERS_OF_TEN.length) return Double.NaN;
+        if (decimals == 0) return mantissa;
+        return mantissa / POWERS_OF_TEN[decimals];
+    }
+
+    /**
+     * Parse the lexeme of a number, used when the value was not
+     * computed while scanning (tokens stored in a TokenBuffer).
+     *
+     * @param lexeme text of the number
+     * @return the boxed value
+     */
+    static Double parseNumber(String lexeme) {
+        long mantissa = 0;
+        int digits = 0;
+        int decimals = 0;
+        boolean fraction = false;
+
+        for (int i = 0; i < lexeme.length(); i++) {
+            char c = lexeme.charAt(i);
+            if (c == '.') {
+                fraction = true;
+                continue;
+            }
+            mantissa = mantissa * 10 + (c - '0');
+            digits++;
+            if (fraction) decimals++;
+        }
+
+        double value = exactNumber(mantissa, digits, decimals);
+        if (Double.isNaN(value)) value = Double.parseDouble(lexeme);
+        return boxNumber(value);
+    }
+
+    /**
+     * Box a value, small integers (the most common ones in the
+     * code) are taken from a cache instead of allocating them.
+     *
+     * @param value value of the number
+     * @return the boxed value
+     */
+    private static Double boxNumber(double value) {
+        int index = (int) value;
+        // the bits check keeps -0.0 out of the cache
+        if (index >= 0 && index < SMALL_NUMBERS.length && index == value
+                && Double.doubleToRawLongBits(value) != NEGATIVE_ZERO_BITS)
+            return SMALL_NUMBERS[index];
+        return value;
     }
 
     private void identifier() {
         // we keep reading alphanumeric values
         // as part of an identifier
         while (isAlphaNumeric(peek())) advance();
-        String text = source.substring(start, current);
-        TokenType type = keywords.get(text);
-        if (type == null) type = IDENTIFIER;
-        addToken(type, text);
+        addToken(keywordType(source, start, current));
+    }
+
+    /**
+     * Check if the identifier we just read is a keyword, without
+     * creating a String for it. We switch on the first character
+     * (and on the second one when several keywords share the first),
+     * and then we compare the rest of the keyword.
+     *
+     * @param source source with the identifier
+     * @param start first position of the identifier
+     * @param end last position of the identifier (exclusive)
+     * @return type of the keyword, or IDENTIFIER if it is not a keyword
+     */
+    static TokenType keywordType(Source source, int start, int end) {
+        switch (source.charAt(start)) {
+            case 'a': return checkKeyword(source, start, end, 1, "nd", AND);
+            case 'c': return checkKeyword(source, start, end, 1, "lass", CLASS);
+            case 'e': return checkKeyword(source, start, end, 1, "lse", ELSE);
+            case 'f':
+                if (end - start > 1) {
+                    switch (source.charAt(start + 1)) {
+                        case 'a': return checkKeyword(source, start, end, 2, "lse", FALSE);
+                        case 'o': return checkKeyword(source, start, end, 2, "r", FOR);
+                        case 'u': return checkKeyword(source, start, end, 2, "n", FUN);
+                    }
+                }
+                break;
+            case 'i': return checkKeyword(source, start, end, 1, "f", IF);
+            case 'n': return checkKeyword(source, start, end, 1, "il", NIL);
+            case 'o': return checkKeyword(source, start, end, 1, "r", OR);
+            case 'p': return checkKeyword(source, start, end, 1, "rint", PRINT);
+            case 'r': return checkKeyword(source, start, end, 1, "eturn", RETURN);
+            case 's': return checkKeyword(source, start, end, 1, "uper", SUPER);
+            case 't':
+                if (end - start > 1) {
+                    switch (source.charAt(start + 1)) {
+                        case 'h': return checkKeyword(source, start, end, 2, "is", THIS);
+                        case 'r': return checkKeyword(source, start, end, 2, "ue", TRUE);
+                    }
+                }
+                break;
+            case 'v': return checkKeyword(source, start, end, 1, "ar", VAR);
+            case 'w': return checkKeyword(source, start, end, 1, "hile", WHILE);
+        }
+        return IDENTIFIER;
+    }
+
+    /**
+     * Compare the end of the identifier with the rest of a keyword,
+     * the length is checked first, so most identifiers are discarded
+     * without comparing any character.
+     *
+     * @param source source with the identifier
+     * @param start first position of the identifier
+     * @param end last position of the identifier (exclusive)
+     * @param begin characters of the identifier already checked
+     * @param rest rest of the keyword
+     * @param type type of the keyword
+     * @return type if the identifier is the keyword, IDENTIFIER otherwise
+     */
+    private static TokenType checkKeyword(Source source, int start, int end,
+                                          int begin, String rest, TokenType type) {
+        if (end - start != begin + rest.length()) return IDENTIFIER;
+        for (int i = 0; i < rest.length(); i++) {
+            if (source.charAt(start + begin + i) != rest.charAt(i)) return IDENTIFIER;
+        }
+        return type;
     }
 
     /**
@@ -204,7 +481,7 @@ public class Scanner {
             advance();
         }
         if (isAtEnd()) {
-            Lox.error(line, "You didn't finish a fucking comment block starting at line: " + currLine+ ".");
+            reporter.error(line, "You didn't finish a fucking comment block starting at line: " + currLine+ ".");
             return;
         }
 
@@ -218,7 +495,7 @@ public class Scanner {
      * @return if the parser ies out of the input file.
      */
     private boolean isAtEnd() {
-        return current >= source.length();
+        return current >= end || !source.has(current);
     }
 
     /**
@@ -265,28 +542,67 @@ public class Scanner {
      * @return next character to current if any, 0 instead
      */
     private char peekNext() {
-        if (current + 1 >= source.length()) return '\0';
+        if (current + 1 >= end || !source.has(current + 1)) return '\0';
         return source.charAt(current + 1);
     }
 
     /**
-     * Add a token with a simple type, and no literal value.
+     * Add a token given its type, tokens always written the
+     * same way do not need to read the source.
      *
      * @param type type of the token
      */
     private void addToken(TokenType type) {
-        addToken(type, null);
+        addToken(type, type.lexeme);
+    }
+
+    /**
+     * Add a token given its type and its text, if the text is null
+     * it is read from the source. When scanning into a TokenBuffer
+     * only the position of the token is stored.
+     *
+     * @param type type of the token
+     * @param text lexeme of the token
+     */
+    private void addToken(TokenType type, String text) {
+        if (sink != null) {
+            sink.add(type, start, current - start, line);
+            return;
+        }
+        if (text == null) {
+            text = type == IDENTIFIER ? names.intern(source, start, current)
+                                      : source.text(start, current);
+        }
+        // the value of a string is also interned
+        Object literal;
+        if (type == STRING) literal = names.intern(source, start + 1, current - 1);
+        else if (type == NUMBER) literal = number;
+        else literal = literal(type, text);
+        next = new Token(type, text, literal, line);
     }
 
     /**
-     * Add a token given its type and the literal value.
+     * Compute the literal value of a token from its lexeme: strings
+     * without the surrounding quotes, the value of the numbers, and
+     * identifiers and keywords keep their own name.
      *
      * @param type type of the token
-     * @param literal object with the literal value
+     * @param lexeme text of the token
+     * @return literal value, or null if the token does not have one
      */
-    private void addToken(TokenType type, Object literal) {
-        String text = source.substring(start, current);
-        tokens.add(new Token(type, text, literal, line));
+    static Object literal(TokenType type, String lexeme) {
+        switch (type) {
+            case STRING:
+                return lexeme.substring(1, lexeme.length() - 1);
+            case NUMBER:
+                return parseNumber(lexeme);
+            case IDENTIFIER:
+                return lexeme;
+            default:
+                // keywords are declared between AND and WHILE
+                if (type.compareTo(AND) >= 0 && type.compareTo(WHILE) <= 0) return lexeme;
+                return null;
+        }
     }
 
     private boolean isAlphaNumeric(char c) {
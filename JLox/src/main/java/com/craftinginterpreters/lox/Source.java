@@ -0,0 +1,62 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * Abstraction over the characters the Scanner reads. The Scanner
+ * only needs to look at the characters around its current position
+ * and to cut lexemes out of the input, so a Source does not need to
+ * hold the whole program in memory (see ReaderSource).
+ *
+ * Positions are always absolute offsets from the beginning of the
+ * input.
+ */
+public abstract class Source {
+
+    /**
+     * Check if there's a character at the given position, a streaming
+     * source may need to read more input to answer this.
+     *
+     * @param pos absolute position in the input
+     * @return `true` if the input has a character at pos, `false` at end of input
+     */
+    public abstract boolean has(int pos);
+
+    /**
+     * Retrieve the character at the given position, the caller must
+     * have checked before with `has` that the position exists.
+     *
+     * @param pos absolute position in the input
+     * @return character at that position
+     */
+    public abstract char charAt(int pos);
+
+    /**
+     * Build the text of the input between two positions.
+     *
+     * @param start first position (inclusive)
+     * @param end last position (exclusive)
+     * @return text in the range
+     */
+    public abstract String text(int start, int end);
+
+    /**
+     * Find where the character that starts at the given position
+     * finishes, so a character the Scanner does not expect is reported
+     * as a whole. By default every position holds a whole character.
+     *
+     * @param pos position of the first unit of the character
+     * @return position after the character
+     */
+    public int characterEnd(int pos) {
+        return pos + 1;
+    }
+
+    /**
+     * The Scanner calls this method at the beginning of every lexeme,
+     * telling the source that characters before pos will not be read
+     * anymore. By default, it does nothing.
+     *
+     * @param pos first position that can still be read
+     */
+    public void release(int pos) {
+    }
+}
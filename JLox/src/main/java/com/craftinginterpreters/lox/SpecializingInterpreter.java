@@ -0,0 +1,95 @@
+package com.craftinginterpreters.lox;
+
+/***
+ * Interpreter over a self-specializing tree of Node (see Node). The
+ * AST is converted once into the nodes, and every time the tree runs
+ * its operators get closer to the types they really see, so running
+ * the same tree many times gets faster than the Interpreter, which
+ * checks the types on every operation.
+ *
+ * The results and the errors are the same than the ones of the
+ * Interpreter.
+ */
+public class SpecializingInterpreter implements Expr.Visitor<Node> {
+
+    private final Environment environment;
+
+    public SpecializingInterpreter() {
+        this(new Environment());
+    }
+
+    /**
+     * @param environment variables the expressions can read
+     */
+    public SpecializingInterpreter(Environment environment) {
+        this.environment = environment;
+    }
+
+    /**
+     * Run the expression and print its value, runtime errors are
+     * reported through Lox.
+     *
+     * @param expr expression to run
+     */
+    public void interpret(Expr expr) {
+        try {
+            System.out.println(Interpreter.stringify(prepare(expr).execute()));
+        } catch (RuntimeError error) {
+            Lox.runtimeError(error);
+        }
+    }
+
+    /**
+     * Build the executable tree of an expression, run it with
+     * `execute`.
+     *
+     * @param expr expression to run
+     * @return root of the tree, uninitialized
+     */
+    Node.Root prepare(Expr expr) {
+        return new Node.Root(expr.accept(this));
+    }
+
+    /**
+     * @param root tree built by prepare
+     * @return value of the expression, a Double, a String, a Boolean or null for nil
+     */
+    Object execute(Node.Root root) {
+        return root.execute();
+    }
+
+    @Override
+    public Node visitBinaryExpr(Expr.Binary expr) {
+        Node left = expr.left.accept(this);
+        Node right = expr.right.accept(this);
+        if (expr.operator.type == TokenType.COMMA) return new Node.Comma(expr.operator, left, right);
+        return new Node.UninitializedBinary(expr.operator, left, right);
+    }
+
+    @Override
+    public Node visitConditionalExpr(Expr.Conditional expr) {
+        return new Node.UninitializedConditional(expr.condition.accept(this),
+                expr.true_statement.accept(this), expr.false_statement.accept(this));
+    }
+
+    @Override
+    public Node visitGroupingExpr(Expr.Grouping expr) {
+        return expr.expression.accept(this);
+    }
+
+    @Override
+    public Node visitLiteralExpr(Expr.Literal expr) {
+        if (expr.value instanceof Double) return new Node.NumberLiteral((double) expr.value);
+        return new Node.Literal(expr.value);
+    }
+
+    @Override
+    public Node visitUnaryExpr(Expr.Unary expr) {
+        return new Node.UninitializedUnary(expr.operator, expr.right.accept(this));
+    }
+
+    @Override
+    public Node visitVariableExpr(Expr.Variable expr) {
+        return new Node.Variable(environment, expr.name);
+    }
+}
@@ -0,0 +1,32 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * Source with the whole program already in memory as a String,
+ * used by the prompt and by anyone that already has the code.
+ */
+public class StringSource extends Source {
+    private final String source;
+
+    public StringSource(String source) {
+        this.source = source;
+    }
+
+    public int length() {
+        return source.length();
+    }
+
+    @Override
+    public boolean has(int pos) {
+        return pos < source.length();
+    }
+
+    @Override
+    public char charAt(int pos) {
+        return source.charAt(pos);
+    }
+
+    @Override
+    public String text(int start, int end) {
+        return source.substring(start, end);
+    }
+}
@@ -0,0 +1,94 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Table with the names (identifiers) and string literals found while
+ * compiling. Every name is stored only once: the same text is always
+ * the same String instance, and it receives an integer id that never
+ * changes, so later stages can compare names by identity or by id
+ * instead of using `equals`.
+ *
+ * The table can be shared by several compilations running at the
+ * same time. It has a maximum number of symbols, so a long session
+ * (like the prompt) does not grow it forever: once it is full, new
+ * texts are returned as they are, without interning them and without
+ * id.
+ */
+public class SymbolTable {
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+    // id of the texts that are not in the table
+    public static final int NO_ID = -1;
+
+    private final int capacity;
+    private final ConcurrentHashMap<String, Symbol> symbols = new ConcurrentHashMap<>();
+    // names by id, only modified holding the lock of the table
+    private final List<String> names = new ArrayList<>();
+
+    private static final class Symbol {
+        final String name;
+        final int id;
+
+        Symbol(String name, int id) {
+            this.name = name;
+            this.id = id;
+        }
+    }
+
+    public SymbolTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public SymbolTable(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Retrieve the unique instance of a text, adding it to the
+     * table if it is the first time we see it.
+     *
+     * @param text name or string to intern
+     * @return the instance stored in the table, or text if the table is full
+     */
+    public String intern(String text) {
+        Symbol symbol = symbols.get(text);
+        if (symbol != null) return symbol.name;
+
+        synchronized (this) {
+            // another compilation may have added it meanwhile
+            symbol = symbols.get(text);
+            if (symbol != null) return symbol.name;
+            if (names.size() >= capacity) return text;
+
+            symbols.put(text, new Symbol(text, names.size()));
+            names.add(text);
+            return text;
+        }
+    }
+
+    /**
+     * @param text an interned text
+     * @return id of the text, or NO_ID if it is not in the table
+     */
+    public int id(String text) {
+        Symbol symbol = symbols.get(text);
+        return symbol != null ? symbol.id : NO_ID;
+    }
+
+    /**
+     * @param id id of a symbol
+     * @return the text with that id
+     */
+    public synchronized String name(int id) {
+        return names.get(id);
+    }
+
+    /**
+     * @return number of symbols in the table
+     */
+    public synchronized int size() {
+        return names.size();
+    }
+}
@@ -0,0 +1,134 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/***
+ * Runs the expressions with the Interpreter, and counts how many times
+ * each one is run. When an expression reaches the threshold it is
+ * compiled to JVM bytecode by the JvmCompiler, and from then on it runs
+ * the compiled class, which the JIT of the JVM turns into machine code.
+ *
+ * If the compilation fails (the class is too big, the JVM does not
+ * accept it...) the failure is kept in the entry of the expression, and
+ * it keeps running with the Interpreter without trying again. That is
+ * also what happens to the expressions that read variables, which the
+ * JvmCompiler does not compile.
+ *
+ * The entries are kept while the expression is alive, and can be seen
+ * with `entry` and `entries`.
+ */
+public class TieredInterpreter {
+    static final int THRESHOLD = 1000;
+
+    /**
+     * Counts of an expression, and its compiled code once it has one.
+     */
+    public static final class Entry {
+        private long count = 0;
+        private ClosureCompiler.Evaluator compiled = null;
+        private Exception failure = null;
+
+        /**
+         * @return times the expression has run
+         */
+        public long count() {
+            return count;
+        }
+
+        /**
+         * @return `true` if the expression runs compiled
+         */
+        public boolean isCompiled() {
+            return compiled != null;
+        }
+
+        /**
+         * @return why the compilation failed, null if it did not fail
+         */
+        public Exception failure() {
+            return failure;
+        }
+
+        @Override
+        public String toString() {
+            String state = compiled != null ? "compiled" : failure != null ? "failed: " + failure : "interpreted";
+            return count + " runs, " + state;
+        }
+    }
+
+    private final Interpreter interpreter;
+    private final JvmCompiler compiler = new JvmCompiler();
+    private final Map<Expr, Entry> entries = new WeakHashMap<>();
+    private final int threshold;
+
+    public TieredInterpreter() {
+        this(THRESHOLD);
+    }
+
+    /**
+     * @param threshold runs of an expression before it is compiled
+     */
+    public TieredInterpreter(int threshold) {
+        this(threshold, new Environment());
+    }
+
+    /**
+     * @param threshold runs of an expression before it is compiled
+     * @param environment variables the expressions can read
+     */
+    public TieredInterpreter(int threshold, Environment environment) {
+        this.threshold = threshold;
+        this.interpreter = new Interpreter(environment);
+    }
+
+    /**
+     * Run the expression and print its value, runtime errors are
+     * reported through Lox.
+     *
+     * @param expr expression to run
+     */
+    public void interpret(Expr expr) {
+        try {
+            System.out.println(Interpreter.stringify(evaluate(expr)));
+        } catch (RuntimeError error) {
+            Lox.runtimeError(error);
+        }
+    }
+
+    /**
+     * @param expr expression to run
+     * @return value of the expression, a Double, a String, a Boolean or null for nil
+     */
+    public Object evaluate(Expr expr) {
+        Entry entry = entries.computeIfAbsent(expr, e -> new Entry());
+        entry.count++;
+        if (entry.compiled != null) return entry.compiled.evaluate();
+
+        if (entry.count >= threshold && entry.failure == null) {
+            try {
+                entry.compiled = compiler.compile(expr);
+            } catch (Exception | LinkageError error) {
+                entry.failure = error instanceof Exception ? (Exception) error : new Exception(error);
+            }
+            if (entry.compiled != null) return entry.compiled.evaluate();
+        }
+        return interpreter.evaluate(expr);
+    }
+
+    /**
+     * @param expr an expression
+     * @return its entry, null if it never ran
+     */
+    public Entry entry(Expr expr) {
+        return entries.get(expr);
+    }
+
+    /**
+     * @return the entries of the expressions that are alive
+     */
+    public Map<Expr, Entry> entries() {
+        return Collections.unmodifiableMap(entries);
+    }
+}
@@ -0,0 +1,150 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Arrays;
+
+/**
+ * Compact storage for the tokens of a source. Instead of one Token
+ * object per token (with its lexeme and literal), we keep the type,
+ * the position, the length and the line of each token in arrays of
+ * primitives. Lexemes, literals and Token objects are only built
+ * when somebody asks for them, reading them from the source.
+ *
+ * Names and strings are interned in the SymbolTable of the Scanner
+ * that filled the buffer, so the Parser gets the same instances the
+ * Scanner would have produced.
+ */
+public class TokenBuffer {
+    private static final TokenType[] TYPES = TokenType.values();
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final Source source;
+    private final SymbolTable symbols;
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    private int[] starts = new int[INITIAL_CAPACITY];
+    private int[] lengths = new int[INITIAL_CAPACITY];
+    private int[] lines = new int[INITIAL_CAPACITY];
+    private int size = 0;
+
+    TokenBuffer(Source source, SymbolTable symbols) {
+        this.source = source;
+        this.symbols = symbols;
+    }
+
+    /**
+     * Append a token to the buffer.
+     *
+     * @param type type of the token
+     * @param start position of the first character of the token
+     * @param length number of characters of the token
+     * @param line line where the token is
+     */
+    void add(TokenType type, int start, int length, int line) {
+        if (size == types.length) grow();
+        types[size] = (byte) type.ordinal();
+        starts[size] = start;
+        lengths[size] = length;
+        lines[size] = line;
+        size++;
+    }
+
+    /**
+     * Append all the tokens of another buffer of the same source.
+     *
+     * @param other buffer with the tokens to append
+     */
+    void addAll(TokenBuffer other) {
+        while (size + other.size > types.length) grow();
+        System.arraycopy(other.types, 0, types, size, other.size);
+        System.arraycopy(other.starts, 0, starts, size, other.size);
+        System.arraycopy(other.lengths, 0, lengths, size, other.size);
+        System.arraycopy(other.lines, 0, lines, size, other.size);
+        size += other.size;
+    }
+
+    /**
+     * Remove the last token of the buffer.
+     */
+    void removeLast() {
+        size--;
+    }
+
+    private void grow() {
+        int capacity = types.length * 2;
+        types = Arrays.copyOf(types, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        lines = Arrays.copyOf(lines, capacity);
+    }
+
+    /**
+     * @return number of tokens in the buffer (including EOF)
+     */
+    public int size() {
+        return size;
+    }
+
+    public Source source() {
+        return source;
+    }
+
+    public SymbolTable symbols() {
+        return symbols;
+    }
+
+    public TokenType type(int index) {
+        return TYPES[types[index]];
+    }
+
+    public int start(int index) {
+        return starts[index];
+    }
+
+    public int length(int index) {
+        return lengths[index];
+    }
+
+    public int line(int index) {
+        return lines[index];
+    }
+
+    /**
+     * Build the text of a token, tokens always written the
+     * same way do not read the source.
+     *
+     * @param index index of the token
+     * @return lexeme of the token
+     */
+    public String lexeme(int index) {
+        TokenType type = type(index);
+        if (type.lexeme != null) return type.lexeme;
+        String text = source.text(starts[index], starts[index] + lengths[index]);
+        return type == TokenType.IDENTIFIER ? symbols.intern(text) : text;
+    }
+
+    /**
+     * @param index index of the token
+     * @return literal value of the token, or null if it does not have one
+     */
+    public Object literal(int index) {
+        return literal(type(index), lexeme(index));
+    }
+
+    private Object literal(TokenType type, String lexeme) {
+        Object literal = Scanner.literal(type, lexeme);
+        if (type == TokenType.STRING) return symbols.intern((String) literal);
+        return literal;
+    }
+
+    /**
+     * Build a Token object for the token, a new one is created
+     * every time.
+     *
+     * @param index index of the token
+     * @return the token
+     */
+    public Token token(int index) {
+        String lexeme = lexeme(index);
+        TokenType type = type(index);
+        return new Token(type, lexeme, literal(type, lexeme), lines[index]);
+    }
+}
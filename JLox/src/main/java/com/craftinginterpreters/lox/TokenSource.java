@@ -0,0 +1,39 @@
+package com.craftinginterpreters.lox;
+
+import java.util.List;
+
+/**
+ * Pull interface to retrieve tokens one by one, the Parser reads
+ * from a TokenSource, so it can start parsing while the Scanner
+ * is still reading the file.
+ *
+ * Once the EOF token is returned, every following call returns
+ * an EOF token again.
+ */
+public interface TokenSource {
+
+    /**
+     * @return the next token from the input
+     */
+    Token nextToken();
+
+    /**
+     * Wrap an already scanned list of tokens, the list must finish
+     * with an EOF token like the one returned by `Scanner.scanTokens`.
+     *
+     * @param tokens list of tokens
+     * @return a token source that goes through the list
+     */
+    static TokenSource of(List<Token> tokens) {
+        return new TokenSource() {
+            private int current = 0;
+
+            @Override
+            public Token nextToken() {
+                Token token = tokens.get(current);
+                if (token.type != TokenType.EOF) current++;
+                return token;
+            }
+        };
+    }
+}
@@ -1,35 +1,39 @@
 package com.craftinginterpreters.lox;
 
-import java.util.Map; /**
+/**
  * Enum which contains all the possible tokens from
  * Lox language.
+ *
+ * Tokens that are always written the same way keep their
+ * text, so the Scanner does not need to cut it from the
+ * source code.
  */
 public enum TokenType {
     // Single Character Tokens
-    LEFT_PAREN, // (
-    RIGHT_PAREN, // )
-    LEFT_BRACE, // {
-    RIGHT_BRACE, // }
-    COMMA, // ,
-    DOT, // .
-    MINUS, // -
-    PLUS, // +
-    SEMICOLON, // ;
-    SLASH, // /
-    STAR, // *
-    COLON, // :
-    QUESTION_MARK, // ?
+    LEFT_PAREN("("), // (
+    RIGHT_PAREN(")"), // )
+    LEFT_BRACE("{"), // {
+    RIGHT_BRACE("}"), // }
+    COMMA(","), // ,
+    DOT("."), // .
+    MINUS("-"), // -
+    PLUS("+"), // +
+    SEMICOLON(";"), // ;
+    SLASH("/"), // /
+    STAR("*"), // *
+    COLON(":"), // :
+    QUESTION_MARK("?"), // ?
 
 
     // One or two character tokens
-    BANG,
-    BANG_EQUAL,
-    EQUAL, // =
-    EQUAL_EQUAL, // ==
-    GREATER, // >
-    GREATER_EQUAL, // >=
-    LESS, // <
-    LESS_EQUAL, // <=
+    BANG("!"),
+    BANG_EQUAL("!="),
+    EQUAL("="), // =
+    EQUAL_EQUAL("=="), // ==
+    GREATER(">"), // >
+    GREATER_EQUAL(">="), // >=
+    LESS("<"), // <
+    LESS_EQUAL("<="), // <=
 
     // Literals
     IDENTIFIER, // the name of a variable or a function...
@@ -37,22 +41,33 @@ public enum TokenType {
     NUMBER, // real value
 
     // Keywords
-    AND,
-    CLASS,
-    ELSE,
-    FALSE,
-    FUN,
-    FOR,
-    IF,
-    NIL,
-    OR,
-    PRINT,
-    RETURN,
-    SUPER,
-    THIS,
-    TRUE,
-    VAR,
-    WHILE,
-
-    EOF // end of file!
-}
\ No newline at end of file
+    AND("and"),
+    CLASS("class"),
+    ELSE("else"),
+    FALSE("false"),
+    FUN("fun"),
+    FOR("for"),
+    IF("if"),
+    NIL("nil"),
+    OR("or"),
+    PRINT("print"),
+    RETURN("return"),
+    SUPER("super"),
+    THIS("this"),
+    TRUE("true"),
+    VAR("var"),
+    WHILE("while"),
+
+    EOF(""); // end of file!
+
+    // text of the token, null for the ones that change (literals)
+    public final String lexeme;
+
+    TokenType() {
+        this(null);
+    }
+
+    TokenType(String lexeme) {
+        this.lexeme = lexeme;
+    }
+}
@@ -0,0 +1,233 @@
+package com.craftinginterpreters.lox;
+
+import static com.craftinginterpreters.lox.Chunk.*;
+
+/***
+ * Stack based virtual machine for the code of the Compiler, it gives
+ * the same results and errors than the Interpreter.
+ *
+ * The stack is two arrays, a double[] with the numbers and an
+ * Object[] with the rest of the values. A number is in the double[]
+ * and its slot in the Object[] holds the NUMBER tag, so the numbers
+ * are never boxed while the code runs. Booleans, strings and nil
+ * (null) are stored in the Object[].
+ *
+ * The loop keeps the instruction pointer and the top of the stack in
+ * local variables and dispatches with a switch on the opcode.
+ */
+public class VM {
+
+    // tag of the slots whose value is in the double[]
+    private static final Object NUMBER = new Object();
+
+    private final Environment environment;
+
+    public VM() {
+        this(new Environment());
+    }
+
+    /**
+     * @param environment variables the code can read
+     */
+    public VM(Environment environment) {
+        this.environment = environment;
+    }
+
+    /**
+     * Run the code and print its value, runtime errors are reported
+     * through Lox.
+     *
+     * @param chunk code of an expression
+     */
+    public void interpret(Chunk chunk) {
+        try {
+            System.out.println(Interpreter.stringify(run(chunk)));
+        } catch (RuntimeError error) {
+            Lox.runtimeError(error);
+        }
+    }
+
+    /**
+     * @param chunk code of an expression
+     * @return value of the expression, a Double, a String, a Boolean or null for nil
+     */
+    public Object run(Chunk chunk) {
+        final byte[] code = chunk.code;
+        final double[] pool = chunk.numbers;
+        final Object[] constants = chunk.constants;
+        final double[] numbers = new double[chunk.maxStack];
+        final Object[] values = new Object[chunk.maxStack];
+
+        // next instruction and first free slot of the stack
+        int ip = 0;
+        int top = 0;
+
+        for (;;) {
+            switch (code[ip++]) {
+                case OP_NUMBER:
+                    numbers[top] = pool[(code[ip] & 0xFF) << 8 | code[ip + 1] & 0xFF];
+                    values[top++] = NUMBER;
+                    ip += 2;
+                    break;
+                case OP_NUMBER_LONG:
+                    numbers[top] = pool[(code[ip] & 0xFF) << 16 | (code[ip + 1] & 0xFF) << 8 | code[ip + 2] & 0xFF];
+                    values[top++] = NUMBER;
+                    ip += 3;
+                    break;
+                case OP_CONSTANT:
+                    values[top++] = constants[(code[ip] & 0xFF) << 8 | code[ip + 1] & 0xFF];
+                    ip += 2;
+                    break;
+                case OP_CONSTANT_LONG:
+                    values[top++] = constants[(code[ip] & 0xFF) << 16 | (code[ip + 1] & 0xFF) << 8 | code[ip + 2] & 0xFF];
+                    ip += 3;
+                    break;
+                case OP_NIL:
+                    values[top++] = null;
+                    break;
+                case OP_TRUE:
+                    values[top++] = Boolean.TRUE;
+                    break;
+                case OP_FALSE:
+                    values[top++] = Boolean.FALSE;
+                    break;
+                case OP_POP:
+                    top--;
+                    break;
+                case OP_NEGATE:
+                    if (values[top - 1] != NUMBER) throw error(chunk, ip, "Operand must be a number.");
+                    numbers[top - 1] = -numbers[top - 1];
+                    break;
+                case OP_NOT:
+                    values[top - 1] = !Interpreter.isTruthy(values[top - 1]);
+                    break;
+                case OP_ADD:
+                    top--;
+                    if (values[top - 1] == NUMBER && values[top] == NUMBER) {
+                        numbers[top - 1] += numbers[top];
+                    } else if (values[top - 1] instanceof String && values[top] instanceof String) {
+                        values[top - 1] = (String) values[top - 1] + values[top];
+                    } else {
+                        throw error(chunk, ip, "Operands must be two numbers or two strings.");
+                    }
+                    break;
+                case OP_SUBTRACT:
+                    top--;
+                    checkNumbers(chunk, ip, values, top);
+                    numbers[top - 1] -= numbers[top];
+                    break;
+                case OP_MULTIPLY:
+                    top--;
+                    checkNumbers(chunk, ip, values, top);
+                    numbers[top - 1] *= numbers[top];
+                    break;
+                case OP_DIVIDE:
+                    top--;
+                    checkNumbers(chunk, ip, values, top);
+                    numbers[top - 1] = Interpreter.divide(numbers[top - 1], numbers[top], chunk.lines[ip - 1]);
+                    break;
+                case OP_EQUAL:
+                    top--;
+                    values[top - 1] = isEqual(numbers, values, top);
+                    break;
+                case OP_NOT_EQUAL:
+                    top--;
+                    values[top - 1] = !isEqual(numbers, values, top);
+                    break;
+                case OP_GREATER:
+                    top--;
+                    checkNumbers(chunk, ip, values, top);
+                    values[top - 1] = numbers[top - 1] > numbers[top];
+                    break;
+                case OP_GREATER_EQUAL:
+                    top--;
+                    checkNumbers(chunk, ip, values, top);
+                    values[top - 1] = numbers[top - 1] >= numbers[top];
+                    break;
+                case OP_LESS:
+                    top--;
+                    checkNumbers(chunk, ip, values, top);
+                    values[top - 1] = numbers[top - 1] < numbers[top];
+                    break;
+                case OP_LESS_EQUAL:
+                    top--;
+                    checkNumbers(chunk, ip, values, top);
+                    values[top - 1] = numbers[top - 1] <= numbers[top];
+                    break;
+                case OP_JUMP:
+                    ip += readInt(code, ip) + 4;
+                    break;
+                case OP_JUMP_IF_FALSE:
+                    // numbers are always truthy
+                    top--;
+                    if (values[top] != NUMBER && !Interpreter.isTruthy(values[top])) ip += readInt(code, ip);
+                    ip += 4;
+                    break;
+                case OP_VARIABLE:
+                    top = variable((String) constants[(code[ip] & 0xFF) << 8 | code[ip + 1] & 0xFF],
+                            chunk.lines[ip - 1], numbers, values, top);
+                    ip += 2;
+                    break;
+                case OP_VARIABLE_LONG:
+                    top = variable((String) constants[(code[ip] & 0xFF) << 16 | (code[ip + 1] & 0xFF) << 8 | code[ip + 2] & 0xFF],
+                            chunk.lines[ip - 1], numbers, values, top);
+                    ip += 3;
+                    break;
+                case OP_RETURN:
+                    top--;
+                    return values[top] == NUMBER ? (Object) numbers[top] : values[top];
+                default:
+                    throw error(chunk, ip, "Unknown opcode " + code[ip - 1] + ".");
+            }
+        }
+    }
+
+    /**
+     * Push the value of a variable, a number goes to the double[].
+     *
+     * @return the new top of the stack
+     */
+    private int variable(String name, int line, double[] numbers, Object[] values, int top) {
+        Object value = environment.get(name, line);
+        if (value instanceof Double) {
+            numbers[top] = (double) value;
+            values[top] = NUMBER;
+        } else {
+            values[top] = value;
+        }
+        return top + 1;
+    }
+
+    private static int readInt(byte[] code, int offset) {
+        return code[offset] << 24 | (code[offset + 1] & 0xFF) << 16
+                | (code[offset + 2] & 0xFF) << 8 | code[offset + 3] & 0xFF;
+    }
+
+    /**
+     * Check the operands of a binary operator, the right one is at
+     * `top` and the left one just below.
+     */
+    private static void checkNumbers(Chunk chunk, int ip, Object[] values, int top) {
+        if (values[top - 1] != NUMBER || values[top] != NUMBER)
+            throw error(chunk, ip, "Operands must be numbers.");
+    }
+
+    /**
+     * @param ip position after the opcode that failed
+     */
+    private static RuntimeError error(Chunk chunk, int ip, String message) {
+        return new RuntimeError(chunk.lines[ip - 1], message);
+    }
+
+    /**
+     * Same than Interpreter, numbers are equal when Double.equals says so.
+     */
+    private static boolean isEqual(double[] numbers, Object[] values, int top) {
+        Object left = values[top - 1];
+        Object right = values[top];
+        if (left == NUMBER && right == NUMBER)
+            return Double.doubleToLongBits(numbers[top - 1]) == Double.doubleToLongBits(numbers[top]);
+        if (left == NUMBER || right == NUMBER) return false;
+        return Interpreter.isEqual(left, right);
+    }
+}
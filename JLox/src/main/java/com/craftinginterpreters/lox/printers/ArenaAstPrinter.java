@@ -0,0 +1,101 @@
+package com.craftinginterpreters.lox.printers;
+
+import com.craftinginterpreters.lox.ExprArena;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Same output than AstPrinter, walking the nodes of an ExprArena
+ * instead of Expr objects.
+ */
+public class ArenaAstPrinter implements ExprArena.Visitor<Void> {
+
+    private final ExprArena arena;
+    private Output out;
+
+    public ArenaAstPrinter(ExprArena arena) {
+        this.arena = arena;
+    }
+
+    /**
+     * @param expr index of the node to print
+     * @return the expression as a string
+     */
+    public String print(int expr) {
+        StringBuilder builder = new StringBuilder();
+        try {
+            print(expr, builder);
+        } catch (IOException e) {
+            // a StringBuilder does not throw
+            throw new UncheckedIOException(e);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Print the expression into an Appendable, e.g. a Writer of a file.
+     *
+     * @param expr index of the node to print
+     * @param out where it is written
+     * @throws IOException if out fails
+     */
+    public void print(int expr, Appendable out) throws IOException {
+        this.out = new Output(out);
+        try {
+            arena.accept(expr, this);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            this.out = null;
+        }
+    }
+
+    @Override
+    public Void visitBinaryExpr(int expr) {
+        return parenthesize(arena.tokens().lexeme(arena.binaryOperator(expr)),
+                arena.binaryLeft(expr), arena.binaryRight(expr));
+    }
+
+    @Override
+    public Void visitConditionalExpr(int expr) {
+        parenthesize("condition:", arena.conditionalCondition(expr));
+        out.append(" ? ");
+        parenthesize("true:", arena.conditionalTrue_statement(expr));
+        out.append(" : ");
+        return parenthesize("false:", arena.conditionalFalse_statement(expr));
+    }
+
+    @Override
+    public Void visitGroupingExpr(int expr) {
+        return parenthesize("group", arena.groupingExpression(expr));
+    }
+
+    @Override
+    public Void visitLiteralExpr(int expr) {
+        Object value = arena.literalValue(expr);
+        out.append(value == null ? "nil" : value.toString());
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(int expr) {
+        return parenthesize(arena.tokens().lexeme(arena.unaryOperator(expr)), arena.unaryRight(expr));
+    }
+
+    @Override
+    public Void visitVariableExpr(int expr) {
+        out.append(arena.tokens().lexeme(arena.variableName(expr)));
+        return null;
+    }
+
+    private Void parenthesize(String name, int... exprs) {
+        out.append('(').append(name);
+        for (int expr : exprs) {
+            out.append(' ');
+            arena.accept(expr, this);
+        }
+        out.append(')');
+        return null;
+    }
+}
@@ -1,56 +1,86 @@
 package com.craftinginterpreters.lox.printers;
 
 import com.craftinginterpreters.lox.Expr;
+import com.craftinginterpreters.lox.ExprWalker;
 
-public class AstPrinter implements Expr.Visitor<String> {
+import java.io.IOException;
+import java.io.UncheckedIOException;
 
-    public String print(Expr expr) {
-        return expr.accept(this);
-    }
+/**
+ * Prints the AST in prefix form, e.g. `(* (- 123) (group 45.67))`.
+ * The nodes are written straight into one Appendable while walking
+ * the tree, so the time and the memory only grow with the size of the
+ * output. Shared nodes (see HashConsingFactory) are printed every time
+ * they appear, as the output is the same than for a tree.
+ *
+ * The tree is walked with the ExprWalker, so it does not matter how
+ * deep it is.
+ */
+public class AstPrinter implements ExprWalker.Listener {
 
-    @Override
-    public String visitBinaryExpr(Expr.Binary expr) {
-        return parenthesize(expr.operator.lexeme,
-                expr.left, expr.right);
-    }
+    private Output out;
 
-    @Override
-    public String visitConditionalExpr(Expr.Conditional expr) {
-        StringBuilder sb = new StringBuilder();
-        sb.append(parenthesize("condition:", expr.condition));
-        sb.append(" ? ");
-        sb.append(parenthesize("true:", expr.true_statement));
-        sb.append(" : ");
-        sb.append(parenthesize("false:", expr.false_statement));
-        return sb.toString();
+    /**
+     * @param expr expression to print
+     * @return the expression as a string
+     */
+    public String print(Expr expr) {
+        StringBuilder builder = new StringBuilder();
+        try {
+            print(expr, builder);
+        } catch (IOException e) {
+            // a StringBuilder does not throw
+            throw new UncheckedIOException(e);
+        }
+        return builder.toString();
     }
 
-    @Override
-    public String visitGroupingExpr(Expr.Grouping expr) {
-        return parenthesize("group", expr.expression);
+    /**
+     * Print the expression into an Appendable, e.g. a Writer of a file.
+     *
+     * @param expr expression to print
+     * @param out where it is written
+     * @throws IOException if out fails
+     */
+    public void print(Expr expr, Appendable out) throws IOException {
+        this.out = new Output(out);
+        try {
+            ExprWalker.walk(expr, this);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            this.out = null;
+        }
     }
 
     @Override
-    public String visitLiteralExpr(Expr.Literal expr) {
-        if (expr.value == null) return "nil";
-        return expr.value.toString();
+    public void enter(Expr expr) {
+        if (expr instanceof Expr.Binary) {
+            out.append('(').append(((Expr.Binary) expr).operator.lexeme);
+        } else if (expr instanceof Expr.Conditional) {
+            out.append("(condition:");
+        } else if (expr instanceof Expr.Grouping) {
+            out.append("(group");
+        } else if (expr instanceof Expr.Unary) {
+            out.append('(').append(((Expr.Unary) expr).operator.lexeme);
+        } else if (expr instanceof Expr.Literal) {
+            Object value = ((Expr.Literal) expr).value;
+            out.append(value == null ? "nil" : value.toString());
+        } else {
+            out.append(((Expr.Variable) expr).name.lexeme);
+        }
     }
 
     @Override
-    public String visitUnaryExpr(Expr.Unary expr) {
-        return parenthesize(expr.operator.lexeme, expr.right);
+    public void child(Expr expr, int index) {
+        // the branches of a conditional are parenthesized on their own
+        if (expr instanceof Expr.Conditional && index == 1) out.append(") ? (true:");
+        else if (expr instanceof Expr.Conditional && index == 2) out.append(") : (false:");
+        out.append(' ');
     }
 
-    private String parenthesize(String name, Expr... exprs) {
-        StringBuilder builder = new StringBuilder();
-
-        builder.append("(").append(name);
-        for (Expr expr : exprs) {
-            builder.append(" ");
-            builder.append(expr.accept(this));
-        }
-        builder.append(")");
-
-        return builder.toString();
+    @Override
+    public void exit(Expr expr) {
+        if (!(expr instanceof Expr.Literal || expr instanceof Expr.Variable)) out.append(')');
     }
 }
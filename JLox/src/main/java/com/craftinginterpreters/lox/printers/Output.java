@@ -0,0 +1,35 @@
+package com.craftinginterpreters.lox.printers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Appendable where the printers write. The visitors cannot throw an
+ * IOException, so it goes through them as an UncheckedIOException and
+ * `print` throws the original one again.
+ */
+final class Output {
+    private final Appendable out;
+
+    Output(Appendable out) {
+        this.out = out;
+    }
+
+    Output append(CharSequence text) {
+        try {
+            out.append(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return this;
+    }
+
+    Output append(char c) {
+        try {
+            out.append(c);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return this;
+    }
+}
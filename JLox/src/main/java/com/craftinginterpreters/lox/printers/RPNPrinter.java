@@ -1,49 +1,81 @@
 package com.craftinginterpreters.lox.printers;
 
 import com.craftinginterpreters.lox.Expr;
+import com.craftinginterpreters.lox.ExprWalker;
 
-public class RPNPrinter implements Expr.Visitor<String> {
+import java.io.IOException;
+import java.io.UncheckedIOException;
 
-    public String print(Expr expr) {
-        return expr.accept(this);
-    }
+/**
+ * Prints the AST in Reverse Polish Notation, the operands and then
+ * their operator, e.g. `1 2 + 4 3 - *`. A conditional is its
+ * condition, its two branches and `?:`. Like the AstPrinter, it
+ * writes straight into one Appendable while walking the tree with the
+ * ExprWalker.
+ */
+public class RPNPrinter implements ExprWalker.Listener {
 
-    @Override
-    public String visitBinaryExpr(Expr.Binary expr) {
-        return generateRPN(expr.operator.lexeme, expr.left, expr.right);
-    }
+    private Output out;
 
-    @Override
-    public String visitConditionalExpr(Expr.Conditional expr) {
-        return "";
+    /**
+     * @param expr expression to print
+     * @return the expression as a string
+     */
+    public String print(Expr expr) {
+        StringBuilder builder = new StringBuilder();
+        try {
+            print(expr, builder);
+        } catch (IOException e) {
+            // a StringBuilder does not throw
+            throw new UncheckedIOException(e);
+        }
+        return builder.toString();
     }
 
-    @Override
-    public String visitGroupingExpr(Expr.Grouping expr) {
-        return generateRPN("", expr.expression);
+    /**
+     * Print the expression into an Appendable, e.g. a Writer of a file.
+     *
+     * @param expr expression to print
+     * @param out where it is written
+     * @throws IOException if out fails
+     */
+    public void print(Expr expr, Appendable out) throws IOException {
+        this.out = new Output(out);
+        try {
+            ExprWalker.walk(expr, this);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            this.out = null;
+        }
     }
 
     @Override
-    public String visitLiteralExpr(Expr.Literal expr) {
-        if (expr.value == null) return "nil";
-        return expr.value.toString();
+    public void enter(Expr expr) {
+        if (expr instanceof Expr.Literal) {
+            Object value = ((Expr.Literal) expr).value;
+            out.append(value == null ? "nil" : value.toString());
+        } else if (expr instanceof Expr.Variable) {
+            out.append(((Expr.Variable) expr).name.lexeme);
+        }
     }
 
     @Override
-    public String visitUnaryExpr(Expr.Unary expr) {
-        return generateRPN(expr.operator.lexeme, expr.right);
+    public void child(Expr expr, int index) {
+        // every operand is followed by a space
+        if (index > 0) out.append(' ');
     }
 
-    private String generateRPN(String op, Expr... exprs) {
-        StringBuilder builder = new StringBuilder();
-
-        for (Expr expr : exprs) {
-            builder.append(expr.accept(this));
-            builder.append(" ");
+    @Override
+    public void exit(Expr expr) {
+        if (expr instanceof Expr.Binary) {
+            out.append(' ').append(((Expr.Binary) expr).operator.lexeme);
+        } else if (expr instanceof Expr.Conditional) {
+            out.append(" ?:");
+        } else if (expr instanceof Expr.Grouping) {
+            out.append(' ');
+        } else if (expr instanceof Expr.Unary) {
+            out.append(' ').append(((Expr.Unary) expr).operator.lexeme);
         }
-
-        builder.append(op);
-
-        return builder.toString();
     }
 }
@@ -0,0 +1,47 @@
+package com.craftinginterpreters.lox;
+
+import com.craftinginterpreters.lox.printers.AstPrinter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static com.craftinginterpreters.lox.IterativeParserTest.nested;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * An AST stored in the cache must load back as the same tree, also
+ * when it is deeper than the stack of the thread and when it has
+ * shared nodes.
+ */
+class AstCacheTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void storesDeepTrees() {
+        assertRoundTrip(nested(1_000_000), false);
+    }
+
+    @Test
+    void storesSharedNodesOnce() {
+        assertRoundTrip("(1 + 2) * (1 + 2) - (1 + 2) * (1 + 2) == x ? \"a\" : -(1 + 2) / 3.5, true, nil", true);
+    }
+
+    private void assertRoundTrip(String program, boolean hashCons) {
+        Parser parser = new IterativeParser(new Scanner(program));
+        if (hashCons) parser.setFactory(new HashConsingFactory());
+        Expr expr = parser.parse();
+        assertNotNull(expr);
+
+        AstCache cache = new AstCache(directory);
+        byte[] key = cache.key(ByteBuffer.wrap(program.getBytes(StandardCharsets.UTF_8)));
+        cache.store(key, expr);
+        Expr loaded = cache.load(key, new SymbolTable());
+        assertNotNull(loaded);
+        assertEquals(new AstPrinter().print(expr), new AstPrinter().print(loaded));
+    }
+}
@@ -0,0 +1,227 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The BatchEvaluator must give the results of the Interpreter row by
+ * row, bit for bit, and throw the same RuntimeError at the first row
+ * that fails. All the NaN are the same NaN for Lox, their sign depends
+ * on the order the CPU gets the operands, so they are compared with
+ * doubleToLongBits like Double.equals does, and 0 is still not -0. Every formula runs with the ScalarKernels, and with the
+ * VectorKernels when the Vector API module was added to the JVM.
+ */
+class BatchEvaluatorTest {
+    private static final String[] COLUMNS = {"x", "y", "z"};
+    // values of the columns, the rows are all their combinations
+    private static final double[] VALUES = {
+            0.0, -0.0, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+            1.0, -1.0, 2.5, Double.MIN_VALUE, Double.MAX_VALUE
+    };
+    // after this many failed rows a formula is not checked anymore
+    private static final int MAX_ERRORS = 50;
+    // in the results the evaluator did not write, no operation gives this NaN
+    private static final double UNWRITTEN = Double.longBitsToDouble(0x7ff00000deadbeefL);
+
+    private static List<BatchKernels> kernels() {
+        List<BatchKernels> kernels = new ArrayList<>();
+        kernels.add(new ScalarKernels());
+        BatchKernels loaded = BatchKernels.load();
+        if (!(loaded instanceof ScalarKernels)) kernels.add(loaded);
+        return kernels;
+    }
+
+    @ParameterizedTest
+    @MethodSource("kernels")
+    void sameResultsAsInterpreter(BatchKernels kernels) {
+        String[] formulas = {
+                "x",
+                "-x",
+                "x + y * z",
+                "x - y - z",
+                "x * y",
+                "x / y",
+                "(x, y)",
+                "x == y ? 1 : 0",
+                "x != y ? 1 : 0",
+                "x < y ? x : y",
+                "x >= y ? z : -z",
+                "!(x <= y) ? 1 : 2",
+                "!x ? 1 : 2",
+                "x ? y : z",
+                "true ? x : y",
+                "(x > 0) == (y > 0) ? 1 : 0",
+                "(x > 0) != true ? 1 : 0",
+                "x == x ? y : z"
+        };
+        for (String formula : formulas) {
+            assertSameResults(formula, kernels);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("kernels")
+    void divisionErrorsInBranches(BatchKernels kernels) {
+        String[] formulas = {
+                "x > 0 ? 1 / y : 2",
+                "x > 0 ? 2 : 1 /\n y",
+                "x == y ? 1 / (x - y) : x / y",
+                "(x < y ? 1 / z : 0) + (y > z ? 0 : 1 / x)",
+                "(x < y ? 1 / z > 0 : y > z) ? 1 : 2",
+                "((x ? 1 / y : 0) > 1 ? x / z : y / x) ? 3 : 4",
+                "(1 / x, y)",
+                "!(1 /\n\n x) ? 1 : 2",
+                "x != x ? 1 / 0 : z"
+        };
+        for (String formula : formulas) {
+            assertSameResults(formula, kernels);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("kernels")
+    void sameResultsForRandomFormulas(BatchKernels kernels) {
+        Random random = new Random(22);
+        for (int i = 0; i < 300; i++) {
+            assertSameResults(number(random, 4), kernels);
+        }
+    }
+
+    @Test
+    void rejectsDuplicateColumns() {
+        Expr expr = parse("x + y");
+        assertThrows(IllegalArgumentException.class, () -> new BatchEvaluator(expr, "x", "y", "x"));
+    }
+
+    /**
+     * Evaluate the formula over all the rows, and after a row fails go
+     * on from the next one, so every row is checked.
+     */
+    private static void assertSameResults(String formula, BatchKernels kernels) {
+        Expr expr = parse(formula);
+        BatchEvaluator evaluator = new BatchEvaluator(expr, kernels, COLUMNS);
+        Environment environment = new Environment();
+        Interpreter interpreter = new Interpreter(environment);
+
+        double[][] columns = rows();
+        int rows = columns[0].length;
+        int start = 0;
+        for (int errors = 0; start < rows && errors < MAX_ERRORS; errors++) {
+            double[][] slice = new double[COLUMNS.length][];
+            for (int i = 0; i < COLUMNS.length; i++) slice[i] = Arrays.copyOfRange(columns[i], start, rows);
+            double[] results = new double[rows - start];
+            Arrays.fill(results, UNWRITTEN);
+
+            RuntimeError error = null;
+            try {
+                evaluator.evaluate(slice, results);
+            } catch (RuntimeError e) {
+                error = e;
+            }
+
+            int row = start;
+            for (; row < rows; row++) {
+                for (int i = 0; i < COLUMNS.length; i++) environment.define(COLUMNS[i], columns[i][row]);
+                Object expected;
+                try {
+                    expected = interpreter.evaluate(expr);
+                } catch (RuntimeError e) {
+                    int failed = row;
+                    assertNotNull(error, () -> "no error at row " + failed + " of " + formula);
+                    assertEquals(e.getMessage(), error.getMessage(), formula);
+                    assertEquals(e.line, error.line, formula);
+                    break;
+                }
+                int index = row;
+                double result = results[row - start];
+                assertNotEquals(Double.doubleToRawLongBits(UNWRITTEN), Double.doubleToRawLongBits(result),
+                        () -> "row " + index + " of " + formula + " has no result");
+                assertEquals(Double.doubleToLongBits((double) expected), Double.doubleToLongBits(result),
+                        () -> "row " + index + " of " + formula + ": " + Arrays.toString(row(columns, index)));
+            }
+            if (row == rows) assertNull(error, formula);
+            start = row + 1;
+        }
+    }
+
+    /**
+     * @return the columns, with every combination of VALUES in a row,
+     * more rows than one block
+     */
+    private static double[][] rows() {
+        int rows = (int) Math.pow(VALUES.length, COLUMNS.length);
+        double[][] columns = new double[COLUMNS.length][rows];
+        for (int row = 0; row < rows; row++) {
+            int combination = row;
+            for (int i = 0; i < COLUMNS.length; i++) {
+                columns[i][row] = VALUES[combination % VALUES.length];
+                combination /= VALUES.length;
+            }
+        }
+        return columns;
+    }
+
+    private static double[] row(double[][] columns, int row) {
+        double[] values = new double[columns.length];
+        for (int i = 0; i < columns.length; i++) values[i] = columns[i][row];
+        return values;
+    }
+
+    private static Expr parse(String formula) {
+        Expr expr = new Parser(new Scanner(formula)).parse();
+        assertNotNull(expr, formula);
+        return expr;
+    }
+
+    /**
+     * @return a random formula that gives a number
+     */
+    private static String number(Random random, int depth) {
+        if (depth == 0 || random.nextInt(4) == 0) {
+            switch (random.nextInt(5)) {
+                case 0: return "0";
+                case 1: return "2.5";
+                default: return COLUMNS[random.nextInt(COLUMNS.length)];
+            }
+        }
+        switch (random.nextInt(8)) {
+            case 0: return "-" + number(random, depth - 1);
+            case 1: return "(" + number(random, depth - 1) + ")";
+            case 2: return "(" + bool(random, depth - 1) + " ? " + number(random, depth - 1)
+                    + " : " + number(random, depth - 1) + ")";
+            case 3: return "(" + number(random, depth - 1) + " ? " + number(random, depth - 1)
+                    + " : " + number(random, depth - 1) + ")";
+            case 4: return "(" + bool(random, depth - 1) + ", " + number(random, depth - 1) + ")";
+            default:
+                return number(random, depth - 1) + " " + "+-*/".charAt(random.nextInt(4))
+                        + (random.nextInt(5) == 0 ? "\n" : " ") + number(random, depth - 1);
+        }
+    }
+
+    /**
+     * @return a random formula that gives a boolean
+     */
+    private static String bool(Random random, int depth) {
+        if (depth == 0 || random.nextInt(4) == 0) return random.nextBoolean() ? "true" : "false";
+        switch (random.nextInt(6)) {
+            case 0: return "!" + bool(random, depth - 1);
+            case 1: return "!(" + number(random, depth - 1) + ")";
+            case 2: return "(" + bool(random, depth - 1) + (random.nextBoolean() ? " == " : " != ")
+                    + bool(random, depth - 1) + ")";
+            case 3: return "(" + bool(random, depth - 1) + " ? " + bool(random, depth - 1)
+                    + " : " + bool(random, depth - 1) + ")";
+            default:
+                String[] comparisons = {" == ", " != ", " < ", " <= ", " > ", " >= "};
+                return "(" + number(random, depth - 1) + comparisons[random.nextInt(comparisons.length)]
+                        + number(random, depth - 1) + ")";
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The DfaScanner must produce the same tokens and errors than the
+ * Scanner, we check it over the programs in mycode and over random
+ * programs, read both from a String and from UTF-8 bytes.
+ */
+class DfaScannerTest {
+
+    private static Stream<Path> programs() throws IOException {
+        return Files.list(Paths.get("../mycode"))
+                .filter(path -> path.toString().endsWith(".lox"))
+                .sorted();
+    }
+
+    @ParameterizedTest
+    @MethodSource("programs")
+    void sameTokensForPrograms(Path path) throws IOException {
+        byte[] bytes = Files.readAllBytes(path);
+        assertSameTokens(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void sameTokensForRandomPrograms() {
+        Random random = new Random(1234);
+        for (int i = 0; i < 2000; i++) {
+            assertSameTokens(RandomPrograms.program(random));
+        }
+    }
+
+    @Test
+    void sameTokensForUnfinishedInput() {
+        assertSameTokens("print \"never closed");
+        assertSameTokens("1 + \"two\nlines");
+        assertSameTokens("1 /* never closed");
+        assertSameTokens("/* two\nlines *");
+        assertSameTokens("1 + \u00e9 \u20ac");
+        assertSameTokens("12.");
+    }
+
+    private static void assertSameTokens(String program) {
+        Source text = new StringSource(program);
+        assertSameTokens(program, text, text);
+        ByteBuffer bytes = ByteBuffer.wrap(program.getBytes(StandardCharsets.UTF_8));
+        assertSameTokens(program, new MappedSource(bytes), new MappedSource(bytes));
+    }
+
+    private static void assertSameTokens(String program, Source forScanner, Source forDfa) {
+        List<String> expectedErrors = new ArrayList<>();
+        Scanner scanner = new Scanner(forScanner, new SymbolTable());
+        scanner.setErrorReporter((line, message) -> expectedErrors.add(line + ": " + message));
+        List<Token> expected = scanner.scanTokens();
+
+        List<String> errors = new ArrayList<>();
+        DfaScanner dfa = new DfaScanner(forDfa, new SymbolTable());
+        dfa.setErrorReporter((line, message) -> errors.add(line + ": " + message));
+        List<Token> tokens = dfa.scanTokens();
+
+        RandomPrograms.assertSameTokens(expected, tokens, program);
+        assertEquals(expectedErrors, errors, () -> "errors of " + program);
+    }
+}
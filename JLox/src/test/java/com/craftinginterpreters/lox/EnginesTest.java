@@ -0,0 +1,229 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Every engine must give the same values than the Interpreter, and
+ * the same runtime errors at the same lines. The engines that change
+ * while running (the specializing nodes and the tiered compiler) run
+ * each expression twice.
+ *
+ * The JvmCompiler does not compile variables, the tiered interpreter
+ * runs those expressions in the Interpreter, so the expressions with
+ * only literals check the compiled code.
+ */
+class EnginesTest {
+
+    // pieces the random expressions are made of
+    private static final String[] ATOMS = {
+            "0", "1", "2.5", "3", "\"\"", "\"ab\"", "\"c\"", "true", "false", "nil",
+            "zero", "minus_zero", "nan", "inf", "minus_inf", "one", "text", "yes", "no", "nothing",
+            "undefined"
+    };
+    // 0, -0, inf and NaN without variables, a long number is inf
+    private static final String INF = "9".repeat(400);
+    private static final String[] LITERALS = {
+            "0", "1", "2.5", "3", "(-0)", INF, "(" + INF + " - " + INF + ")",
+            "\"\"", "\"ab\"", "true", "false", "nil"
+    };
+    private static final String[] BINARIES = {
+            "+", "-", "*", "/", "==", "!=", "<", "<=", ">", ">="
+    };
+
+    private final Environment environment = new Environment();
+    private final Interpreter interpreter = new Interpreter(environment);
+    private final VM vm = new VM(environment);
+    private final SpecializingInterpreter specializing = new SpecializingInterpreter(environment);
+    private final ClosureCompiler closures = new ClosureCompiler(environment);
+    private final TieredInterpreter tiered = new TieredInterpreter(1, environment);
+
+    EnginesTest() {
+        environment.define("zero", 0.0);
+        environment.define("minus_zero", -0.0);
+        environment.define("nan", Double.NaN);
+        environment.define("inf", Double.POSITIVE_INFINITY);
+        environment.define("minus_inf", Double.NEGATIVE_INFINITY);
+        environment.define("one", 1.0);
+        environment.define("text", "ab");
+        environment.define("yes", true);
+        environment.define("no", false);
+        environment.define("nothing", null);
+    }
+
+    @Test
+    void sameResultsAsInterpreter() {
+        String[] sources = {
+                "1 + 2 * 3 - 4 / 8",
+                "\"a\" + \"b\" + text",
+                "1 + \"a\"",
+                "\"a\" - \"b\"",
+                "-\"a\"",
+                "!nil == !0",
+                "1 / zero",
+                "1 / minus_zero",
+                "zero / one",
+                "minus_zero * one",
+                "-zero",
+                "zero == minus_zero",
+                "nan == nan",
+                "nan != nan",
+                "nan < 1",
+                "nan >= nan",
+                "inf - inf",
+                "inf + minus_inf == nan",
+                "minus_inf < inf",
+                "nothing == nil",
+                "nothing == false",
+                "text == \"ab\"",
+                "1 == \"1\"",
+                "yes ? 1 : 2",
+                "nothing ? 1 : \"no\"",
+                "zero ? \"numbers are truthy\" : 0",
+                "no ? 1 / zero : 2",
+                "yes ? 1 / zero : 2",
+                "(yes ? one : zero) ? 1 :\n 2 / zero",
+                "1, 2, text",
+                "1 / zero, 2",
+                "undefined",
+                "1 +\n undefined",
+                "1 +\n\n yes",
+                "-\n\n\nno",
+                "1 < \"a\"",
+                "\"a\" < \"b\""
+        };
+        for (String source : sources) {
+            assertSameResults(source);
+        }
+    }
+
+    @Test
+    void sameResultsWhenCompiled() {
+        String[] sources = {
+                "1 / 0",
+                "1 / -0",
+                "-0 * 1",
+                "-0 == 0",
+                INF + " - " + INF + " == " + INF + " - " + INF,
+                "-" + INF + " < " + INF,
+                "false ? 1 / 0 : 2",
+                "true ? 1 /\n 0 : 2",
+                "1 +\n\n \"a\"",
+                "-\n\"a\"",
+                "\"a\" + \"b\" == \"ab\""
+        };
+        for (String source : sources) {
+            assertCompiled(assertSameResults(source), source);
+        }
+        Random random = new Random(19);
+        for (int i = 0; i < 3000; i++) {
+            String source = expression(random, 5, LITERALS);
+            assertCompiled(assertSameResults(source), source);
+        }
+    }
+
+    @Test
+    void sameResultsForRandomExpressions() {
+        Random random = new Random(18);
+        for (int i = 0; i < 3000; i++) {
+            assertSameResults(expression(random, 5, ATOMS));
+        }
+    }
+
+    private void assertCompiled(Expr expr, String source) {
+        assertTrue(tiered.entry(expr).isCompiled(),
+                () -> "tiered did not compile " + source + ": " + tiered.entry(expr).failure());
+    }
+
+    /**
+     * Run the source in every engine.
+     *
+     * @return the parsed expression
+     */
+    private Expr assertSameResults(String source) {
+        Expr expr = new Parser(new Scanner(source)).parse();
+        assertNotNull(expr, source);
+
+        Object expected = outcome(() -> interpreter.evaluate(expr));
+
+        assertSameOutcome(expected, outcome(() -> vm.run(new Compiler().compile(expr))), "vm", source);
+
+        Node.Root root = specializing.prepare(expr);
+        assertSameOutcome(expected, outcome(() -> specializing.execute(root)), "specialize", source);
+        assertSameOutcome(expected, outcome(() -> specializing.execute(root)), "specialize again", source);
+
+        ClosureCompiler.Evaluator evaluator = closures.compile(expr);
+        assertSameOutcome(expected, outcome(evaluator::evaluate), "closure", source);
+
+        assertSameOutcome(expected, outcome(() -> tiered.evaluate(expr)), "tiered", source);
+        assertSameOutcome(expected, outcome(() -> tiered.evaluate(expr)), "tiered again", source);
+        return expr;
+    }
+
+    /**
+     * @return the value of the expression, or the RuntimeError it threw
+     */
+    private static Object outcome(Supplier<Object> run) {
+        try {
+            return run.get();
+        } catch (RuntimeError error) {
+            return error;
+        }
+    }
+
+    private static void assertSameOutcome(Object expected, Object got, String engine, String source) {
+        Supplier<String> where = () -> engine + " running " + source;
+        if (expected instanceof RuntimeError) {
+            assertInstanceOf(RuntimeError.class, got, where);
+            RuntimeError want = (RuntimeError) expected;
+            RuntimeError error = (RuntimeError) got;
+            assertEquals(want.getMessage(), error.getMessage(), where);
+            assertEquals(want.line, error.line, where);
+        } else if (expected instanceof Double) {
+            assertInstanceOf(Double.class, got, where);
+            // 0 is not -0, all the NaN are the same, their sign depends
+            // on the order the CPU gets the operands
+            assertEquals(Double.doubleToLongBits((Double) expected),
+                    Double.doubleToLongBits((Double) got), where);
+        } else {
+            assertFalse(got instanceof RuntimeError,
+                    () -> where.get() + ": " + ((RuntimeError) got).getMessage());
+            assertEquals(expected, got, where);
+        }
+    }
+
+    /**
+     * A random expression, with new lines between some tokens so the
+     * errors happen at different lines.
+     *
+     * @param depth maximum depth of the tree
+     * @param atoms leaves of the tree
+     * @return the source of the expression
+     */
+    private static String expression(Random random, int depth, String[] atoms) {
+        String space = random.nextInt(6) == 0 ? "\n" : " ";
+        if (depth == 0 || random.nextInt(4) == 0) {
+            return atoms[random.nextInt(atoms.length)];
+        }
+        switch (random.nextInt(6)) {
+            case 0:
+                return (random.nextBoolean() ? "-" : "!") + space + expression(random, depth - 1, atoms);
+            case 1:
+                return "(" + expression(random, depth - 1, atoms)
+                        + space + "?" + space + expression(random, depth - 1, atoms)
+                        + space + ":" + space + expression(random, depth - 1, atoms) + ")";
+            case 2:
+                return "(" + expression(random, depth - 1, atoms)
+                        + "," + space + expression(random, depth - 1, atoms) + ")";
+            case 3:
+                return "(" + expression(random, depth - 1, atoms) + ")";
+            default:
+                return expression(random, depth - 1, atoms) + space + BINARIES[random.nextInt(BINARIES.length)]
+                        + space + expression(random, depth - 1, atoms);
+        }
+    }
+}
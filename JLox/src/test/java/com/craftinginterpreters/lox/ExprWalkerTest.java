@@ -0,0 +1,193 @@
+package com.craftinginterpreters.lox;
+
+import com.craftinginterpreters.lox.printers.AstPrinter;
+import com.craftinginterpreters.lox.printers.RPNPrinter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.craftinginterpreters.lox.IterativeParserTest.chain;
+import static com.craftinginterpreters.lox.IterativeParserTest.nested;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The ExprWalker must visit the nodes in the same order than a
+ * recursive Expr.Visitor, and walk, fold and print trees that are
+ * too deep for one. The tests run with the default stack.
+ */
+class ExprWalkerTest {
+    private static final int DEEP = 1_000_000;
+
+    private static final String[] SHALLOW = {
+            "1 + 2 * (3 - -x) / 4 == y ? !z : 5 < 6, 7",
+            "a ? (b ? 1 : 2) : c ? 3 : 4",
+            nested(200),
+            chain(200, " * "),
+    };
+
+    @AfterEach
+    void clearErrors() {
+        Lox.hadError = false;
+    }
+
+    @Test
+    void walksLikeRecursion() {
+        for (String source : SHALLOW) {
+            Expr expr = parse(source);
+            List<String> expected = new ArrayList<>();
+            expr.accept(new Recorder(expected));
+
+            List<String> events = new ArrayList<>();
+            ExprWalker.walk(expr, new ExprWalker.Listener() {
+                @Override
+                public void enter(Expr expr) {
+                    events.add("enter " + name(expr));
+                }
+
+                @Override
+                public void child(Expr expr, int index) {
+                    events.add("child " + index);
+                }
+
+                @Override
+                public void exit(Expr expr) {
+                    events.add("exit " + name(expr));
+                }
+            });
+            assertEquals(expected, events, source);
+        }
+    }
+
+    @Test
+    void foldsLikeRecursion() {
+        for (String source : SHALLOW) {
+            Expr expr = parse(source);
+            assertEquals(expr.accept(new Recorder(new ArrayList<>())), ExprWalker.fold(expr, new Depth()), source);
+        }
+    }
+
+    @Test
+    void walksDeepTrees() {
+        int[] nodes = new int[1];
+        ExprWalker.walk(parse(nested(DEEP)), expr -> nodes[0]++);
+        assertEquals(DEEP + 1, nodes[0]);
+
+        nodes[0] = 0;
+        ExprWalker.walk(parse(chain(DEEP, " + ")), expr -> nodes[0]++);
+        assertEquals(2 * DEEP - 1, nodes[0]);
+    }
+
+    @Test
+    void foldsDeepTrees() {
+        assertEquals(DEEP + 1, ExprWalker.fold(parse(nested(DEEP)), new Depth()));
+        assertEquals(DEEP, ExprWalker.fold(parse(chain(DEEP, " + ")), new Depth()));
+    }
+
+    @Test
+    void printsDeepTrees() {
+        Expr groupings = parse(nested(DEEP));
+        assertEquals("(group ".repeat(DEEP) + "1.0" + ")".repeat(DEEP), new AstPrinter().print(groupings));
+        assertEquals("1.0" + " ".repeat(DEEP), new RPNPrinter().print(groupings));
+
+        Expr sums = parse(chain(DEEP, " + "));
+        assertEquals("(+ ".repeat(DEEP - 1) + "1.0" + " 1.0)".repeat(DEEP - 1), new AstPrinter().print(sums));
+        assertEquals("1.0" + " 1.0 +".repeat(DEEP - 1), new RPNPrinter().print(sums));
+    }
+
+    private static Expr parse(String source) {
+        Expr expr = new IterativeParser(new Scanner(source)).parse();
+        assertNotNull(expr, source);
+        return expr;
+    }
+
+    private static String name(Expr expr) {
+        return expr.getClass().getSimpleName();
+    }
+
+    /**
+     * Recursive reference: records the events the ExprWalker should
+     * give, and returns the depth of the tree.
+     */
+    private static final class Recorder implements Expr.Visitor<Integer> {
+        private final List<String> events;
+
+        Recorder(List<String> events) {
+            this.events = events;
+        }
+
+        private int children(Expr expr, Expr... children) {
+            events.add("enter " + name(expr));
+            int depth = 0;
+            for (int i = 0; i < children.length; i++) {
+                events.add("child " + i);
+                depth = Math.max(depth, children[i].accept(this));
+            }
+            events.add("exit " + name(expr));
+            return depth + 1;
+        }
+
+        @Override
+        public Integer visitBinaryExpr(Expr.Binary expr) {
+            return children(expr, expr.left, expr.right);
+        }
+
+        @Override
+        public Integer visitConditionalExpr(Expr.Conditional expr) {
+            return children(expr, expr.condition, expr.true_statement, expr.false_statement);
+        }
+
+        @Override
+        public Integer visitGroupingExpr(Expr.Grouping expr) {
+            return children(expr, expr.expression);
+        }
+
+        @Override
+        public Integer visitLiteralExpr(Expr.Literal expr) {
+            return children(expr);
+        }
+
+        @Override
+        public Integer visitUnaryExpr(Expr.Unary expr) {
+            return children(expr, expr.right);
+        }
+
+        @Override
+        public Integer visitVariableExpr(Expr.Variable expr) {
+            return children(expr);
+        }
+    }
+
+    private static final class Depth implements ExprWalker.Folder<Integer> {
+        @Override
+        public Integer binary(Expr.Binary expr, Integer left, Integer right) {
+            return Math.max(left, right) + 1;
+        }
+
+        @Override
+        public Integer conditional(Expr.Conditional expr, Integer condition, Integer whenTrue, Integer whenFalse) {
+            return Math.max(condition, Math.max(whenTrue, whenFalse)) + 1;
+        }
+
+        @Override
+        public Integer grouping(Expr.Grouping expr, Integer expression) {
+            return expression + 1;
+        }
+
+        @Override
+        public Integer literal(Expr.Literal expr) {
+            return 1;
+        }
+
+        @Override
+        public Integer unary(Expr.Unary expr, Integer right) {
+            return right + 1;
+        }
+
+        @Override
+        public Integer variable(Expr.Variable expr) {
+            return 1;
+        }
+    }
+}
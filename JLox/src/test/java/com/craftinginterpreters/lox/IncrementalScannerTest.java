@@ -0,0 +1,69 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The tokens after IncrementalScanner.edit must be the ones of scanning
+ * the edited source again, we apply series of random edits to random
+ * programs. The edits open and close strings and block comments, so
+ * the state of the scanner changes after the edited text.
+ */
+class IncrementalScannerTest {
+
+    // text inserted besides the pieces of the programs
+    private static final String[] INSERTS = {
+            "", "\"", "/*", "*/", "\n", "//", "\"\n", "*/ \"", "x", "12"
+    };
+
+    @Test
+    void editsGiveTheTokensOfAFullScan() {
+        Random random = new Random(4321);
+        RandomPrograms.errors(() -> {
+            for (int i = 0; i < 500; i++) {
+                String program = RandomPrograms.program(random, random.nextInt(60));
+                TokenBuffer tokens = new Scanner(new StringSource(program)).scanBuffer();
+                for (int edit = 0; edit < 10; edit++) {
+                    int offset = random.nextInt(program.length() + 1);
+                    int removed = random.nextInt(Math.min(8, program.length() - offset) + 1);
+                    String inserted = random.nextBoolean() ? RandomPrograms.piece(random)
+                                                           : INSERTS[random.nextInt(INSERTS.length)];
+                    program = program.substring(0, offset) + inserted + program.substring(offset + removed);
+
+                    tokens = IncrementalScanner.edit(tokens, offset, removed, inserted);
+                    assertSameTokens(program, tokens);
+                }
+            }
+        });
+    }
+
+    @Test
+    void editsAcrossMultilineStringsAndComments() {
+        RandomPrograms.errors(() -> {
+            String program = "a \"one\ntwo\" b /* three\nfour */ c\nd";
+            TokenBuffer tokens = new Scanner(new StringSource(program)).scanBuffer();
+
+            // close the string early, the rest of it becomes code
+            tokens = IncrementalScanner.edit(tokens, 6, 0, "\"");
+            assertSameTokens("a \"one\"\ntwo\" b /* three\nfour */ c\nd", tokens);
+            // remove the end of the comment, it goes until the end
+            tokens = IncrementalScanner.edit(tokens, 29, 2, "");
+            assertSameTokens("a \"one\"\ntwo\" b /* three\nfour  c\nd", tokens);
+            // a new line before everything moves all the lines
+            tokens = IncrementalScanner.edit(tokens, 0, 0, "\n");
+            assertSameTokens("\na \"one\"\ntwo\" b /* three\nfour  c\nd", tokens);
+        });
+    }
+
+    private static void assertSameTokens(String program, TokenBuffer tokens) {
+        TokenBuffer expected = new Scanner(new StringSource(program)).scanBuffer();
+        RandomPrograms.assertSameTokens(RandomPrograms.tokens(expected), RandomPrograms.tokens(tokens), program);
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.start(i), tokens.start(i), "start of token " + i + " of " + program);
+            assertEquals(expected.length(i), tokens.length(i), "length of token " + i + " of " + program);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.craftinginterpreters.lox;
+
+import com.craftinginterpreters.lox.printers.AstPrinter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The IterativeParser must build the same trees than the Parser at the
+ * depths the Parser can take, and keep going at depths that overflow
+ * the stack of the thread. The tests run with the default stack.
+ */
+class IterativeParserTest {
+    private static final int DEEP = 1_000_000;
+    // the recursive Parser still takes this depth
+    private static final int SHALLOW = 500;
+
+    @AfterEach
+    void clearErrors() {
+        Lox.hadError = false;
+    }
+
+    @Test
+    void sameTreesAsParser() {
+        for (int depth = 1; depth <= SHALLOW; depth *= 5) {
+            assertSameTree(nested(depth));
+            assertSameTree(chain(depth, " + "));
+            assertSameTree(chain(depth, " - ") + " * 2");
+            assertSameTree(unaries(depth));
+            assertSameTree(conditionals(depth));
+        }
+        assertSameTree("1 + 2 * (3 - -x) / 4 == y ? !z : 5 < 6, 7");
+    }
+
+    @Test
+    void parsesDeepGroupings() {
+        Expr expr = parse(nested(DEEP));
+        for (int i = 0; i < DEEP; i++) {
+            assertInstanceOf(Expr.Grouping.class, expr);
+            expr = ((Expr.Grouping) expr).expression;
+        }
+        assertEquals(1.0, ((Expr.Literal) expr).value);
+    }
+
+    @Test
+    void parsesLongChains() {
+        // left associative, the left operand is the deep side
+        Expr expr = parse(chain(DEEP, " + "));
+        for (int i = 1; i < DEEP; i++) {
+            Expr.Binary binary = (Expr.Binary) expr;
+            assertEquals(TokenType.PLUS, binary.operator.type);
+            expr = binary.left;
+        }
+        assertEquals(1.0, ((Expr.Literal) expr).value);
+    }
+
+    @Test
+    void parsesDeepUnariesAndConditionals() {
+        Expr expr = parse(unaries(DEEP));
+        for (int i = 0; i < DEEP; i++) expr = ((Expr.Unary) expr).right;
+        assertEquals(1.0, ((Expr.Literal) expr).value);
+
+        // left associative like the binaries, the condition is the deep side
+        expr = parse(conditionals(DEEP));
+        for (int i = 0; i < DEEP; i++) expr = ((Expr.Conditional) expr).condition;
+        assertEquals("x", ((Expr.Variable) expr).name.lexeme);
+    }
+
+    @Test
+    void reportsUnclosedDeepGroupings() {
+        String source = "(".repeat(DEEP) + "1";
+        Parser parser = new IterativeParser(new Scanner(source));
+        assertNull(parser.parse());
+        assertTrue(Lox.hadError);
+    }
+
+    private static void assertSameTree(String source) {
+        Expr expected = new Parser(new Scanner(source)).parse();
+        assertNotNull(expected, source);
+        Expr expr = parse(source);
+        assertEquals(new AstPrinter().print(expected), new AstPrinter().print(expr), source);
+    }
+
+    private static Expr parse(String source) {
+        Expr expr = new IterativeParser(new Scanner(source)).parse();
+        assertNotNull(expr);
+        assertFalse(Lox.hadError);
+        return expr;
+    }
+
+    /**
+     * @return `((...(1)...))` with depth groupings
+     */
+    static String nested(int depth) {
+        return "(".repeat(depth) + "1" + ")".repeat(depth);
+    }
+
+    /**
+     * @return `1 op 1 op ... 1` with length operands
+     */
+    static String chain(int length, String operator) {
+        StringBuilder source = new StringBuilder("1");
+        for (int i = 1; i < length; i++) source.append(operator).append('1');
+        return source.toString();
+    }
+
+    private static String unaries(int depth) {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < depth; i++) source.append(i % 2 == 0 ? "- " : "!");
+        return source.append('1').toString();
+    }
+
+    private static String conditionals(int depth) {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < depth; i++) source.append("x ? ").append(i).append(" : ");
+        return source.append('0').toString();
+    }
+}
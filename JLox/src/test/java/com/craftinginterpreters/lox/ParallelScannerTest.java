@@ -0,0 +1,80 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The ParallelScanner must give the same tokens and report the same
+ * errors, in the same order, than the sequential Scanner. The programs
+ * are big enough to be split in many chunks, and some of them have
+ * most of their new lines inside strings and comments, so the chunks
+ * start inside them.
+ */
+class ParallelScannerTest {
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    @AfterAll
+    static void stopPool() {
+        POOL.shutdown();
+    }
+
+    @Test
+    void sameTokensForRandomPrograms() {
+        Random random = new Random(5678);
+        for (int i = 0; i < 4; i++) {
+            assertSameTokens(RandomPrograms.program(random, 200_000));
+        }
+    }
+
+    @Test
+    void sameTokensWhenChunksStartInStringsAndComments() {
+        StringBuilder program = new StringBuilder();
+        for (int i = 0; program.length() < 1_000_000; i++) {
+            program.append("\"a\nb\nc\" x").append(i).append(" /* d\ne\n*/ ");
+            if (i % 1000 == 0) program.append("@\n");
+        }
+        assertSameTokens(program.toString());
+        // finishing inside a string that spans many chunks
+        assertSameTokens(program + "\"" + "never closed\n".repeat(50_000));
+        assertSameTokens(program + "/*" + "never closed\n".repeat(50_000));
+    }
+
+    @Test
+    void smallProgramsAreScannedInOneChunk() {
+        Random random = new Random(8765);
+        for (int i = 0; i < 100; i++) {
+            assertSameTokens(RandomPrograms.program(random));
+        }
+    }
+
+    private static void assertSameTokens(String program) {
+        Source text = new StringSource(program);
+        assertSameTokens(program, text, program.length());
+        byte[] bytes = program.getBytes(StandardCharsets.UTF_8);
+        assertSameTokens(program, new MappedSource(ByteBuffer.wrap(bytes)), bytes.length);
+    }
+
+    private static void assertSameTokens(String program, Source source, int length) {
+        List<Token> expected = new ArrayList<>();
+        String expectedErrors = RandomPrograms.errors(
+                () -> expected.addAll(new Scanner(source, new SymbolTable()).scanTokens()));
+
+        List<Token> tokens = new ArrayList<>();
+        String errors = RandomPrograms.errors(() -> tokens.addAll(
+                RandomPrograms.tokens(ParallelScanner.scan(source, length, new SymbolTable(), POOL))));
+
+        // the programs are too big for the messages
+        String name = "program of " + length + " characters";
+        RandomPrograms.assertSameTokens(expected, tokens, name);
+        assertEquals(expectedErrors, errors, "errors of " + name);
+    }
+}
@@ -0,0 +1,86 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The PipelinedScanner must give the same tokens than the scanner it
+ * runs, and print every error right before the same token the scanner
+ * would print it, so the messages of the parser keep their place.
+ * The big programs go around the ring buffer many times.
+ */
+class PipelinedScannerTest {
+
+    @Test
+    void sameTokensAndErrorsForRandomPrograms() {
+        Random random = new Random(2468);
+        for (int i = 0; i < 300; i++) {
+            assertSameTokens(RandomPrograms.program(random));
+        }
+    }
+
+    @Test
+    void sameTokensAndErrorsForBigPrograms() {
+        Random random = new Random(1357);
+        for (int i = 0; i < 3; i++) {
+            assertSameTokens(RandomPrograms.program(random, 100_000));
+        }
+    }
+
+    @Test
+    void pipesTheDfaScanner() {
+        Random random = new Random(9753);
+        String program = RandomPrograms.program(random, 50_000);
+        List<String> expected = pull(new Scanner(new StringSource(program), new SymbolTable()));
+
+        PipelinedScanner pipe = new PipelinedScanner();
+        DfaScanner scanner = new DfaScanner(new StringSource(program), new SymbolTable());
+        scanner.setErrorReporter(pipe::error);
+        pipe.start(scanner);
+        assertEquals(expected, pull(pipe));
+    }
+
+    private static void assertSameTokens(String program) {
+        List<String> expected = pull(new Scanner(new StringSource(program), new SymbolTable()));
+
+        PipelinedScanner pipe = new PipelinedScanner();
+        Scanner scanner = new Scanner(new StringSource(program), new SymbolTable());
+        scanner.setErrorReporter(pipe::error);
+        pipe.start(scanner);
+        assertEquals(expected, pull(pipe), program);
+    }
+
+    /**
+     * Pull all the tokens, each one with the errors printed while
+     * asking for it.
+     *
+     * @return type, lexeme, literal and line of every token, after its errors
+     */
+    private static List<String> pull(TokenSource tokens) {
+        List<String> log = new ArrayList<>();
+        PrintStream err = System.err;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(output, true, StandardCharsets.UTF_8));
+        try {
+            Token token;
+            do {
+                token = tokens.nextToken();
+                log.add(output.toString(StandardCharsets.UTF_8) + token.type + " " + token.lexeme
+                        + " " + token.literal + " " + token.line);
+                output.reset();
+            } while (token.type != TokenType.EOF);
+        } finally {
+            System.setErr(err);
+            Lox.hadError = false;
+        }
+        return log;
+    }
+}
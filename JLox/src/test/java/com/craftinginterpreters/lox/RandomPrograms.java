@@ -0,0 +1,117 @@
+package com.craftinginterpreters.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Random programs for the tests that check a scanner against the
+ * Scanner, and the checks they share.
+ */
+final class RandomPrograms {
+
+    // pieces the random programs are made of
+    private static final String[] PIECES = {
+            "and", "class", "else", "false", "for", "fun", "if", "nil", "or",
+            "print", "return", "super", "this", "true", "var", "while",
+            "a", "fo", "forest", "_x1", "iff", "nile", "Thing",
+            "0", "7", "42", "3.14", "12.", ".5", "123456789012345678", "0.1",
+            "(", ")", "{", "}", ",", ".", "-", "+", ";", "*", ":", "?", "/",
+            "!", "!=", "=", "==", "<", "<=", ">", ">=",
+            " ", "  ", "\t", "\r", "\n", "\n\n",
+            "// a comment", "// comment\n", "/* block */", "/* two\nlines */", "/**/",
+            "\"\"", "\"text\"", "\"two\nlines\"", "\"caf\u00e9\"",
+            "\u00e9", "\u20ac", "\u65e5\u672c", "\u00a9", "@", "#", "$", "\\"
+    };
+
+    private RandomPrograms() {
+    }
+
+    /**
+     * @return a random program of up to 40 pieces
+     */
+    static String program(Random random) {
+        return program(random, random.nextInt(40));
+    }
+
+    /**
+     * A program made of random pieces, some programs finish inside
+     * a string or a comment.
+     *
+     * @param pieces number of pieces
+     * @return the program
+     */
+    static String program(Random random, int pieces) {
+        StringBuilder program = new StringBuilder();
+        for (int i = 0; i < pieces; i++) {
+            program.append(piece(random));
+            if (random.nextBoolean()) program.append(' ');
+        }
+        switch (random.nextInt(8)) {
+            case 0: program.append("\"unterminated"); break;
+            case 1: program.append("/* unterminated\n"); break;
+            case 2: program.append("/* almost *"); break;
+        }
+        return program.toString();
+    }
+
+    static String piece(Random random) {
+        return PIECES[random.nextInt(PIECES.length)];
+    }
+
+    /**
+     * @return the tokens the Scanner gives for the source
+     */
+    static List<Token> scan(Source source) {
+        Scanner scanner = new Scanner(source, new SymbolTable());
+        scanner.setErrorReporter((line, message) -> { });
+        return scanner.scanTokens();
+    }
+
+    /**
+     * @return every token of the buffer
+     */
+    static List<Token> tokens(TokenBuffer buffer) {
+        List<Token> tokens = new ArrayList<>();
+        for (int i = 0; i < buffer.size(); i++) tokens.add(buffer.token(i));
+        return tokens;
+    }
+
+    /**
+     * Check type, lexeme, literal and line of every token.
+     */
+    static void assertSameTokens(List<Token> expected, List<Token> tokens, String program) {
+        assertEquals(expected.size(), tokens.size(), () -> "number of tokens of " + program);
+        for (int i = 0; i < expected.size(); i++) {
+            Token want = expected.get(i);
+            Token got = tokens.get(i);
+            int index = i;
+            assertEquals(want.type, got.type, () -> "type of token " + index + " of " + program);
+            assertEquals(want.lexeme, got.lexeme, () -> "lexeme of token " + index + " of " + program);
+            assertEquals(want.literal, got.literal, () -> "literal of token " + index + " of " + program);
+            assertEquals(want.line, got.line, () -> "line of token " + index + " of " + program);
+        }
+    }
+
+    /**
+     * Run code that reports errors through Lox, and return what it
+     * printed on the standard error. The error flag is cleared.
+     */
+    static String errors(Runnable code) {
+        PrintStream err = System.err;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(output, true, StandardCharsets.UTF_8));
+        try {
+            code.run();
+        } finally {
+            System.setErr(err);
+            Lox.hadError = false;
+        }
+        return output.toString(StandardCharsets.UTF_8);
+    }
+}
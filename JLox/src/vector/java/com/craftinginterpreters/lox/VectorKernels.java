@@ -0,0 +1,172 @@
+package com.craftinginterpreters.lox;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * BatchKernels with the Vector API, each step takes as many rows as
+ * lanes the CPU has, the rows left at the end are done one by one.
+ * The booleans are loaded as masks, and the conditionals are a blend
+ * of both columns with the mask of the condition.
+ *
+ * It is only loaded through BatchKernels.load, the class cannot be
+ * initialized when the jdk.incubator.vector module is missing.
+ */
+class VectorKernels implements BatchKernels {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public void add(double[] a, double[] b, double[] out, int rows) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(rows); i < bound; i += SPECIES.length())
+            DoubleVector.fromArray(SPECIES, a, i).add(DoubleVector.fromArray(SPECIES, b, i)).intoArray(out, i);
+        for (; i < rows; i++) out[i] = a[i] + b[i];
+    }
+
+    @Override
+    public void subtract(double[] a, double[] b, double[] out, int rows) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(rows); i < bound; i += SPECIES.length())
+            DoubleVector.fromArray(SPECIES, a, i).sub(DoubleVector.fromArray(SPECIES, b, i)).intoArray(out, i);
+        for (; i < rows; i++) out[i] = a[i] - b[i];
+    }
+
+    @Override
+    public void multiply(double[] a, double[] b, double[] out, int rows) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(rows); i < bound; i += SPECIES.length())
+            DoubleVector.fromArray(SPECIES, a, i).mul(DoubleVector.fromArray(SPECIES, b, i)).intoArray(out, i);
+        for (; i < rows; i++) out[i] = a[i] * b[i];
+    }
+
+    @Override
+    public void divide(double[] a, double[] b, double[] out, int rows) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(rows); i < bound; i += SPECIES.length())
+            DoubleVector.fromArray(SPECIES, a, i).div(DoubleVector.fromArray(SPECIES, b, i)).intoArray(out, i);
+        for (; i < rows; i++) out[i] = a[i] / b[i];
+    }
+
+    @Override
+    public void negate(double[] a, double[] out, int rows) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(rows); i < bound; i += SPECIES.length())
+            DoubleVector.fromArray(SPECIES, a, i).neg().intoArray(out, i);
+        for (; i < rows; i++) out[i] = -a[i];
+    }
+
+    @Override
+    public void compare(TokenType operator, double[] a, double[] b, boolean[] out, int rows) {
+        boolean equality = operator == TokenType.EQUAL_EQUAL || operator == TokenType.BANG_EQUAL;
+        VectorOperators.Comparison comparison = equality ? null : comparison(operator);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(rows); i < bound; i += SPECIES.length()) {
+            DoubleVector left = DoubleVector.fromArray(SPECIES, a, i);
+            DoubleVector right = DoubleVector.fromArray(SPECIES, b, i);
+            VectorMask<Double> mask;
+            if (equality) {
+                // Double.equals compares the bits, with every NaN being the same
+                mask = left.reinterpretAsLongs().compare(VectorOperators.EQ, right.reinterpretAsLongs()).cast(SPECIES)
+                        .or(left.test(VectorOperators.IS_NAN).and(right.test(VectorOperators.IS_NAN)));
+                if (operator == TokenType.BANG_EQUAL) mask = mask.not();
+            } else {
+                mask = left.compare(comparison, right);
+            }
+            mask.intoArray(out, i);
+        }
+        if (i < rows) tail(operator, a, b, out, i, rows);
+    }
+
+    private static VectorOperators.Comparison comparison(TokenType operator) {
+        switch (operator) {
+            case GREATER: return VectorOperators.GT;
+            case GREATER_EQUAL: return VectorOperators.GE;
+            case LESS: return VectorOperators.LT;
+            case LESS_EQUAL: return VectorOperators.LE;
+            default:
+                throw new IllegalArgumentException("Not a comparison: " + operator);
+        }
+    }
+
+    private static void tail(TokenType operator, double[] a, double[] b, boolean[] out, int from, int rows) {
+        for (int i = from; i < rows; i++) {
+            switch (operator) {
+                case GREATER: out[i] = a[i] > b[i]; break;
+                case GREATER_EQUAL: out[i] = a[i] >= b[i]; break;
+                case LESS: out[i] = a[i] < b[i]; break;
+                case LESS_EQUAL: out[i] = a[i] <= b[i]; break;
+                case EQUAL_EQUAL: out[i] = Double.doubleToLongBits(a[i]) == Double.doubleToLongBits(b[i]); break;
+                default: out[i] = Double.doubleToLongBits(a[i]) != Double.doubleToLongBits(b[i]); break;
+            }
+        }
+    }
+
+    @Override
+    public void equal(boolean[] a, boolean[] b, boolean[] out, int rows) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(rows); i < bound; i += SPECIES.length())
+            VectorMask.fromArray(SPECIES, a, i).eq(VectorMask.fromArray(SPECIES, b, i)).intoArray(out, i);
+        for (; i < rows; i++) out[i] = a[i] == b[i];
+    }
+
+    @Override
+    public void not(boolean[] a, boolean[] out, int rows) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(rows); i < bound; i += SPECIES.length())
+            VectorMask.fromArray(SPECIES, a, i).not().intoArray(out, i);
+        for (; i < rows; i++) out[i] = !a[i];
+    }
+
+    @Override
+    public void or(boolean[] a, boolean[] b, boolean[] out, int rows) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(rows); i < bound; i += SPECIES.length())
+            VectorMask.fromArray(SPECIES, a, i).or(VectorMask.fromArray(SPECIES, b, i)).intoArray(out, i);
+        for (; i < rows; i++) out[i] = a[i] | b[i];
+    }
+
+    @Override
+    public void zeros(double[] divisor, boolean[] errors, boolean[] out, int rows) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(rows); i < bound; i += SPECIES.length())
+            DoubleVector.fromArray(SPECIES, divisor, i).compare(VectorOperators.EQ, 0)
+                    .or(VectorMask.fromArray(SPECIES, errors, i)).intoArray(out, i);
+        for (; i < rows; i++) out[i] = errors[i] | divisor[i] == 0;
+    }
+
+    @Override
+    public void blend(boolean[] condition, double[] a, double[] b, double[] out, int rows) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(rows); i < bound; i += SPECIES.length())
+            DoubleVector.fromArray(SPECIES, b, i)
+                    .blend(DoubleVector.fromArray(SPECIES, a, i), VectorMask.fromArray(SPECIES, condition, i))
+                    .intoArray(out, i);
+        for (; i < rows; i++) out[i] = condition[i] ? a[i] : b[i];
+    }
+
+    @Override
+    public void blend(boolean[] condition, boolean[] a, boolean[] b, boolean[] out, int rows) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(rows); i < bound; i += SPECIES.length()) {
+            VectorMask<Double> mask = VectorMask.fromArray(SPECIES, condition, i);
+            mask.and(VectorMask.fromArray(SPECIES, a, i))
+                    .or(mask.not().and(VectorMask.fromArray(SPECIES, b, i)))
+                    .intoArray(out, i);
+        }
+        for (; i < rows; i++) out[i] = condition[i] ? a[i] : b[i];
+    }
+
+    @Override
+    public int first(boolean[] a, int rows) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(rows); i < bound; i += SPECIES.length()) {
+            VectorMask<Double> mask = VectorMask.fromArray(SPECIES, a, i);
+            if (mask.anyTrue()) return i + mask.firstTrue();
+        }
+        for (; i < rows; i++)
+            if (a[i]) return i;
+        return -1;
+    }
+}